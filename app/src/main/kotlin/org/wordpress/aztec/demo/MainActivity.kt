@@ -639,8 +639,9 @@ open class MainActivity : AppCompatActivity(),
     }
 
     override fun onPrepareOptionsMenu(menu: Menu?): Boolean {
-        menu?.findItem(R.id.redo)?.isEnabled = aztec.visualEditor.history.redoValid()
-        menu?.findItem(R.id.undo)?.isEnabled = aztec.visualEditor.history.undoValid()
+        val editor = if (aztec.visualEditor.visibility == View.VISIBLE) aztec.visualEditor else aztec.sourceEditor
+        menu?.findItem(R.id.redo)?.isEnabled = editor?.let { aztec.visualEditor.history.redoValid(it) } ?: false
+        menu?.findItem(R.id.undo)?.isEnabled = editor?.let { aztec.visualEditor.history.undoValid(it) } ?: false
         return super.onPrepareOptionsMenu(menu)
     }
 
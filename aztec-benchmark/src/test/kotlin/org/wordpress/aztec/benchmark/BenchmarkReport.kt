@@ -0,0 +1,111 @@
+package org.wordpress.aztec.benchmark
+
+import org.wordpress.aztec.ThreadAllocations
+import java.io.File
+import java.util.Locale
+
+/**
+ * Measures operations and writes the results to a JSON report, so the throughput and the allocations can be compared
+ * between releases.
+ *
+ * The report goes to the path in the `aztec.benchmark.report` system property, set by the Gradle test task, and the
+ * number of measured iterations can be changed with the `aztec.benchmark.iterations` property. Larger posts are
+ * measured fewer times, so every post takes about as long.
+ */
+object BenchmarkReport {
+    private const val DEFAULT_ITERATIONS = 50
+    private const val MIN_ITERATIONS = 3
+
+    private val results = mutableListOf<Result>()
+
+    val iterations: Int = System.getProperty("aztec.benchmark.iterations")?.toIntOrNull() ?: DEFAULT_ITERATIONS
+
+    /**
+     * A measured operation on a post. The allocations are -1 when the JVM can't count them.
+     */
+    data class Result(
+            val operation: String,
+            val post: SyntheticPost,
+            val htmlLength: Int,
+            val iterations: Int,
+            val nanosPerOperation: Long,
+            val allocatedBytesPerOperation: Long
+    ) {
+        val operationsPerSecond: Double
+            get() = if (nanosPerOperation > 0) 1_000_000_000.0 / nanosPerOperation else 0.0
+    }
+
+    /**
+     * Runs the [block] a few times to warm up and then measured. [setUp] runs before every run of the operation and
+     * isn't measured.
+     */
+    fun measure(
+            operation: String,
+            post: SyntheticPost,
+            htmlLength: Int,
+            setUp: () -> Unit = {},
+            block: () -> Unit
+    ): Result {
+        val runs = Math.max(MIN_ITERATIONS, Math.min(iterations, iterations * 10 / post.paragraphs))
+        repeat(Math.max(1, runs / 5)) {
+            setUp()
+            block()
+        }
+
+        var nanos = 0L
+        var allocatedBytes = 0L
+        repeat(runs) {
+            setUp()
+            val allocatedBefore = ThreadAllocations.current()
+            val start = System.nanoTime()
+            block()
+            nanos += System.nanoTime() - start
+            allocatedBytes += ThreadAllocations.current() - allocatedBefore
+        }
+
+        val result = Result(operation, post, htmlLength, runs, nanos / runs,
+                if (ThreadAllocations.isSupported) allocatedBytes / runs else -1)
+        record(result)
+        return result
+    }
+
+    @Synchronized
+    private fun record(result: Result) {
+        results.add(result)
+        // written after every result, so the report is complete whichever benchmarks run
+        System.getProperty("aztec.benchmark.report")?.let { write(File(it)) }
+    }
+
+    private fun write(file: File) {
+        file.parentFile?.mkdirs()
+        val json = StringBuilder()
+        json.append("{\n")
+        json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n")
+        json.append("  \"jvm\": ").append(quote(System.getProperty("java.vm.name") + " " +
+                System.getProperty("java.version"))).append(",\n")
+        json.append("  \"iterations\": ").append(iterations).append(",\n")
+        json.append("  \"results\": [")
+        results.forEachIndexed { index, result ->
+            json.append(if (index == 0) "\n" else ",\n")
+            json.append("    {")
+            json.append("\"operation\": ").append(quote(result.operation))
+            json.append(", \"post\": ").append(quote(result.post.name))
+            json.append(", \"paragraphs\": ").append(result.post.paragraphs)
+            json.append(", \"nestingDepth\": ").append(result.post.nestingDepth)
+            json.append(", \"mediaCount\": ").append(result.post.mediaCount)
+            json.append(", \"listLength\": ").append(result.post.listLength)
+            json.append(", \"htmlLength\": ").append(result.htmlLength)
+            json.append(", \"iterations\": ").append(result.iterations)
+            json.append(", \"nanosPerOperation\": ").append(result.nanosPerOperation)
+            json.append(", \"operationsPerSecond\": ").append(String.format(Locale.ROOT, "%.2f", result.operationsPerSecond))
+            json.append(", \"allocatedBytesPerOperation\": ").append(result.allocatedBytesPerOperation)
+            json.append("}")
+        }
+        json.append("\n  ]\n}\n")
+        file.writeText(json.toString())
+    }
+
+    private fun quote(value: String): String {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+    }
+}
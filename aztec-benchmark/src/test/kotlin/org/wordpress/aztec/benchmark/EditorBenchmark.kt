@@ -0,0 +1,150 @@
+package org.wordpress.aztec.benchmark
+
+import android.app.Activity
+import android.os.Looper
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.wordpress.aztec.AztecText
+import org.wordpress.aztec.History
+
+/**
+ * Benchmarks of the parser, the serializer and the editing paths of the visual editor, run on the synthetic posts.
+ *
+ * Run them with `./gradlew :aztec-benchmark:testDebugUnitTest -Pbenchmark`, the results are written to
+ * `aztec-benchmark/build/reports/benchmark/`.
+ */
+@RunWith(RobolectricTestRunner::class)
+class EditorBenchmark {
+    lateinit var editText: AztecText
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        activity.setContentView(editText)
+    }
+
+    private fun forEachPost(action: (post: SyntheticPost, html: String) -> Unit) {
+        SyntheticPost.ALL.forEach { post ->
+            val html = post.toHtml()
+            editText.fromHtml(html)
+            idle()
+            action(post, html)
+        }
+    }
+
+    private fun idle() {
+        shadowOf(Looper.getMainLooper()).idle()
+    }
+
+    // loads the post again before a run which edits it, once the previous run is done, so every run edits the same
+    // document
+    private fun reset(html: String) {
+        idle()
+        editText.fromHtml(html)
+        idle()
+    }
+
+    @Test
+    fun fromHtml() {
+        forEachPost { post, html ->
+            BenchmarkReport.measure("fromHtml", post, html.length) {
+                editText.fromHtml(html)
+            }
+        }
+    }
+
+    @Test
+    fun toHtml() {
+        forEachPost { post, html ->
+            BenchmarkReport.measure("toHtml", post, html.length) {
+                editText.toHtml()
+            }
+        }
+    }
+
+    @Test
+    fun toFormattedHtml() {
+        forEachPost { post, html ->
+            BenchmarkReport.measure("toFormattedHtml", post, html.length) {
+                editText.toFormattedHtml()
+            }
+        }
+    }
+
+    @Test
+    fun hasChanges() {
+        forEachPost { post, html ->
+            val position = editText.length() / 2
+            // every check follows an edit, so it can't be answered from the previous one
+            BenchmarkReport.measure("hasChanges", post, html.length, setUp = {
+                reset(html)
+                editText.text.insert(position, "a")
+            }) {
+                editText.hasChanges()
+            }
+        }
+    }
+
+    @Test
+    fun typeCharacter() {
+        forEachPost { post, html ->
+            BenchmarkReport.measure("typeCharacter", post, html.length, setUp = {
+                reset(html)
+                editText.setSelection(editText.length() / 2)
+            }) {
+                editText.text.insert(editText.selectionEnd, "a")
+            }
+        }
+    }
+
+    @Test
+    fun enterInList() {
+        forEachPost { post, html ->
+            // Enter at the end of a non empty item adds an empty item after it
+            val itemEnd = editText.text.indexOf(SyntheticPost.EDITED_LIST_ITEM) + SyntheticPost.EDITED_LIST_ITEM.length
+            Assert.assertTrue(itemEnd > 0)
+            BenchmarkReport.measure("enterInList", post, html.length, setUp = {
+                reset(html)
+                editText.setSelection(itemEnd)
+            }) {
+                editText.text.insert(itemEnd, "\n")
+            }
+        }
+    }
+
+    @Test
+    fun historySnapshot() {
+        forEachPost { post, html ->
+            editText.history.mode = History.Mode.SNAPSHOT
+            editText.history.historyThrottleTime = 0
+            BenchmarkReport.measure("historySnapshot", post, html.length) {
+                editText.history.beforeTextChanged(editText)
+                idle()
+            }
+        }
+    }
+
+    @Test
+    fun historyDelta() {
+        forEachPost { post, html ->
+            editText.history.mode = History.Mode.DELTA
+            BenchmarkReport.measure("historyDelta", post, html.length, setUp = {
+                reset(html)
+                editText.setSelection(editText.length() / 2)
+            }) {
+                // typing records the edited range only
+                editText.text.insert(editText.selectionEnd, "a")
+            }
+        }
+    }
+}
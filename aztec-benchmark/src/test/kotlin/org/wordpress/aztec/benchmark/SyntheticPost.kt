@@ -0,0 +1,107 @@
+package org.wordpress.aztec.benchmark
+
+import java.util.Random
+
+/**
+ * Generates the HTML of a made up post, so the benchmarks run on inputs of known shape. The same parameters always
+ * generate the same post.
+ *
+ * @param name the name of the post in the report
+ * @param paragraphs the number of sections, each with a heading and formatted paragraphs
+ * @param nestingDepth how deep the lists and quotes are nested
+ * @param mediaCount the number of images, spread over the sections
+ * @param listLength the number of items of each list
+ */
+data class SyntheticPost(
+        val name: String,
+        val paragraphs: Int,
+        val nestingDepth: Int,
+        val mediaCount: Int,
+        val listLength: Int,
+        val seed: Long = 42
+) {
+    companion object {
+        val SMALL = SyntheticPost("small", paragraphs = 5, nestingDepth = 1, mediaCount = 1, listLength = 5)
+        val MEDIUM = SyntheticPost("medium", paragraphs = 40, nestingDepth = 3, mediaCount = 10, listLength = 20)
+        val LARGE = SyntheticPost("large", paragraphs = 100, nestingDepth = 5, mediaCount = 50, listLength = 50)
+
+        val ALL = listOf(SMALL, MEDIUM, LARGE)
+
+        /**
+         * The text of the list item the editing benchmarks put the cursor at the end of.
+         */
+        const val EDITED_LIST_ITEM = "List item 1."
+
+        private val WORDS = arrayOf("lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit",
+                "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua")
+    }
+
+    fun toHtml(): String {
+        val random = Random(seed)
+        val html = StringBuilder()
+        var media = 0
+
+        for (section in 0 until paragraphs) {
+            html.append("<h${section % 6 + 1}>").append(sentence(random, 4)).append("</h${section % 6 + 1}>")
+            html.append("<p>").append(formattedSentence(random)).append(' ').append(formattedSentence(random))
+                    .append("</p>")
+
+            // the images are spread evenly over the sections
+            while (media < mediaCount && media * paragraphs < (section + 1) * mediaCount) {
+                html.append("<img src=\"https://example.com/image-$media.jpg\" class=\"alignnone size-full wp-image-$media\">")
+                media++
+            }
+
+            when (section % 4) {
+                0 -> appendList(html, random, if (section % 8 == 0) "ul" else "ol", nestingDepth, section == 0)
+                1 -> appendQuote(html, random, nestingDepth)
+                2 -> html.append("<pre>").append(sentence(random, 8)).append('\n').append(sentence(random, 8))
+                        .append("</pre>")
+                else -> html.append("<p style=\"text-align:center\">").append(formattedSentence(random)).append("</p>")
+            }
+        }
+        return html.toString()
+    }
+
+    private fun appendList(html: StringBuilder, random: Random, tag: String, depth: Int, isEditedList: Boolean) {
+        html.append("<$tag>")
+        for (item in 1..listLength) {
+            html.append("<li>")
+            if (isEditedList) {
+                html.append("List item $item.")
+            } else {
+                html.append(formattedSentence(random))
+            }
+            // the nested list goes into the middle item
+            if (depth > 1 && item == (listLength + 1) / 2) {
+                appendList(html, random, if (tag == "ul") "ol" else "ul", depth - 1, false)
+            }
+            html.append("</li>")
+        }
+        html.append("</$tag>")
+    }
+
+    private fun appendQuote(html: StringBuilder, random: Random, depth: Int) {
+        html.append("<blockquote>").append(formattedSentence(random))
+        if (depth > 1) {
+            appendQuote(html, random, depth - 1)
+        }
+        html.append("</blockquote>")
+    }
+
+    private fun formattedSentence(random: Random): String {
+        val words = sentence(random, 12).split(' ').toMutableList()
+        val index = random.nextInt(words.size)
+        words[index] = when (random.nextInt(4)) {
+            0 -> "<b>${words[index]}</b>"
+            1 -> "<i>${words[index]}</i>"
+            2 -> "<a href=\"https://example.com/${words[index]}\">${words[index]}</a>"
+            else -> "<code>${words[index]}</code>"
+        }
+        return words.joinToString(" ")
+    }
+
+    private fun sentence(random: Random, length: Int): String {
+        return (0 until length).joinToString(" ") { WORDS[random.nextInt(WORDS.size)] }
+    }
+}
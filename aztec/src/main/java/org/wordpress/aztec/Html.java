@@ -33,6 +33,7 @@ import android.text.style.TypefaceSpan;
 
 import org.ccil.cowan.tagsoup.HTMLSchema;
 import org.ccil.cowan.tagsoup.Parser;
+import org.wordpress.aztec.plugins.AztecPluginSet;
 import org.wordpress.aztec.plugins.IAztecPlugin;
 import org.wordpress.aztec.plugins.html2visual.IHtmlCommentHandler;
 import org.wordpress.aztec.plugins.html2visual.IHtmlContentHandler;
@@ -184,6 +185,16 @@ public class Html {
     public static Spanned fromHtml(String source, TagHandler tagHandler,
                                    Context context, List<IAztecPlugin> plugins,
                                    List<String> ignoredTags, boolean shouldIgnoreWhitespace) {
+        return fromHtml(source, tagHandler, context, new AztecPluginSet(plugins), ignoredTags, shouldIgnoreWhitespace);
+    }
+
+    /**
+     * Same as {@link #fromHtml(String, TagHandler, Context, List, List, boolean)}, with the plugins already
+     * prepared for the conversion.
+     */
+    public static Spanned fromHtml(String source, TagHandler tagHandler,
+                                   Context context, AztecPluginSet pluginSet,
+                                   List<String> ignoredTags, boolean shouldIgnoreWhitespace) {
 
         Parser parser = new Parser();
         try {
@@ -199,25 +210,23 @@ public class Html {
 
         source = CleaningUtils.cleanNestedBoldTags(source);
 
-        source = preprocessSource(source, plugins);
+        source = preprocessSource(source, pluginSet);
 
         HtmlToSpannedConverter converter =
                 new HtmlToSpannedConverter(source,
                         tagHandler,
                         parser,
                         context,
-                        plugins,
+                        pluginSet,
                         ignoredTags,
                         shouldIgnoreWhitespace);
 
         return converter.convert();
     }
 
-    private static String preprocessSource(String source, List<IAztecPlugin> plugins) {
-        for (IAztecPlugin plugin : plugins) {
-            if (plugin instanceof IHtmlPreprocessor) {
-                source = ((IHtmlPreprocessor)plugin).beforeHtmlProcessed(source);
-            }
+    private static String preprocessSource(String source, AztecPluginSet pluginSet) {
+        for (IHtmlPreprocessor preprocessor : pluginSet.getHtmlPreprocessors()) {
+            source = preprocessor.beforeHtmlProcessed(source);
         }
         return source;
     }
@@ -245,7 +254,7 @@ class HtmlToSpannedConverter implements org.xml.sax.ContentHandler, LexicalHandl
     private boolean insideCodeTag = false;
 
     private String source;
-    private List<IAztecPlugin> plugins;
+    private AztecPluginSet pluginSet;
     private XMLReader reader;
     private SpannableStringBuilder spannableStringBuilder;
     private Html.TagHandler tagHandler;
@@ -256,10 +265,10 @@ class HtmlToSpannedConverter implements org.xml.sax.ContentHandler, LexicalHandl
     public HtmlToSpannedConverter(
             String source, Html.TagHandler tagHandler,
             Parser parser,
-            Context context, List<IAztecPlugin> plugins,
+            Context context, AztecPluginSet pluginSet,
             List<String> ignoredTags, boolean shouldIgnoreWhitespace) {
         this.source = source;
-        this.plugins = plugins;
+        this.pluginSet = pluginSet;
         this.spannableStringBuilder = new SpannableStringBuilder();
         this.tagHandler = tagHandler;
         this.reader = parser;
@@ -385,14 +394,11 @@ class HtmlToSpannedConverter implements org.xml.sax.ContentHandler, LexicalHandl
             contentHandlerLevel += 1;
             return true;
         } else {
-            for (IAztecPlugin plugin : plugins) {
-                if (plugin instanceof IHtmlContentHandler) {
-                    IHtmlContentHandler contentHandler = ((IHtmlContentHandler)plugin);
-                    if (contentHandler.canHandleTag(tag.toLowerCase())) {
-                        contentHandlerPlugin = contentHandler;
-                        startHandlingContent(tag, attributes);
-                        return true;
-                    }
+            for (IHtmlContentHandler contentHandler : pluginSet.getContentHandlers()) {
+                if (contentHandler.canHandleTag(tag.toLowerCase())) {
+                    contentHandlerPlugin = contentHandler;
+                    startHandlingContent(tag, attributes);
+                    return true;
                 }
             }
         }
@@ -789,20 +795,18 @@ class HtmlToSpannedConverter implements org.xml.sax.ContentHandler, LexicalHandl
     }
 
     private void processTextHandlerPlugins(StringBuilder sb) {
-        if (plugins != null) {
-            for (IAztecPlugin plugin : plugins) {
-                if (plugin instanceof IHtmlTextHandler) {
-                    IHtmlTextHandler textPlugin = (IHtmlTextHandler)plugin;
-                    Pattern pattern = Pattern.compile(textPlugin.getPattern());
-                    Matcher matcher = pattern.matcher(sb.toString());
-
-                    while (matcher.find()) {
-                        boolean textHandled = textPlugin.onHtmlTextMatch(matcher.group(), spannableStringBuilder, nestingLevel);
-                        if (textHandled) {
-                            sb.delete(matcher.start(), matcher.end());
-                            matcher = pattern.matcher(sb.toString());
-                        }
-                    }
+        List<IHtmlTextHandler> textHandlers = pluginSet.getTextHandlers();
+        List<Pattern> patterns = pluginSet.getTextHandlerPatterns();
+        for (int i = 0; i < textHandlers.size(); i++) {
+            IHtmlTextHandler textPlugin = textHandlers.get(i);
+            Pattern pattern = patterns.get(i);
+            Matcher matcher = pattern.matcher(sb.toString());
+
+            while (matcher.find()) {
+                boolean textHandled = textPlugin.onHtmlTextMatch(matcher.group(), spannableStringBuilder, nestingLevel);
+                if (textHandled) {
+                    sb.delete(matcher.start(), matcher.end());
+                    matcher = pattern.matcher(sb.toString());
                 }
             }
         }
@@ -870,21 +874,17 @@ class HtmlToSpannedConverter implements org.xml.sax.ContentHandler, LexicalHandl
 
     private boolean processCommentHandlerPlugins(String comment) {
         boolean wasCommentHandled = false;
-        if (plugins != null) {
-            for (IAztecPlugin plugin : plugins) {
-                if (plugin instanceof IHtmlCommentHandler) {
-                    wasCommentHandled = ((IHtmlCommentHandler) plugin).handleComment(comment, spannableStringBuilder,
-                            nestingLevel, new Function1<Integer, Unit>() {
-                        @Override
-                        public Unit invoke(Integer newNesting) {
-                            nestingLevel = newNesting;
-                            return Unit.INSTANCE;
-                        }
-                    });
-                    if (wasCommentHandled) {
-                        break;
-                    }
+        for (IHtmlCommentHandler commentHandler : pluginSet.getCommentHandlers()) {
+            wasCommentHandled = commentHandler.handleComment(comment, spannableStringBuilder,
+                    nestingLevel, new Function1<Integer, Unit>() {
+                @Override
+                public Unit invoke(Integer newNesting) {
+                    nestingLevel = newNesting;
+                    return Unit.INSTANCE;
                 }
+            });
+            if (wasCommentHandled) {
+                break;
             }
         }
         return wasCommentHandled;
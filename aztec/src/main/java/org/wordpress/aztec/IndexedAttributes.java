@@ -0,0 +1,311 @@
+package org.wordpress.aztec;
+
+import org.xml.sax.Attributes;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A list of {@link Attributes} with the methods of {@link org.xml.sax.helpers.AttributesImpl}, which keeps the
+ * attributes in the order they were added and looks them up by their qualified name in a hash table once there are
+ * more than a few of them.
+ *
+ * Lists copied from one another share their attributes, so the spans made from the same element don't each copy
+ * attributes they only read. The attributes are never changed once a list holds them: a change makes new ones, which
+ * replace them once they are complete. So a list can be copied and read on another thread, like when a snapshot of
+ * the editor is serialized, while it is being changed. As with AttributesImpl, it is changed by one thread at a time.
+ */
+public class IndexedAttributes implements Attributes {
+    // the fields of an attribute, one after the other in the data
+    private static final int URI = 0;
+    private static final int LOCAL_NAME = 1;
+    private static final int QNAME = 2;
+    private static final int TYPE = 3;
+    private static final int VALUE = 4;
+    private static final int FIELDS = 5;
+
+    // up to this many attributes, going through their names is as quick as hashing
+    private static final int INDEX_THRESHOLD = 8;
+
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private static final Entries EMPTY = new Entries(new String[0], null);
+
+    // counts the changes made to any list, so that an index of the spans by their attributes can tell when one of them
+    // may have changed in place without going through them all
+    private static final AtomicLong modifications = new AtomicLong();
+
+    private static final class Entries {
+        final String[] data;
+        final int length;
+
+        // the entry of each qualified name plus one in the slot of its hash, or null before it is needed. Only set to
+        // a complete table, as the entries may be looked up on another thread
+        volatile int[] table;
+
+        Entries(String[] data, int[] table) {
+            this.data = data;
+            this.length = data.length / FIELDS;
+            this.table = table;
+        }
+    }
+
+    private volatile Entries entries = EMPTY;
+
+    static long getModificationCount() {
+        return modifications.get();
+    }
+
+    public IndexedAttributes() {
+    }
+
+    public IndexedAttributes(Attributes attributes) {
+        setAttributes(attributes);
+    }
+
+    @Override
+    public int getLength() {
+        return entries.length;
+    }
+
+    @Override
+    public String getURI(int index) {
+        return getField(index, URI);
+    }
+
+    @Override
+    public String getLocalName(int index) {
+        return getField(index, LOCAL_NAME);
+    }
+
+    @Override
+    public String getQName(int index) {
+        return getField(index, QNAME);
+    }
+
+    @Override
+    public String getType(int index) {
+        return getField(index, TYPE);
+    }
+
+    @Override
+    public String getValue(int index) {
+        return getField(index, VALUE);
+    }
+
+    @Override
+    public int getIndex(String uri, String localName) {
+        Entries entries = this.entries;
+        for (int i = 0; i < entries.length; i++) {
+            if (Objects.equals(entries.data[i * FIELDS + URI], uri)
+                    && Objects.equals(entries.data[i * FIELDS + LOCAL_NAME], localName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getIndex(String qName) {
+        Entries entries = this.entries;
+        if (qName == null) {
+            return -1;
+        }
+
+        if (entries.length <= INDEX_THRESHOLD) {
+            for (int i = 0; i < entries.length; i++) {
+                if (qName.equals(entries.data[i * FIELDS + QNAME])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int[] table = entries.table;
+        if (table == null) {
+            table = buildTable(entries.data, entries.length);
+            entries.table = table;
+        }
+        int mask = table.length - 1;
+        for (int slot = hash(qName) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (qName.equals(entries.data[index * FIELDS + QNAME])) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getType(String uri, String localName) {
+        return getField(getIndex(uri, localName), TYPE);
+    }
+
+    @Override
+    public String getType(String qName) {
+        return getField(getIndex(qName), TYPE);
+    }
+
+    @Override
+    public String getValue(String uri, String localName) {
+        return getField(getIndex(uri, localName), VALUE);
+    }
+
+    @Override
+    public String getValue(String qName) {
+        return getField(getIndex(qName), VALUE);
+    }
+
+    public void clear() {
+        setEntries(EMPTY);
+    }
+
+    /**
+     * Replaces the attributes with a copy of the given ones. The attributes of another IndexedAttributes are shared
+     * with it, as neither list changes them.
+     */
+    public void setAttributes(Attributes attributes) {
+        if (attributes instanceof IndexedAttributes) {
+            setEntries(((IndexedAttributes) attributes).entries);
+            return;
+        }
+
+        int length = attributes.getLength();
+        String[] data = new String[length * FIELDS];
+        for (int i = 0; i < length; i++) {
+            setFields(data, i, attributes.getURI(i), attributes.getLocalName(i), attributes.getQName(i),
+                    attributes.getType(i), attributes.getValue(i));
+        }
+        setEntries(new Entries(data, null));
+    }
+
+    public void addAttribute(String uri, String localName, String qName, String type, String value) {
+        Entries entries = this.entries;
+        int index = entries.length;
+        String[] data = Arrays.copyOf(entries.data, (index + 1) * FIELDS);
+        setFields(data, index, uri, localName, qName, type, value);
+
+        int[] table = entries.table;
+        if (table != null) {
+            if ((index + 1) * 2 > table.length) {
+                // built again, larger, when it is needed
+                table = null;
+            } else {
+                table = table.clone();
+                addToTable(table, data, index);
+            }
+        }
+        setEntries(new Entries(data, table));
+    }
+
+    public void setAttribute(int index, String uri, String localName, String qName, String type, String value) {
+        Entries entries = this.entries;
+        checkIndex(entries, index);
+        String[] data = entries.data.clone();
+        setFields(data, index, uri, localName, qName, type, value);
+        setEntries(new Entries(data, null));
+    }
+
+    public void removeAttribute(int index) {
+        Entries entries = this.entries;
+        checkIndex(entries, index);
+        String[] data = new String[(entries.length - 1) * FIELDS];
+        System.arraycopy(entries.data, 0, data, 0, index * FIELDS);
+        System.arraycopy(entries.data, (index + 1) * FIELDS, data, index * FIELDS, data.length - index * FIELDS);
+        // the entries after it have moved
+        setEntries(new Entries(data, null));
+    }
+
+    public void setURI(int index, String uri) {
+        setField(index, URI, uri);
+    }
+
+    public void setLocalName(int index, String localName) {
+        setField(index, LOCAL_NAME, localName);
+    }
+
+    public void setQName(int index, String qName) {
+        setField(index, QNAME, qName);
+    }
+
+    public void setType(int index, String type) {
+        setField(index, TYPE, type);
+    }
+
+    public void setValue(int index, String value) {
+        setField(index, VALUE, value);
+    }
+
+    private String getField(int index, int field) {
+        Entries entries = this.entries;
+        if (index < 0 || index >= entries.length) {
+            return null;
+        }
+        return entries.data[index * FIELDS + field];
+    }
+
+    private void setField(int index, int field, String value) {
+        Entries entries = this.entries;
+        checkIndex(entries, index);
+        String[] data = entries.data.clone();
+        data[index * FIELDS + field] = value;
+        // the table only depends on the qualified names
+        setEntries(new Entries(data, field == QNAME ? null : entries.table));
+    }
+
+    private void setEntries(Entries entries) {
+        this.entries = entries;
+        modifications.incrementAndGet();
+    }
+
+    private static void setFields(String[] data, int index, String uri, String localName, String qName, String type,
+                                  String value) {
+        data[index * FIELDS + URI] = uri;
+        data[index * FIELDS + LOCAL_NAME] = localName;
+        data[index * FIELDS + QNAME] = qName;
+        data[index * FIELDS + TYPE] = type;
+        data[index * FIELDS + VALUE] = value;
+    }
+
+    private static void checkIndex(Entries entries, int index) {
+        if (index < 0 || index >= entries.length) {
+            throw new ArrayIndexOutOfBoundsException("Attempt to modify attribute at illegal index: " + index);
+        }
+    }
+
+    private static int[] buildTable(String[] data, int length) {
+        int size = MIN_TABLE_SIZE;
+        while (size < length * 4) {
+            size *= 2;
+        }
+        int[] table = new int[size];
+        for (int i = 0; i < length; i++) {
+            addToTable(table, data, i);
+        }
+        return table;
+    }
+
+    // adds the entry at the index, unless an earlier entry has the same qualified name and keeps being found first
+    private static void addToTable(int[] table, String[] data, int index) {
+        String qName = data[index * FIELDS + QNAME];
+        if (qName == null) {
+            return;
+        }
+
+        int mask = table.length - 1;
+        int slot = hash(qName) & mask;
+        while (table[slot] != 0) {
+            if (qName.equals(data[(table[slot] - 1) * FIELDS + QNAME])) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int hash(String qName) {
+        int hash = qName.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
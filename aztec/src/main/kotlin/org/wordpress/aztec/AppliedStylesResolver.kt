@@ -0,0 +1,236 @@
+package org.wordpress.aztec
+
+import android.text.Spanned
+import org.wordpress.aztec.spans.AztecHeadingSpan
+import org.wordpress.aztec.spans.AztecListSpan
+import org.wordpress.aztec.spans.AztecOrderedListSpan
+import org.wordpress.aztec.spans.AztecPreformatSpan
+import org.wordpress.aztec.spans.AztecTaskListSpan
+import org.wordpress.aztec.spans.AztecURLSpan
+import org.wordpress.aztec.spans.AztecUnorderedListSpan
+import org.wordpress.aztec.spans.IAztecAlignmentSpan
+import org.wordpress.aztec.spans.IAztecInlineSpan
+import java.util.EnumSet
+
+/**
+ * Works out all the formats applied to a range at once, with the same answers [AztecText.contains] gives format by
+ * format.
+ *
+ * The lines of the range are found once, and the spans of each kind are queried once and shared by all the formats
+ * they decide about, instead of every format splitting the whole text into lines and querying the spans again.
+ */
+internal class AppliedStylesResolver(private val editor: AztecText) {
+    companion object {
+        private val HEADINGS = mapOf(
+                AztecHeadingSpan.Heading.H1 to AztecTextFormat.FORMAT_HEADING_1,
+                AztecHeadingSpan.Heading.H2 to AztecTextFormat.FORMAT_HEADING_2,
+                AztecHeadingSpan.Heading.H3 to AztecTextFormat.FORMAT_HEADING_3,
+                AztecHeadingSpan.Heading.H4 to AztecTextFormat.FORMAT_HEADING_4,
+                AztecHeadingSpan.Heading.H5 to AztecTextFormat.FORMAT_HEADING_5,
+                AztecHeadingSpan.Heading.H6 to AztecTextFormat.FORMAT_HEADING_6)
+
+        private val INLINE_FORMATS = arrayOf(
+                AztecTextFormat.FORMAT_BOLD,
+                AztecTextFormat.FORMAT_STRONG,
+                AztecTextFormat.FORMAT_ITALIC,
+                AztecTextFormat.FORMAT_EMPHASIS,
+                AztecTextFormat.FORMAT_CITE,
+                AztecTextFormat.FORMAT_UNDERLINE,
+                AztecTextFormat.FORMAT_STRIKETHROUGH,
+                AztecTextFormat.FORMAT_BACKGROUND,
+                AztecTextFormat.FORMAT_MARK,
+                AztecTextFormat.FORMAT_HIGHLIGHT,
+                AztecTextFormat.FORMAT_CODE)
+
+        private val ALIGNMENT_FORMATS = arrayOf(
+                AztecTextFormat.FORMAT_ALIGN_LEFT,
+                AztecTextFormat.FORMAT_ALIGN_CENTER,
+                AztecTextFormat.FORMAT_ALIGN_RIGHT)
+    }
+
+    /**
+     * The formats applied to the range from [start] to [end]. Like [AztecText.contains], the quote and preformat are
+     * checked at the selection of the editor.
+     */
+    fun resolve(start: Int, end: Int): EnumSet<AztecTextFormat> {
+        val formats = EnumSet.noneOf(AztecTextFormat::class.java)
+        val text = editor.editableText
+        if (start > end) {
+            return formats
+        }
+
+        addLineFormats(text, start, end, formats)
+        addInlineFormats(text, start, end, formats)
+        addAlignments(text, start, end, formats)
+
+        if (editor.blockFormatter.containsQuote(editor.selectionStart, editor.selectionEnd)) {
+            formats.add(AztecTextFormat.FORMAT_QUOTE)
+        }
+        if (containsPreformat(text, editor.selectionStart, editor.selectionEnd)) {
+            formats.add(AztecTextFormat.FORMAT_PREFORMAT)
+        }
+        val links = text.getSpans(Math.max(0, start - 1), Math.min(text.length, end + 1), AztecURLSpan::class.java)
+        if (isCovered(text, start, end, links.asList(), false)) {
+            formats.add(AztecTextFormat.FORMAT_LINK)
+        }
+
+        return formats
+    }
+
+    // the headings and lists of the lines touching the range
+    private fun addLineFormats(text: Spanned, start: Int, end: Int, formats: EnumSet<AztecTextFormat>) {
+        forEachLine(text, start, end) { lineStart, lineEnd ->
+            // the heading of a line is decided by its first heading span
+            if (lineStart < lineEnd) {
+                text.getSpans(lineStart, lineEnd, AztecHeadingSpan::class.java).firstOrNull()?.let {
+                    HEADINGS[it.heading]?.let { format -> formats.add(format) }
+                }
+            }
+
+            // the list of a line is the deepest one
+            val lists = text.getSpans(lineStart, lineEnd, AztecListSpan::class.java)
+            val maxNestingLevel = lists.maxByOrNull { it.nestingLevel }?.nestingLevel
+            lists.filter { it.nestingLevel == maxNestingLevel }.forEach {
+                when (it) {
+                    is AztecUnorderedListSpan -> formats.add(AztecTextFormat.FORMAT_UNORDERED_LIST)
+                    is AztecOrderedListSpan -> formats.add(AztecTextFormat.FORMAT_ORDERED_LIST)
+                    is AztecTaskListSpan -> formats.add(AztecTextFormat.FORMAT_TASK_LIST)
+                }
+            }
+        }
+    }
+
+    private fun containsPreformat(text: Spanned, selectionStart: Int, selectionEnd: Int): Boolean {
+        var containsPreformat = false
+        forEachLine(text, Math.min(selectionStart, selectionEnd), Math.max(selectionStart, selectionEnd)) { lineStart, lineEnd ->
+            if (!containsPreformat && lineStart <= selectionEnd && lineEnd >= selectionStart) {
+                containsPreformat = text.getSpans(lineStart, lineEnd, AztecPreformatSpan::class.java).any {
+                    val spanEnd = text.getSpanEnd(it)
+                    spanEnd != lineStart || text[spanEnd] != Constants.NEWLINE
+                }
+            }
+        }
+        return containsPreformat
+    }
+
+    private fun addInlineFormats(text: Spanned, start: Int, end: Int, formats: EnumSet<AztecTextFormat>) {
+        val inlineFormatter = editor.inlineFormatter
+
+        if (start == end) {
+            // the spans have to continue on both sides of the cursor
+            if (start - 1 < 0 || start + 1 > text.length) {
+                return
+            }
+            val spansBefore = text.getSpans(start - 1, start, IAztecInlineSpan::class.java)
+            val spansAfter = text.getSpans(start, start + 1, IAztecInlineSpan::class.java)
+            INLINE_FORMATS.forEach { format ->
+                val spanToCheck = inlineFormatter.makeInlineSpan(format)
+                val before = spansBefore.firstOrNull { inlineFormatter.isSameInlineSpanType(it, spanToCheck) }
+                val after = spansAfter.firstOrNull { inlineFormatter.isSameInlineSpanType(it, spanToCheck) }
+                if (before != null && after != null && inlineFormatter.isSameInlineSpanType(before, after)) {
+                    formats.add(format)
+                }
+            }
+        } else {
+            val spans = text.getSpans(start, end, IAztecInlineSpan::class.java)
+            INLINE_FORMATS.forEach { format ->
+                val spanToCheck = inlineFormatter.makeInlineSpan(format)
+                val spansOfFormat = spans.filter { inlineFormatter.isSameInlineSpanType(it, spanToCheck) }
+                if (isCovered(text, start, end, spansOfFormat, true)) {
+                    formats.add(format)
+                }
+            }
+        }
+    }
+
+    private fun addAlignments(text: Spanned, start: Int, end: Int, formats: EnumSet<AztecTextFormat>) {
+        if (start < 0 || end < 0) return
+
+        text.getSpans(start, end, IAztecAlignmentSpan::class.java).forEach {
+            val spanStart = text.getSpanStart(it)
+            val spanEnd = text.getSpanEnd(it)
+
+            val isSelected = if (start == end) {
+                if (text.length == start) {
+                    start in spanStart..spanEnd
+                } else {
+                    (spanEnd != start) && start in spanStart..spanEnd
+                }
+            } else {
+                (start in spanStart..spanEnd || end in spanStart..spanEnd) ||
+                        (spanStart in start..end || spanEnd in start..end)
+            }
+
+            if (isSelected) {
+                val spanText = text.substring(spanStart until spanEnd)
+                ALIGNMENT_FORMATS.forEach { format ->
+                    if (it.align == editor.blockFormatter.getAlignment(format, spanText)) {
+                        formats.add(format)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the [spans] cover every character of the range, as found character by character by [Spanned.getSpans].
+     * A cursor is covered when spans are found on both sides of it. The newlines don't need to be covered if
+     * [ignoreNewlines] is set, but then at least one other character has to be.
+     */
+    private fun isCovered(text: Spanned, start: Int, end: Int, spans: List<Any>, ignoreNewlines: Boolean): Boolean {
+        if (start == end) {
+            if (start - 1 < 0 || start + 1 > text.length) {
+                return false
+            }
+            return spans.any { AztecSpanLookup.intersects(text.getSpanStart(it), text.getSpanEnd(it), start - 1, start) }
+                    && spans.any { AztecSpanLookup.intersects(text.getSpanStart(it), text.getSpanEnd(it), start, start + 1) }
+        }
+
+        // the number of spans found at each character, counted through the changes at the span boundaries
+        val changes = IntArray(end - start + 1)
+        spans.forEach {
+            val spanStart = text.getSpanStart(it)
+            val spanEnd = text.getSpanEnd(it)
+            // an empty span is found at the characters on both of its sides
+            val from = Math.max(start, if (spanStart == spanEnd) spanStart - 1 else spanStart)
+            val to = Math.min(end, if (spanStart == spanEnd) spanEnd + 1 else spanEnd)
+            if (from < to) {
+                changes[from - start]++
+                changes[to - start]--
+            }
+        }
+
+        var count = 0
+        var hasCoveredCharacter = false
+        for (i in start until end) {
+            count += changes[i - start]
+            val isNewline = text[i] == Constants.NEWLINE
+            if (ignoreNewlines && isNewline) {
+                continue
+            }
+            if (count == 0) {
+                return false
+            }
+            hasCoveredCharacter = true
+        }
+        return hasCoveredCharacter
+    }
+
+    private inline fun forEachLine(text: Spanned, start: Int, end: Int, action: (lineStart: Int, lineEnd: Int) -> Unit) {
+        if (text.isEmpty()) return
+
+        var lineStart = Math.max(0, Math.min(start, text.length))
+        while (lineStart > 0 && text[lineStart - 1] != Constants.NEWLINE) {
+            lineStart--
+        }
+
+        while (lineStart <= end && lineStart <= text.length) {
+            var lineEnd = lineStart
+            while (lineEnd < text.length && text[lineEnd] != Constants.NEWLINE) {
+                lineEnd++
+            }
+            action(lineStart, lineEnd)
+            lineStart = lineEnd + 1
+        }
+    }
+}
@@ -1,55 +1,53 @@
 package org.wordpress.aztec
 
-import org.wordpress.android.util.AppLog
+import org.wordpress.aztec.source.CssStyle
+import org.wordpress.aztec.source.CssStyleFormatter
 import org.xml.sax.Attributes
-import org.xml.sax.helpers.AttributesImpl
 
-class AztecAttributes(attributes: Attributes = AttributesImpl()) : AttributesImpl(attributes) {
+class AztecAttributes(attributes: Attributes = IndexedAttributes()) : IndexedAttributes(attributes) {
+    // the copies of the attributes share the string of the style, and so its parsed form, until it changes. Cached by
+    // whichever thread reads the style: a parsed style can't change and is only used for the very string it was parsed
+    // from, so a thread caching the style of a string that was just replaced costs another parse at most
+    @Volatile
+    private var parsedStyle: CssStyle? = (attributes as? AztecAttributes)?.parsedStyle
+
+    /**
+     * The parsed *style* attribute. It is parsed again only once the attribute is set to a different string, however
+     * it was changed.
+     */
+    internal var cssStyle: CssStyle
+        get() {
+            val style = getValue(CssStyleFormatter.STYLE_ATTRIBUTE) ?: ""
+            parsedStyle?.let {
+                if (it.source === style) {
+                    return it
+                }
+            }
+            return CssStyle.parse(style).also { parsedStyle = it }
+        }
+        set(value) {
+            setValue(CssStyleFormatter.STYLE_ATTRIBUTE, value.source)
+            parsedStyle = value
+        }
+
     fun setValue(key: String, value: String) {
         val index = getIndex(key)
 
         if (index == -1) {
-            try {
-                addAttribute("", key, key, "string", value)
-            } catch (e: ArrayIndexOutOfBoundsException) {
-                // https://github.com/wordpress-mobile/AztecEditor-Android/issues/705
-                AppLog.e(AppLog.T.EDITOR, "Error adding attribute with name: $key and value: $value")
-                logInternalState()
-                throw e
-            }
+            addAttribute("", key, key, "string", value)
         } else {
             setValue(index, value)
         }
     }
 
-    private fun logInternalState() {
-        AppLog.e(AppLog.T.EDITOR, "Dumping internal state:")
-        AppLog.e(AppLog.T.EDITOR, "length = $length")
-        // Since the toString can throw OOB error we need to wrap it in a try/catch
-        try {
-            AppLog.e(AppLog.T.EDITOR, toString())
-        } catch (e: ArrayIndexOutOfBoundsException) {
-            // No need to log anything here. `toString` already writes to log details, but we need to shallow the exception
-            // we don't want to crash logging state of the app
-        }
-    }
-
     fun isEmpty(): Boolean {
         return length == 0
     }
 
     fun removeAttribute(key: String) {
-        if (hasAttribute(key)) {
-            val index = getIndex(key)
-            try {
-                removeAttribute(index)
-            } catch (e: ArrayIndexOutOfBoundsException) {
-                // https://github.com/wordpress-mobile/AztecEditor-Android/issues/705
-                AppLog.e(AppLog.T.EDITOR, "Tried to remove attribute: $key that is not in the list")
-                AppLog.e(AppLog.T.EDITOR, "Reported to be at index: $index")
-                logInternalState()
-                throw e
-            }
+        val index = getIndex(key)
+        if (index != -1) {
+            removeAttribute(index)
         }
     }
 
@@ -59,18 +57,11 @@ class AztecAttributes(attributes: Attributes = AttributesImpl()) : AttributesImp
 
     override fun toString(): String {
         val sb = StringBuilder()
-        try {
-            for (i in 0..this.length - 1) {
-                sb.append(this.getLocalName(i))
-                sb.append("=\"")
-                sb.append(this.getValue(i))
-                sb.append("\" ")
-            }
-        } catch (e: ArrayIndexOutOfBoundsException) {
-            // https://github.com/wordpress-mobile/AztecEditor-Android/issues/705
-            AppLog.e(AppLog.T.EDITOR, "IOOB occurred in toString. Dumping partial state:")
-            AppLog.e(AppLog.T.EDITOR, sb.trimEnd().toString())
-            throw e
+        for (i in 0..this.length - 1) {
+            sb.append(this.getLocalName(i))
+            sb.append("=\"")
+            sb.append(this.getValue(i))
+            sb.append("\" ")
         }
 
         return sb.trimEnd().toString()
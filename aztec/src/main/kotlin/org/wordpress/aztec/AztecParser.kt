@@ -29,12 +29,8 @@ import android.text.TextUtils
 import android.text.style.CharacterStyle
 import android.text.style.ForegroundColorSpan
 import org.wordpress.aztec.extensions.toCssString
+import org.wordpress.aztec.plugins.AztecPluginSet
 import org.wordpress.aztec.plugins.IAztecPlugin
-import org.wordpress.aztec.plugins.html2visual.ISpanPostprocessor
-import org.wordpress.aztec.plugins.visual2html.IBlockSpanHandler
-import org.wordpress.aztec.plugins.visual2html.IHtmlPostprocessor
-import org.wordpress.aztec.plugins.visual2html.IInlineSpanHandler
-import org.wordpress.aztec.plugins.visual2html.ISpanPreprocessor
 import org.wordpress.aztec.source.CssStyleFormatter
 import org.wordpress.aztec.source.CssStyleFormatter.Companion.CSS_TEXT_ALIGN_ATTRIBUTE
 import org.wordpress.aztec.spans.AztecCursorSpan
@@ -47,20 +43,34 @@ import org.wordpress.aztec.spans.AztecVisualLinebreak
 import org.wordpress.aztec.spans.CommentSpan
 import org.wordpress.aztec.spans.IAztecAlignmentSpan
 import org.wordpress.aztec.spans.IAztecBlockSpan
-import org.wordpress.aztec.spans.IAztecFullWidthImageSpan
 import org.wordpress.aztec.spans.IAztecInlineSpan
 import org.wordpress.aztec.spans.IAztecNestable
 import org.wordpress.aztec.spans.IAztecParagraphStyle
 import org.wordpress.aztec.spans.IAztecSurroundedWithNewlines
 import org.wordpress.aztec.spans.UnknownHtmlSpan
+import org.wordpress.aztec.util.HtmlTidyScanner
 import org.wordpress.aztec.util.SpanWrapper
 import java.util.ArrayList
 import java.util.Collections
-import java.util.Comparator
 
-class AztecParser @JvmOverloads constructor(private val alignmentRendering: AlignmentRendering,
-                                            val plugins: List<IAztecPlugin> = listOf(),
-                                            private val ignoredTags: List<String> = listOf("body", "html")) {
+class AztecParser(private val alignmentRendering: AlignmentRendering,
+                  val pluginSet: AztecPluginSet,
+                  private val ignoredTags: List<String> = listOf("body", "html")) {
+    @JvmOverloads
+    constructor(alignmentRendering: AlignmentRendering,
+                plugins: List<IAztecPlugin> = listOf(),
+                ignoredTags: List<String> = listOf("body", "html"))
+            : this(alignmentRendering, AztecPluginSet(plugins), ignoredTags)
+
+    val plugins: List<IAztecPlugin>
+        get() = pluginSet.plugins
+
+    /**
+     * When enabled, [toHtml] snapshots the spans into an index once and serializes in a single forward sweep over it,
+     * instead of querying the spannable for nestables and styles at every step. The output is the same.
+     */
+    var isSpanIndexEnabled = false
+
     /**
      * A faster version of fromHtml(), intended for inspecting the span structure only. It doesn't prepare the text for
      * visual editing.
@@ -70,7 +80,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
         val tidySource = tidy(source)
 
         val spanned = SpannableString(Html.fromHtml(tidySource,
-                AztecTagHandler(context, plugins, alignmentRendering), context, plugins, ignoredTags, true))
+                AztecTagHandler(context, pluginSet, alignmentRendering), context, pluginSet, ignoredTags, true))
 
         postprocessSpans(spanned)
 
@@ -84,7 +94,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
         val tidySource = if (shouldSkipTidying) source else tidy(source)
 
         val spanned = SpannableStringBuilder(Html.fromHtml(tidySource,
-                AztecTagHandler(context, plugins, alignmentRendering), context, plugins, ignoredTags, shouldIgnoreWhitespace))
+                AztecTagHandler(context, pluginSet, alignmentRendering), context, pluginSet, ignoredTags, shouldIgnoreWhitespace))
 
         addVisualNewlinesToBlockElements(spanned)
         markBlockElementsAsParagraphs(spanned)
@@ -105,25 +115,21 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
         // remove any ForegroundColorSpans since they are not needed for parsing html.
         clearForegroundColorSpans(data)
 
-        if (!withCursor) {
-            val cursorSpan = data.getSpans(0, data.length, AztecCursorSpan::class.java).firstOrNull()
-            cursorSpan?.let {
-                data.removeSpan(cursorSpan)
-            }
-        }
+        // look the cursor up once, the serializer only compares offsets against it
+        val cursor = CursorPosition(if (withCursor) findCursorPosition(data) else CursorPosition.NONE)
+
+        val spans = if (isSpanIndexEnabled) IndexedSpanLookup(data) else DirectSpanLookup(data)
 
-        withinHtml(out, data)
+        withinHtml(out, data, spans, cursor)
         val tidyOut = if (shouldSkipTidying) out.toString() else tidy(out.toString())
         val html = postprocessHtml(tidyOut)
         return html
     }
 
     private fun preprocessSpans(spannable: SpannableStringBuilder) {
-        plugins.filter { it is ISpanPreprocessor }
-            .map { it as ISpanPreprocessor }
-            .forEach {
-                it.beforeSpansProcessed(spannable)
-            }
+        pluginSet.spanPreprocessors.forEach {
+            it.beforeSpansProcessed(spannable)
+        }
     }
 
     private fun clearForegroundColorSpans(spannable: SpannableStringBuilder) {
@@ -133,20 +139,16 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
 
     private fun postprocessHtml(source: String): String {
         var html = source
-        plugins.filter { it is IHtmlPostprocessor }
-            .map { it as IHtmlPostprocessor }
-            .forEach {
-                html = it.onHtmlProcessed(html)
-            }
+        pluginSet.htmlPostprocessors.forEach {
+            html = it.onHtmlProcessed(html)
+        }
         return html
     }
 
     private fun postprocessSpans(spannable: Spannable) {
-        plugins.filter { it is ISpanPostprocessor }
-            .map { it as ISpanPostprocessor }
-            .forEach {
-                it.afterSpansProcessed(spannable)
-            }
+        pluginSet.spanPostprocessors.forEach {
+            it.afterSpansProcessed(spannable)
+        }
     }
 
     private fun markBlockElementLineBreak(text: Spannable, startPos: Int) {
@@ -354,37 +356,24 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
         } while (lastIndex > -1)
     }
 
-    private fun withinHtml(out: StringBuilder, text: Spanned) {
-        withinHtml(out, text, 0, text.length, null, -1)
+    private fun findCursorPosition(text: Spanned): Int {
+        val cursorSpan = text.getSpans(0, text.length, AztecCursorSpan::class.java).firstOrNull()
+        return if (cursorSpan != null) text.getSpanStart(cursorSpan) else CursorPosition.NONE
+    }
+
+    private fun withinHtml(out: StringBuilder, text: Spanned, spans: AztecSpanLookup, cursor: CursorPosition) {
+        withinHtml(out, text, 0, text.length, null, -1, spans, cursor)
     }
 
     private fun withinHtml(out: StringBuilder, text: Spanned, start: Int, end: Int,
-                           grandParents: ArrayList<IAztecNestable>?, nestingLevel: Int) {
+                           grandParents: ArrayList<IAztecNestable>?, nestingLevel: Int,
+                           spans: AztecSpanLookup, cursor: CursorPosition) {
         var next: Int
         var i = start
         var parents: ArrayList<IAztecNestable>?
 
         do {
-            val nestableElements = text.getSpans(i, end, IAztecNestable::class.java)
-                    .filter { it !is IAztecFullWidthImageSpan }
-                    .toTypedArray()
-
-            nestableElements.sortWith(Comparator { a, b ->
-                val startComparison = text.getSpanStart(a).compareTo(text.getSpanStart(b))
-                if (startComparison == 0) {
-                    val nestingComparison = a.nestingLevel.compareTo(b.nestingLevel)
-                    if (nestingComparison == 0) {
-                        // warning: elements at same nesting level start at same position. This is probably an error but
-                        //  still, just just try to compare by span end
-                        return@Comparator text.getSpanEnd(a).compareTo(text.getSpanEnd(b))
-                    } else {
-                        return@Comparator nestingComparison
-                    }
-                } else {
-                    return@Comparator startComparison
-                }
-            })
-            var nestable = nestableElements.firstOrNull { it.nestingLevel > nestingLevel }
+            var nestable = spans.firstNestable(i, end, nestingLevel)
 
             if (nestable == null) {
                 // no nestable found so, just consume all available chars
@@ -403,25 +392,28 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
             }
 
             when (nestable) {
-                is IAztecParagraphStyle -> withinNestable(out, text, i, next, nestable, parents, nestable.nestingLevel)
-                is UnknownHtmlSpan -> withinUnknown(out, text, i, next, nestable)
-                else -> withinContent(out, text, i, next, parents)
+                is IAztecParagraphStyle -> withinNestable(out, text, i, next, nestable, parents, nestable.nestingLevel,
+                        spans, cursor)
+                is UnknownHtmlSpan -> withinUnknown(out, i, next, nestable, cursor)
+                else -> withinContent(out, text, i, next, parents, spans, cursor)
             }
 
             i = next
         } while (i < end)
 
-        consumeCursorIfInInput(out, text, i)
+        cursor.consume(out, i)
     }
 
-    private fun withinUnknown(out: StringBuilder, text: Spanned, start: Int, end: Int, unknownHtmlSpan: UnknownHtmlSpan) {
-        consumeCursorIfInInput(out, text, start)
+    private fun withinUnknown(out: StringBuilder, start: Int, end: Int, unknownHtmlSpan: UnknownHtmlSpan,
+                              cursor: CursorPosition) {
+        cursor.consume(out, start)
         out.append(unknownHtmlSpan.rawHtml)
-        consumeCursorIfInInput(out, text, end)
+        cursor.consume(out, end)
     }
 
     private fun withinNestable(out: StringBuilder, text: Spanned, start: Int, end: Int,
-                               nestable: IAztecParagraphStyle, parents: ArrayList<IAztecNestable>?, nestingLevel: Int) {
+                               nestable: IAztecParagraphStyle, parents: ArrayList<IAztecNestable>?, nestingLevel: Int,
+                               spans: AztecSpanLookup, cursor: CursorPosition) {
 
         if (nestable is IAztecAlignmentSpan && nestable.shouldParseAlignmentToHtml()) {
             CssStyleFormatter.removeStyleAttribute(nestable.attributes, CSS_TEXT_ALIGN_ATTRIBUTE)
@@ -435,34 +427,32 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
             }
         }
 
-        val blockHandlers = plugins.filter { it is IBlockSpanHandler && it.canHandleSpan(nestable) }
+        val blockHandlers = pluginSet.getBlockSpanHandlers(nestable)
 
         if (blockHandlers.isNotEmpty()) {
-            blockHandlers.map { it as IBlockSpanHandler }
-                    .forEach { it.handleSpanStart(out, nestable) }
+            blockHandlers.forEach { it.handleSpanStart(out, nestable) }
         } else {
             out.append("<${nestable.startTag}>")
         }
 
-        withinHtml(out, text, start, end, parents, nestingLevel)
+        withinHtml(out, text, start, end, parents, nestingLevel, spans, cursor)
 
         if (blockHandlers.isNotEmpty()) {
-            blockHandlers.map { it as IBlockSpanHandler }
-                    .forEach { it.handleSpanEnd(out, nestable) }
+            blockHandlers.forEach { it.handleSpanEnd(out, nestable) }
         } else {
             out.append("</${nestable.endTag}>")
         }
 
         if (end > 0
                 && text[end - 1] == Constants.NEWLINE
-                && text.getSpans(end - 1, end, AztecVisualLinebreak::class.java).isEmpty()
+                && !spans.hasVisualLinebreak(end - 1, end)
                 && !(parents?.any { it != nestable && text.getSpanEnd(it) == end } ?: false)) {
             out.append("<br>")
         }
     }
 
     private fun withinContent(out: StringBuilder, text: Spanned, start: Int, end: Int,
-                              parents: ArrayList<IAztecNestable>?) {
+                              parents: ArrayList<IAztecNestable>?, spans: AztecSpanLookup, cursor: CursorPosition) {
         var next: Int
 
         var i = start
@@ -474,7 +464,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
 
             var nl = 0
             while (next < end && text[next] == '\n') {
-                val isVisualLinebreak = text.getSpans(next, next, AztecVisualLinebreak::class.java).isNotEmpty()
+                val isVisualLinebreak = spans.hasVisualLinebreak(next, next)
 
                 if (!isVisualLinebreak) {
                     nl++
@@ -482,7 +472,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
                 next++
             }
 
-            withinParagraph(out, text, i, next - nl, nl, parents)
+            withinParagraph(out, text, i, next - nl, nl, parents, spans, cursor)
 
             i = next
         }
@@ -491,23 +481,23 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
     // Copy from https://android.googlesource.com/platform/frameworks/base/+/master/core/java/android/text/Html.java,
     // remove some tag because we don't need them in Aztec.
     private fun withinParagraph(out: StringBuilder, text: Spanned, start: Int, end: Int, nl: Int,
-                                parents: ArrayList<IAztecNestable>?) {
+                                parents: ArrayList<IAztecNestable>?, spans: AztecSpanLookup, cursor: CursorPosition) {
         var next: Int
 
         var i = start
 
         while (i < end || start == end) {
-            next = text.nextSpanTransition(i, end, CharacterStyle::class.java)
+            next = spans.nextCharacterStyleTransition(i, end)
 
             if (i == next)
                 break
 
-            val spans = text.getSpans(i, next, CharacterStyle::class.java).toMutableList()
+            val styles = spans.getCharacterStyles(i, next)
 
-            fixOrderOfNestedMediaAndUrlSpans(spans, text)
+            fixOrderOfNestedMediaAndUrlSpans(styles, text)
 
-            for (j in spans.indices) {
-                val span = spans[j]
+            for (j in styles.indices) {
+                val span = styles[j]
 
                 if (span is IAztecInlineSpan) {
                     out.append("<${span.startTag}>")
@@ -521,8 +511,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
                     }
                 }
 
-                plugins.filter { it is IInlineSpanHandler && it.canHandleSpan(span) }
-                        .map { it as IInlineSpanHandler }
+                pluginSet.getInlineSpanHandlers(span)
                         .forEach {
                             it.handleSpanStart(out, span)
                             if (!it.shouldParseContent()) {
@@ -541,10 +530,10 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
                 }
             }
 
-            withinStyle(out, text, i, next, nl)
+            withinStyle(out, text, i, next, nl, cursor)
 
-            for (j in spans.indices.reversed()) {
-                val span = spans[j]
+            for (j in styles.indices.reversed()) {
+                val span = styles[j]
 
                 if (span is IAztecInlineSpan) {
                     out.append("</${span.endTag}>")
@@ -554,8 +543,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
                     out.append("-->")
                 }
 
-                plugins.filter { it is IInlineSpanHandler && it.canHandleSpan(span) }
-                        .map { it as IInlineSpanHandler }
+                pluginSet.getInlineSpanHandlers(span)
                         .forEach {
                             it.handleSpanEnd(out, span)
                         }
@@ -574,7 +562,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
             }
 
             out.append("<br>")
-            consumeCursorIfInInput(out, text, end + z)
+            cursor.consume(out, end + z)
         }
     }
 
@@ -595,7 +583,8 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
         }
     }
 
-    private fun withinStyle(out: StringBuilder, text: CharSequence, start: Int, end: Int, nl: Int) {
+    private fun withinStyle(out: StringBuilder, text: CharSequence, start: Int, end: Int, nl: Int,
+                            cursor: CursorPosition) {
         var i = start
         while (i < end) {
             val c = text[i]
@@ -605,7 +594,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
                 continue
             }
 
-            consumeCursorIfInInput(out, text, i)
+            cursor.consume(out, i)
 
             if (c == '<') {
                 out.append("&lt;")
@@ -617,7 +606,7 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
                 while (i + 1 < end && text[i + 1] == ' ') {
                     out.append("&nbsp;")
                     i++
-                    consumeCursorIfInInput(out, text, i)
+                    cursor.consume(out, i)
                 }
 
                 out.append(' ')
@@ -628,39 +617,36 @@ class AztecParser @JvmOverloads constructor(private val alignmentRendering: Alig
         }
 
         if (nl == 0 && text.length > i && text[i] == '\n') {
-            consumeCursorIfInInput(out, text, i)
+            cursor.consume(out, i)
         }
     }
 
     /**
-     * Append a cursor to the output string if input string has one at the specified position.
-     * Cursor is removed from the input if found at that position.
+     * Appends a cursor to the output string if the input string has one at the specified position.
      *
-     * The algorithm that uses this function goes like this: While traversing the input (spannable) string and producing
-     *   the output chunk by chunk, look for the cursor span in the input string at a location before or after the chunk.
-     *   If cursor is found then remove it while appending a cursor literal to the output string. This way, the cursor
-     *   gets inserted without the need to know which position in the output string corresponds to the position in the
-     *   input string.
+     * The algorithm that uses this goes like this: While traversing the input (spannable) string and producing
+     *   the output chunk by chunk, look for the cursor in the input string at a location before or after the chunk.
+     *   If the cursor is found then consume it while appending a cursor literal to the output string. This way, the
+     *   cursor gets inserted without the need to know which position in the output string corresponds to the
+     *   position in the input string. The cursor offset is resolved once per conversion so each check is a plain
+     *   integer comparison instead of a span lookup.
      */
-    private fun consumeCursorIfInInput(out: StringBuilder, text: CharSequence, position: Int) {
-        if (text is SpannableStringBuilder) {
-            val cursorSpan = text.getSpans(position, position, AztecCursorSpan::class.java).firstOrNull()
-            if (cursorSpan != null) {
+    private class CursorPosition(private var position: Int) {
+        fun consume(out: StringBuilder, at: Int) {
+            if (position != NONE && position == at) {
                 out.append(AztecCursorSpan.AZTEC_CURSOR_TAG)
 
-                // remove the cursor mark from the input string. It's work is finished.
-                text.removeSpan(cursorSpan)
+                // the cursor's work is finished
+                position = NONE
             }
         }
+
+        companion object {
+            const val NONE = -1
+        }
     }
 
     private fun tidy(html: String): String {
-        return html
-                .replace(Constants.ZWJ_STRING, "")
-                .replace(Constants.MAGIC_STRING, "")
-                .replace("(</? ?br>)*((aztec_cursor)?)</blockquote>".toRegex(), "$2</blockquote>")
-                .replace("(</? ?br>)*((aztec_cursor)?)</li>".toRegex(), "$2</li>")
-                .replace("(</? ?br>)*((aztec_cursor)?)</p>".toRegex(), "$2</p>")
-                .replace("(</? ?br>)*((aztec_cursor)?)</pre>".toRegex(), "$2</pre>")
+        return HtmlTidyScanner.tidy(html)
     }
 }
@@ -0,0 +1,174 @@
+package org.wordpress.aztec
+
+import android.text.Editable
+import android.text.NoCopySpan
+import android.text.Spannable
+import android.text.SpanWatcher
+import android.text.Spanned
+import android.text.TextWatcher
+import org.wordpress.aztec.spans.IAztecAttributedSpan
+
+/**
+ * Keeps the spans of the editor text partitioned by type, so the watchers and formatters looking for all the spans of
+ * a type don't have to go over every span of the document on each edit.
+ *
+ * A type is indexed the first time it is queried, from then on the index follows the span additions and removals
+ * reported to it as a [SpanWatcher]. The positions are not indexed, they are read from the text when needed.
+ *
+ * The attributed spans can also be looked up by the value of an attribute, see [getAttributedSpans].
+ *
+ * The text only reports the spans a replacement copies in, like the ones of a paste, once all of its [TextWatcher]s
+ * are done. So the index is also a [TextWatcher], attached ahead of the others, and indexes the spans of the inserted
+ * text as soon as it changes, for the watchers to find them.
+ */
+internal class AztecSpanIndex private constructor(private val text: Spannable) : SpanWatcher, TextWatcher, NoCopySpan {
+    private val spansByType = HashMap<Class<*>, LinkedHashSet<Any>>()
+    private val attributeIndexes = HashMap<String, AttributeIndex>()
+    private var isAttached = true
+
+    fun isIndexing(text: Spanned): Boolean {
+        return isAttached && this.text === text
+    }
+
+    /**
+     * All the spans of the [type], in the order they were added to the text.
+     */
+    fun <T> getSpans(type: Class<T>): List<T> {
+        return spansOf(type).map { type.cast(it) }
+    }
+
+    fun <T> count(type: Class<T>): Int {
+        return spansOf(type).size
+    }
+
+    fun <T> hasSpans(type: Class<T>): Boolean {
+        return spansOf(type).isNotEmpty()
+    }
+
+    /**
+     * The attributed spans whose attribute [name] has the [value], in the order they were indexed with it.
+     *
+     * An attribute is indexed the first time it is looked up. From then on the index follows the spans added to and
+     * removed from the text, and the attributes replaced through [onAttributesChanged]. The attributed spans are
+     * indexed again once any attributes were changed since the last look up, as they may have been the attributes of
+     * a span changed in place.
+     */
+    fun getAttributedSpans(name: String, value: String): List<IAztecAttributedSpan> {
+        if (!isAttached) {
+            return getSpans(IAztecAttributedSpan::class.java).filter { it.attributes.getValue(name) == value }
+        }
+
+        val index = attributeIndexes.getOrPut(name) { AttributeIndex(name) }
+        val modifications = IndexedAttributes.getModificationCount()
+        if (index.modifications != modifications) {
+            getSpans(IAztecAttributedSpan::class.java).forEach { index.update(it) }
+            index.modifications = modifications
+        }
+        return index.get(value)
+    }
+
+    /**
+     * Indexes the [span] again after its attributes were replaced.
+     */
+    fun onAttributesChanged(span: IAztecAttributedSpan) {
+        if (text.getSpanStart(span) == -1) return
+
+        attributeIndexes.values.forEach { it.update(span) }
+    }
+
+    private fun spansOf(type: Class<*>): Set<Any> {
+        if (!isAttached) {
+            return text.getSpans(0, text.length, type).toCollection(LinkedHashSet<Any>())
+        }
+        return spansByType.getOrPut(type) { text.getSpans(0, text.length, type).toCollection(LinkedHashSet<Any>()) }
+    }
+
+    override fun onSpanAdded(text: Spannable, what: Any, start: Int, end: Int) {
+        if (what === this) return
+
+        spansByType.forEach { (type, spans) ->
+            if (type.isInstance(what)) {
+                spans.add(what)
+            }
+        }
+        if (what is IAztecAttributedSpan) {
+            attributeIndexes.values.forEach { it.update(what) }
+        }
+    }
+
+    override fun onSpanRemoved(text: Spannable, what: Any, start: Int, end: Int) {
+        if (what === this) {
+            // no longer told about the changes of the text
+            isAttached = false
+            spansByType.clear()
+            attributeIndexes.clear()
+            return
+        }
+
+        spansByType.values.forEach { it.remove(what) }
+        if (what is IAztecAttributedSpan) {
+            attributeIndexes.values.forEach { it.remove(what) }
+        }
+    }
+
+    override fun onSpanChanged(text: Spannable, what: Any, ostart: Int, oend: Int, nstart: Int, nend: Int) {
+        // only the positions changed, which are not indexed
+    }
+
+    override fun beforeTextChanged(s: CharSequence, start: Int, count: Int, after: Int) {
+    }
+
+    override fun onTextChanged(s: CharSequence, start: Int, before: Int, count: Int) {
+        if (!isAttached || count == 0 || (spansByType.isEmpty() && attributeIndexes.isEmpty())) return
+
+        // the spans copied in are only reported after the text watchers, adding them again later changes nothing
+        text.getSpans(start, start + count, Any::class.java).forEach { onSpanAdded(text, it, start, start + count) }
+    }
+
+    override fun afterTextChanged(s: Editable) {
+    }
+
+    // the attributed spans by the value of one attribute, and the value each of them is indexed with
+    private class AttributeIndex(private val name: String) {
+        private val spansByValue = HashMap<String, LinkedHashSet<IAztecAttributedSpan>>()
+        private val valuesBySpan = HashMap<IAztecAttributedSpan, String>()
+
+        // the count of the attribute changes the spans were last indexed at, see IndexedAttributes
+        var modifications = -1L
+
+        fun get(value: String): List<IAztecAttributedSpan> {
+            return spansByValue[value]?.toList() ?: emptyList()
+        }
+
+        fun add(span: IAztecAttributedSpan) {
+            val value = span.attributes.getValue(name) ?: return
+            spansByValue.getOrPut(value) { LinkedHashSet() }.add(span)
+            valuesBySpan[span] = value
+        }
+
+        fun remove(span: IAztecAttributedSpan) {
+            val value = valuesBySpan.remove(span) ?: return
+            val spans = spansByValue[value] ?: return
+            spans.remove(span)
+            if (spans.isEmpty()) {
+                spansByValue.remove(value)
+            }
+        }
+
+        fun update(span: IAztecAttributedSpan) {
+            if (valuesBySpan[span] != span.attributes.getValue(name)) {
+                remove(span)
+                add(span)
+            }
+        }
+    }
+
+    companion object {
+        fun attach(text: Spannable): AztecSpanIndex {
+            val index = AztecSpanIndex(text)
+            // the highest priority makes the text call the index before the watchers of the editor
+            text.setSpan(index, 0, text.length, Spanned.SPAN_INCLUSIVE_INCLUSIVE or Spanned.SPAN_PRIORITY)
+            return index
+        }
+    }
+}
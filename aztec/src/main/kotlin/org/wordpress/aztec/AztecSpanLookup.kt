@@ -0,0 +1,216 @@
+package org.wordpress.aztec
+
+import android.text.Spanned
+import android.text.style.CharacterStyle
+import org.wordpress.aztec.spans.AztecVisualLinebreak
+import org.wordpress.aztec.spans.IAztecFullWidthImageSpan
+import org.wordpress.aztec.spans.IAztecNestable
+import java.util.Arrays
+import java.util.Comparator
+
+/**
+ * The span queries [AztecParser] makes while serializing a spannable to HTML.
+ */
+internal interface AztecSpanLookup {
+    /**
+     * The first nestable (ordered by start, nesting level and end) deeper than [nestingLevel] found in [start, end].
+     */
+    fun firstNestable(start: Int, end: Int, nestingLevel: Int): IAztecNestable?
+
+    fun hasVisualLinebreak(start: Int, end: Int): Boolean
+
+    fun nextCharacterStyleTransition(start: Int, end: Int): Int
+
+    fun getCharacterStyles(start: Int, end: Int): MutableList<CharacterStyle>
+
+    companion object {
+        fun compareNestables(text: Spanned, a: IAztecNestable, b: IAztecNestable): Int {
+            val startComparison = text.getSpanStart(a).compareTo(text.getSpanStart(b))
+            if (startComparison != 0) {
+                return startComparison
+            }
+
+            val nestingComparison = a.nestingLevel.compareTo(b.nestingLevel)
+            if (nestingComparison != 0) {
+                return nestingComparison
+            }
+
+            // warning: elements at same nesting level start at same position. This is probably an error but
+            //  still, just just try to compare by span end
+            return text.getSpanEnd(a).compareTo(text.getSpanEnd(b))
+        }
+
+        /**
+         * Same rule as [Spanned.getSpans]: empty spans match anywhere in the range, non-empty ones must overlap a
+         * non-empty range rather than just touch it.
+         */
+        fun intersects(spanStart: Int, spanEnd: Int, start: Int, end: Int): Boolean {
+            if (spanStart > end || spanEnd < start) {
+                return false
+            }
+
+            return spanStart == spanEnd || start == end || (spanStart != end && spanEnd != start)
+        }
+    }
+}
+
+/**
+ * Answers the queries straight from the spannable, one span tree lookup per query.
+ */
+internal class DirectSpanLookup(private val text: Spanned) : AztecSpanLookup {
+    override fun firstNestable(start: Int, end: Int, nestingLevel: Int): IAztecNestable? {
+        val nestableElements = text.getSpans(start, end, IAztecNestable::class.java)
+                .filter { it !is IAztecFullWidthImageSpan }
+                .toTypedArray()
+
+        nestableElements.sortWith(Comparator { a, b -> AztecSpanLookup.compareNestables(text, a, b) })
+
+        return nestableElements.firstOrNull { it.nestingLevel > nestingLevel }
+    }
+
+    override fun hasVisualLinebreak(start: Int, end: Int): Boolean {
+        return text.getSpans(start, end, AztecVisualLinebreak::class.java).isNotEmpty()
+    }
+
+    override fun nextCharacterStyleTransition(start: Int, end: Int): Int {
+        return text.nextSpanTransition(start, end, CharacterStyle::class.java)
+    }
+
+    override fun getCharacterStyles(start: Int, end: Int): MutableList<CharacterStyle> {
+        return text.getSpans(start, end, CharacterStyle::class.java).toMutableList()
+    }
+}
+
+/**
+ * Snapshots the spans the serializer needs into sorted arrays once, then answers the queries while sweeping the
+ * text from start to end. The serializer only ever moves forward, so spans are picked up as the sweep reaches them
+ * and dropped once it has passed them, instead of querying the span tree (and sorting the result) every time.
+ *
+ * The answers are the same as the ones of [DirectSpanLookup], including the ordering of the returned spans.
+ */
+internal class IndexedSpanLookup(text: Spanned) : AztecSpanLookup {
+    private val nestables: Array<IAztecNestable>
+    private val nestableStarts: IntArray
+    private val nestableEnds: IntArray
+    private var nextNestable = 0
+    // nestables starting before the sweep position and not ending before it, in sorted order
+    private val openNestables = ArrayList<Int>()
+
+    private val linebreakStarts: IntArray
+    private val linebreakEnds: IntArray
+    private val linebreakMaxEnds: IntArray
+
+    // character styles in the order Spanned.getSpans() returns them
+    private val styles: Array<CharacterStyle>
+    private val styleStarts: IntArray
+    private val styleEnds: IntArray
+    private val stylesByStart: IntArray
+    private val styleTransitions: IntArray
+    private var nextStyle = 0
+    // character styles starting before the end of the last query and not ending before its start, in getSpans order
+    private val openStyles = ArrayList<Int>()
+
+    init {
+        val sortedNestables = text.getSpans(0, text.length, IAztecNestable::class.java)
+                .filter { it !is IAztecFullWidthImageSpan }
+                .sortedWith(Comparator { a, b -> AztecSpanLookup.compareNestables(text, a, b) })
+        nestables = sortedNestables.toTypedArray()
+        nestableStarts = IntArray(nestables.size) { text.getSpanStart(nestables[it]) }
+        nestableEnds = IntArray(nestables.size) { text.getSpanEnd(nestables[it]) }
+
+        val linebreaks = text.getSpans(0, text.length, AztecVisualLinebreak::class.java)
+                .sortedBy { text.getSpanStart(it) }
+        linebreakStarts = IntArray(linebreaks.size) { text.getSpanStart(linebreaks[it]) }
+        linebreakEnds = IntArray(linebreaks.size) { text.getSpanEnd(linebreaks[it]) }
+        linebreakMaxEnds = IntArray(linebreaks.size)
+        for (k in linebreaks.indices) {
+            linebreakMaxEnds[k] = if (k == 0) linebreakEnds[k] else Math.max(linebreakMaxEnds[k - 1], linebreakEnds[k])
+        }
+
+        styles = text.getSpans(0, text.length, CharacterStyle::class.java)
+        styleStarts = IntArray(styles.size) { text.getSpanStart(styles[it]) }
+        styleEnds = IntArray(styles.size) { text.getSpanEnd(styles[it]) }
+        stylesByStart = styles.indices.sortedBy { styleStarts[it] }.toIntArray()
+
+        val transitions = IntArray(styles.size * 2)
+        for (k in styles.indices) {
+            transitions[k * 2] = styleStarts[k]
+            transitions[k * 2 + 1] = styleEnds[k]
+        }
+        Arrays.sort(transitions)
+        styleTransitions = transitions.distinct().toIntArray()
+    }
+
+    override fun firstNestable(start: Int, end: Int, nestingLevel: Int): IAztecNestable? {
+        while (nextNestable < nestables.size && nestableStarts[nextNestable] < start) {
+            openNestables.add(nextNestable)
+            nextNestable++
+        }
+        openNestables.removeAll { nestableEnds[it] < start }
+
+        // open nestables start before the range so they come first in the sort order
+        openNestables.forEach {
+            if (nestables[it].nestingLevel > nestingLevel
+                    && AztecSpanLookup.intersects(nestableStarts[it], nestableEnds[it], start, end)) {
+                return nestables[it]
+            }
+        }
+
+        var k = nextNestable
+        while (k < nestables.size && nestableStarts[k] <= end) {
+            if (nestables[k].nestingLevel > nestingLevel
+                    && AztecSpanLookup.intersects(nestableStarts[k], nestableEnds[k], start, end)) {
+                return nestables[k]
+            }
+            k++
+        }
+
+        return null
+    }
+
+    override fun hasVisualLinebreak(start: Int, end: Int): Boolean {
+        // walk back from the last linebreak starting within the range, as long as one could still reach into it
+        var k = upperBound(linebreakStarts, end) - 1
+        while (k >= 0 && linebreakMaxEnds[k] >= start) {
+            if (AztecSpanLookup.intersects(linebreakStarts[k], linebreakEnds[k], start, end)) {
+                return true
+            }
+            k--
+        }
+        return false
+    }
+
+    override fun nextCharacterStyleTransition(start: Int, end: Int): Int {
+        val k = upperBound(styleTransitions, start)
+        return if (k < styleTransitions.size && styleTransitions[k] < end) styleTransitions[k] else end
+    }
+
+    override fun getCharacterStyles(start: Int, end: Int): MutableList<CharacterStyle> {
+        while (nextStyle < stylesByStart.size && styleStarts[stylesByStart[nextStyle]] <= end) {
+            val index = stylesByStart[nextStyle]
+            val position = -(openStyles.binarySearch(index) + 1)
+            openStyles.add(position, index)
+            nextStyle++
+        }
+        openStyles.removeAll { styleEnds[it] < start }
+
+        return openStyles
+                .filter { AztecSpanLookup.intersects(styleStarts[it], styleEnds[it], start, end) }
+                .mapTo(ArrayList()) { styles[it] }
+    }
+
+    // index of the first element greater than value
+    private fun upperBound(sorted: IntArray, value: Int): Int {
+        var low = 0
+        var high = sorted.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (sorted[middle] <= value) {
+                low = middle + 1
+            } else {
+                high = middle
+            }
+        }
+        return low
+    }
+}
@@ -26,8 +26,8 @@ import android.graphics.drawable.Drawable
 import android.text.Editable
 import android.text.Spanned
 import androidx.appcompat.content.res.AppCompatResources
+import org.wordpress.aztec.plugins.AztecPluginSet
 import org.wordpress.aztec.plugins.IAztecPlugin
-import org.wordpress.aztec.plugins.html2visual.IHtmlTagHandler
 import org.wordpress.aztec.source.CssStyleFormatter
 import org.wordpress.aztec.spans.AztecAudioSpan
 import org.wordpress.aztec.spans.AztecBackgroundColorSpan
@@ -59,8 +59,14 @@ import org.wordpress.aztec.util.getLast
 import org.xml.sax.Attributes
 import java.util.Locale
 
-class AztecTagHandler(val context: Context, val plugins: List<IAztecPlugin> = ArrayList(), private val alignmentRendering: AlignmentRendering
+class AztecTagHandler(val context: Context, val pluginSet: AztecPluginSet, private val alignmentRendering: AlignmentRendering
 ) : Html.TagHandler {
+    constructor(context: Context, plugins: List<IAztecPlugin> = ArrayList(), alignmentRendering: AlignmentRendering)
+            : this(context, AztecPluginSet(plugins), alignmentRendering)
+
+    val plugins: List<IAztecPlugin>
+        get() = pluginSet.plugins
+
     private val loadingDrawable: Drawable
 
     // Simple LIFO stack to track the html tag nesting for easy reference when we need to handle the ending of a tag
@@ -204,8 +210,7 @@ class AztecTagHandler(val context: Context, val plugins: List<IAztecPlugin> = Ar
     }
 
     private fun processTagHandlerPlugins(tag: String, opening: Boolean, output: Editable, attributes: Attributes, nestingLevel: Int): Boolean {
-        plugins.filter { it is IHtmlTagHandler }
-                .map { it as IHtmlTagHandler }
+        pluginSet.tagHandlers
                 .forEach({
                     if (it.canHandleTag(tag)) {
                         val wasHandled = it.handleTag(opening, tag, output, attributes, nestingLevel)
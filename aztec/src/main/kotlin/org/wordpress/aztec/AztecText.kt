@@ -39,6 +39,8 @@ import android.text.InputFilter
 import android.text.InputType
 import android.text.Spannable
 import android.text.SpannableStringBuilder
+import android.text.NoCopySpan
+import android.text.SpanWatcher
 import android.text.Spanned
 import android.text.TextUtils
 import android.text.TextWatcher
@@ -63,7 +65,13 @@ import androidx.appcompat.content.res.AppCompatResources
 import androidx.appcompat.widget.AppCompatEditText
 import androidx.core.content.ContextCompat
 import androidx.vectordrawable.graphics.drawable.VectorDrawableCompat
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancelChildren
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import org.wordpress.android.util.AppLog
@@ -77,11 +85,13 @@ import org.wordpress.aztec.handlers.ListHandler
 import org.wordpress.aztec.handlers.ListItemHandler
 import org.wordpress.aztec.handlers.PreformatHandler
 import org.wordpress.aztec.handlers.QuoteHandler
+import org.wordpress.aztec.plugins.AztecPluginSet
 import org.wordpress.aztec.plugins.IAztecPlugin
 import org.wordpress.aztec.plugins.IClipboardPastePlugin
 import org.wordpress.aztec.plugins.IOnDrawPlugin
 import org.wordpress.aztec.plugins.IToolbarButton
 import org.wordpress.aztec.source.Format
+import org.wordpress.aztec.source.HtmlBlockSplitter
 import org.wordpress.aztec.source.SourceViewEditText
 import org.wordpress.aztec.spans.AztecAudioSpan
 import org.wordpress.aztec.spans.AztecCodeSpan
@@ -101,6 +111,9 @@ import org.wordpress.aztec.spans.CommentSpan
 import org.wordpress.aztec.spans.EndOfParagraphMarker
 import org.wordpress.aztec.spans.IAztecAttributedSpan
 import org.wordpress.aztec.spans.IAztecBlockSpan
+import org.wordpress.aztec.spans.IAztecInlineSpan
+import org.wordpress.aztec.spans.IAztecNestable
+import org.wordpress.aztec.spans.IAztecParagraphStyle
 import org.wordpress.aztec.spans.UnknownClickableSpan
 import org.wordpress.aztec.spans.UnknownHtmlSpan
 import org.wordpress.aztec.toolbar.IAztecToolbar
@@ -121,6 +134,7 @@ import org.wordpress.aztec.watchers.ParagraphBleedAdjuster
 import org.wordpress.aztec.watchers.ParagraphCollapseAdjuster
 import org.wordpress.aztec.watchers.ParagraphCollapseRemover
 import org.wordpress.aztec.watchers.SuggestionWatcher
+import org.wordpress.aztec.watchers.TextChangedEvent
 import org.wordpress.aztec.watchers.TextDeleter
 import org.wordpress.aztec.watchers.ZeroIndexContentWatcher
 import org.wordpress.aztec.watchers.event.IEventInjector
@@ -129,6 +143,7 @@ import org.wordpress.aztec.watchers.event.sequence.known.space.steps.TextWatcher
 import org.wordpress.aztec.watchers.event.text.AfterTextChangedEventData
 import org.wordpress.aztec.watchers.event.text.BeforeTextChangedEventData
 import org.wordpress.aztec.watchers.event.text.OnTextChangedEventData
+import org.wordpress.aztec.watchers.event.text.ReplacedText
 import org.wordpress.aztec.watchers.event.text.TextWatcherEvent
 import org.xml.sax.Attributes
 import java.lang.ref.WeakReference
@@ -150,12 +165,14 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         val LINK_DIALOG_ANCHOR_KEY = "LINK_DIALOG_ANCHOR_KEY"
         val LINK_DIALOG_OPEN_NEW_WINDOW_KEY = "LINK_DIALOG_OPEN_NEW_WINDOW_KEY"
 
+        @Deprecated("The history is kept in the RETAINED_HTML_KEY list", ReplaceWith("RETAINED_HTML_KEY"))
         val HISTORY_LIST_KEY = "HISTORY_LIST_KEY"
         val HISTORY_CURSOR_KEY = "HISTORY_CURSOR_KEY"
 
         val SELECTION_START_KEY = "SELECTION_START_KEY"
         val SELECTION_END_KEY = "SELECTION_END_KEY"
 
+        @Deprecated("The last input is kept in the RETAINED_HTML_KEY list", ReplaceWith("RETAINED_HTML_KEY"))
         val INPUT_LAST_KEY = "INPUT_LAST_KEY"
         val VISIBILITY_KEY = "VISIBILITY_KEY"
         val IS_MEDIA_ADDED_KEY = "IS_MEDIA_ADDED_KEY"
@@ -164,6 +181,13 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
         val DEFAULT_IMAGE_WIDTH = 800
 
+        private const val NO_CONTENT_GENERATION = -1L
+
+        // the cursor marker in the HTML of the source editor, see SourceViewEditText.getPureHtml
+        private const val SOURCE_CURSOR_TAG = "<aztec_cursor></aztec_cursor>"
+
+        private val EMPTY_HTML_SHA256: ByteArray by lazy { calculateSHA256("") }
+
         val DEFAULT_ALIGNMENT_RENDERING = AlignmentRendering.SPAN_LEVEL
 
         var watchersNestingLevel: Int = 0
@@ -193,10 +217,14 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
             return digest.digest()
         }
 
+        fun isInitialHTMLSHAMissing(initialEditorContentParsedSHA256: ByteArray): Boolean {
+            return initialEditorContentParsedSHA256.isEmpty() || Arrays.equals(initialEditorContentParsedSHA256, EMPTY_HTML_SHA256)
+        }
+
         fun calculateInitialHTMLSHA(initialHTMLParsed: String, initialEditorContentParsedSHA256: ByteArray): ByteArray {
             try {
                 // Do not recalculate the hash if it's not the first call to `fromHTML`.
-                if (initialEditorContentParsedSHA256.isEmpty() || Arrays.equals(initialEditorContentParsedSHA256, calculateSHA256(""))) {
+                if (isInitialHTMLSHAMissing(initialEditorContentParsedSHA256)) {
                     return calculateSHA256(initialHTMLParsed)
                 } else {
                     return initialEditorContentParsedSHA256
@@ -231,6 +259,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     private var historyEnable = resources.getBoolean(R.bool.history_enable)
     private var historySize = resources.getInteger(R.integer.history_size)
+    private var historyMode = History.Mode.SNAPSHOT
 
     private var addLinkDialog: AlertDialog? = null
     private var blockEditorDialog: AlertDialog? = null
@@ -243,6 +272,12 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     private var overrideSamsungPredictiveBehavior: Boolean = false
 
     var initialEditorContentParsedSHA256: ByteArray = ByteArray(0)
+        set(value) {
+            field = value
+            // the tracked changes were relative to the previous hash
+            unchangedContentGeneration = NO_CONTENT_GENERATION
+            checkedContentGeneration = NO_CONTENT_GENERATION
+        }
 
     private var onSelectionChangedListener: OnSelectionChangedListener? = null
     private var onImeBackListener: OnImeBackListener? = null
@@ -271,6 +306,88 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     // current block.
     var shouldAddMediaInline: Boolean = true
 
+    // If this field is true, toHtml() indexes the spans once and serializes them in a single sweep. Meant for large
+    // documents, the output is the same either way.
+    var isSpanIndexSerializerEnabled: Boolean = false
+
+    // If this field is true, hasChanges() only serializes and hashes the content when it was edited since the last
+    // check, and getAppliedStyles() reuses its result until then. Edits are tracked through the text and span changes
+    // and the attribute updates done via AztecText, changes made to the attributes of a span in place go unnoticed.
+    var isChangeTrackingEnabled: Boolean = false
+        set(value) {
+            if (field == value) return
+            field = value
+
+            // only the editables made while tracking get the watcher
+            super.setEditableFactory(editableFactoryOf(currentEditableFactory()))
+            if (value) {
+                editableText.setSpan(contentGenerationWatcher, 0, editableText.length, Spanned.SPAN_INCLUSIVE_INCLUSIVE)
+            } else {
+                editableText.removeSpan(contentGenerationWatcher)
+            }
+
+            // the span changes made in between were not counted
+            unchangedContentGeneration = NO_CONTENT_GENERATION
+            checkedContentGeneration = NO_CONTENT_GENERATION
+            appliedStylesGeneration = NO_CONTENT_GENERATION
+        }
+
+    // the factory set through setEditableFactory, possibly by a superclass while constructing the view, so it is not
+    // initialized here
+    private lateinit var editableFactory: Editable.Factory
+
+    // bumped on every change to the content, used to skip hasChanges() checks while nothing was edited
+    private var contentGeneration = 0L
+    private var unchangedContentGeneration = NO_CONTENT_GENERATION
+    private var checkedContentGeneration = NO_CONTENT_GENERATION
+    private var checkedContentChanges = EditorHasChanges.UNKNOWN
+
+    private val contentGenerationWatcher = object : SpanWatcher, NoCopySpan {
+        override fun onSpanAdded(text: Spannable, what: Any, start: Int, end: Int) {
+            onSpanModified(text, what)
+        }
+
+        override fun onSpanRemoved(text: Spannable, what: Any, start: Int, end: Int) {
+            onSpanModified(text, what)
+        }
+
+        override fun onSpanChanged(text: Spannable, what: Any, ostart: Int, oend: Int, nstart: Int, nend: Int) {
+            onSpanModified(text, what)
+        }
+
+        private fun onSpanModified(text: Spannable, what: Any) {
+            // selection, watchers, composing text and suggestions are not part of the content
+            if (what is NoCopySpan || what is SuggestionSpan || text.getSpanFlags(what) and Spanned.SPAN_COMPOSING != 0) {
+                return
+            }
+            contentGeneration++
+        }
+    }
+
+    // the HTML the text was serialized to for the source editor, until the text changes, see fromSourceHtml
+    private var sourceSnapshot: String? = null
+
+    private val appliedStylesResolver = AppliedStylesResolver(this)
+
+    // the result of the last getAppliedStyles() call, reused while neither the content nor the selection changed
+    private var appliedStyles: List<ITextFormat> = emptyList()
+    private var appliedStylesText: Editable? = null
+    private var appliedStylesGeneration = NO_CONTENT_GENERATION
+    private val appliedStylesSelection = IntArray(4)
+
+    // the index of the spans of the current text, see spanIndex
+    private var currentSpanIndex: AztecSpanIndex? = null
+
+    /**
+     * The spans of the editor text, by type. Every new Editable of the editor gets its own index.
+     */
+    internal val spanIndex: AztecSpanIndex
+        get() {
+            val text = editableText
+            return currentSpanIndex?.takeIf { it.isIndexing(text) }
+                    ?: AztecSpanIndex.attach(text).also { currentSpanIndex = it }
+        }
+
     var consumeHistoryEvent: Boolean = false
 
     private var unknownBlockSpanStart = -1
@@ -288,6 +405,13 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     lateinit var history: History
 
+    /**
+     * The change currently being handled, recorded once per change and shared by the watchers that need it. The
+     * changes made while the text changed listeners are disabled aren't recorded, so they don't replace the change they
+     * are made from.
+     */
+    val textChangedEvent = TextChangedEvent()
+
     lateinit var inlineFormatter: InlineFormatter
     lateinit var blockFormatter: BlockFormatter
     lateinit var lineBlockFormatter: LineBlockFormatter
@@ -299,6 +423,21 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     var plugins: ArrayList<IAztecPlugin> = ArrayList()
 
+    // Used by fromHtmlAsync(), parsing on the background and setting the text on the main thread
+    internal var htmlParsingDispatcher: CoroutineDispatcher = Dispatchers.Default
+    private val htmlLoadingScope = CoroutineScope(SupervisorJob() + Dispatchers.Main)
+    private var htmlLoadingJob: Job? = null
+
+    // The plugins prepared for the HTML conversions. Rebuilt only when the plugin list has changed.
+    private var compiledPlugins = AztecPluginSet.EMPTY
+    val pluginSet: AztecPluginSet
+        get() {
+            if (!compiledPlugins.isBuiltFrom(plugins)) {
+                compiledPlugins = AztecPluginSet(plugins)
+            }
+            return compiledPlugins
+        }
+
     var widthMeasureSpec: Int = 0
 
     var verticalParagraphPadding: Int = 0
@@ -319,6 +458,9 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     val contentChangeWatcher = AztecContentChangeWatcher()
 
+    // batches the drawables coming from the media loaders into one relayout or redraw per frame
+    private val mediaUpdateScheduler = MediaUpdateScheduler(this)
+
     var lastPressedXCoord: Int = 0
     var lastPressedYCoord: Int = 0
 
@@ -383,6 +525,22 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         fun onVisibility(visibility: Int)
     }
 
+    interface OnHtmlLoadedListener {
+        fun onHtmlLoaded()
+    }
+
+    /**
+     * A load started by [fromHtmlAsync].
+     */
+    class HtmlLoading internal constructor(private val job: Job) {
+        val isDone: Boolean
+            get() = job.isCompleted
+
+        fun cancel() {
+            job.cancel()
+        }
+    }
+
     constructor(context: Context) : super(context) {
         alignmentRendering = DEFAULT_ALIGNMENT_RENDERING
         init(null)
@@ -453,6 +611,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
         historyEnable = styles.getBoolean(R.styleable.AztecText_historyEnable, historyEnable)
         historySize = styles.getInt(R.styleable.AztecText_historySize, historySize)
+        historyMode = History.Mode.values()[styles.getInt(R.styleable.AztecText_historyMode, historyMode.ordinal)]
 
         commentsVisible = styles.getBoolean(R.styleable.AztecText_commentsVisible, commentsVisible)
 
@@ -563,6 +722,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         }
 
         history = History(historyEnable, historySize)
+        history.mode = historyMode
 
         // triggers ClickableSpan onClick() events
         movementMethod = EnhancedMovementMethod
@@ -863,6 +1023,9 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     }
 
     private fun install() {
+        // the shared event has to be recorded before any other watcher reads it
+        addTextChangedEventWatcher()
+
         ParagraphBleedAdjuster.install(this)
         ParagraphCollapseAdjuster.install(this)
 
@@ -904,17 +1067,67 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         addTextChangedListener(this)
     }
 
+    private fun addTextChangedEventWatcher() {
+        addTextChangedListener(object : TextWatcher {
+            override fun beforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
+                if (isTextChangedListenerDisabled()) return
+                textChangedEvent.onBeforeTextChanged(text, start, count, after)
+            }
+
+            override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
+                if (isTextChangedListenerDisabled()) return
+                textChangedEvent.onTextChanged(text, start, before, count)
+            }
+
+            override fun afterTextChanged(text: Editable) {
+                contentGeneration++
+                if (!isTextChangedListenerDisabled()) {
+                    sourceSnapshot = null
+                }
+            }
+        })
+    }
+
+    override fun setEditableFactory(factory: Editable.Factory) {
+        editableFactory = factory
+        super.setEditableFactory(editableFactoryOf(factory))
+    }
+
+    private fun currentEditableFactory(): Editable.Factory {
+        return if (::editableFactory.isInitialized) editableFactory else Editable.Factory.getInstance()
+    }
+
+    private fun editableFactoryOf(factory: Editable.Factory): Editable.Factory {
+        if (!isChangeTrackingEnabled) {
+            return factory
+        }
+
+        // every new Editable gets the watcher, the NoCopySpan keeps it from being carried over to copies of the text
+        return object : Editable.Factory() {
+            override fun newEditable(source: CharSequence): Editable {
+                val editable = factory.newEditable(source)
+                editable.setSpan(contentGenerationWatcher, 0, editable.length, Spanned.SPAN_INCLUSIVE_INCLUSIVE)
+                return editable
+            }
+        }
+    }
+
     private fun addHistoryLoggingWatcher() {
         val historyLoggingWatcher = object : TextWatcher {
             override fun beforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
                 if (!isViewInitialized) return
-                if (!isTextChangedListenerDisabled() && !consumeHistoryEvent) {
+                val isUserChange = !isTextChangedListenerDisabled() && !consumeHistoryEvent
+                if (history.mode == History.Mode.DELTA) {
+                    // deltas have to follow every change, including the programmatic ones, to stay applicable
+                    history.beforeTextChanged(this@AztecText, text, start, count, isUserChange)
+                } else if (isUserChange) {
                     history.beforeTextChanged(this@AztecText)
                 }
             }
 
             override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
                 if (!isViewInitialized) return
+                history.onTextChanged(this@AztecText, start, before, count)
             }
 
             override fun afterTextChanged(text: Editable) {
@@ -923,7 +1136,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                     return
                 }
 
-                isMediaAdded = text.getSpans(0, text.length, AztecMediaSpan::class.java).isNotEmpty()
+                isMediaAdded = spanIndex.hasSpans(AztecMediaSpan::class.java)
 
                 if (consumeHistoryEvent) {
                     consumeHistoryEvent = false
@@ -947,6 +1160,10 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
         removeTextChangedListener(this)
+        // a pending load would otherwise keep the editor alive and set the text of the detached view
+        htmlLoadingScope.coroutineContext.cancelChildren()
+        htmlLoadingJob = null
+
         if (addLinkDialog != null && addLinkDialog!!.isShowing) {
             addLinkDialog!!.dismiss()
         }
@@ -968,12 +1185,15 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         val savedState = state as SavedState
         super.onRestoreInstanceState(savedState.superState)
         val customState = savedState.state
-        val array = InstanceStateUtils.readAndPurgeTempInstance<ArrayList<String>>(HISTORY_LIST_KEY, ArrayList<String>(), savedState.state)
+        // the content, the last input and the history from the newest to the oldest entry, see onSaveInstanceState
+        val retained = InstanceStateUtils.readAndPurgeTempStrings(RETAINED_HTML_KEY, savedState.state) ?: emptyList()
         val list = LinkedList<String>()
 
-        list += array
+        for (i in retained.size - 1 downTo 2) {
+            list.add(retained[i] ?: "")
+        }
         val historyCursor = customState.getInt(HISTORY_CURSOR_KEY)
-        val inputLast = InstanceStateUtils.readAndPurgeTempInstance(INPUT_LAST_KEY, "", savedState.state)
+        val inputLast = retained.getOrNull(1) ?: ""
         // if cursor does not match the number of history entries, it means the temp file with history has been deleted
         if (historyCursor == list.size) {
             history.historyList = list
@@ -986,7 +1206,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         customState.getByteArray(RETAINED_INITIAL_HTML_PARSED_SHA256_KEY)?.let {
             initialEditorContentParsedSHA256 = it
         }
-        val retainedHtml = InstanceStateUtils.readAndPurgeTempInstance<String>(RETAINED_HTML_KEY, "", savedState.state)
+        val retainedHtml = retained.getOrNull(0) ?: ""
         fromHtml(retainedHtml)
 
         val retainedSelectionStart = customState.getInt(SELECTION_START_KEY)
@@ -1010,8 +1230,8 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
             if (retainedBlockHtmlIndex != -1) {
                 val unknownSpan = text.getSpans(retainedBlockHtmlIndex, retainedBlockHtmlIndex + 1, UnknownHtmlSpan::class.java).firstOrNull()
                 if (unknownSpan != null) {
-                    val retainedBlockHtml = InstanceStateUtils.readAndPurgeTempInstance<String>(BLOCK_EDITOR_HTML_KEY, "",
-                            savedState.state)
+                    val retainedBlockHtml = InstanceStateUtils.readAndPurgeTempStrings(BLOCK_EDITOR_HTML_KEY,
+                            savedState.state)?.firstOrNull() ?: ""
                     showBlockEditorDialog(unknownSpan, retainedBlockHtml)
                 }
             }
@@ -1034,12 +1254,16 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         val superState = super.onSaveInstanceState()
         val savedState = superState?.let { SavedState(it) }
         val bundle = Bundle()
-        InstanceStateUtils.writeTempInstance(context, externalLogger, HISTORY_LIST_KEY, ArrayList<String>(history.historyList), bundle)
+        // successive entries share most of their text, which the format stores once. Hence the newest history entry
+        // follows the last input and the content.
+        val retained = ArrayList<String>(history.historyList.size + 2)
+        retained.add(toHtml(false))
+        retained.add(history.inputLast)
+        history.historyList.descendingIterator().forEach { retained.add(it) }
+        InstanceStateUtils.writeTempStrings(context, externalLogger, RETAINED_HTML_KEY, retained, bundle)
         bundle.putInt(HISTORY_CURSOR_KEY, history.historyCursor)
-        InstanceStateUtils.writeTempInstance(context, externalLogger, INPUT_LAST_KEY, history.inputLast, bundle)
         bundle.putInt(VISIBILITY_KEY, visibility)
         bundle.putByteArray(RETAINED_INITIAL_HTML_PARSED_SHA256_KEY, initialEditorContentParsedSHA256)
-        InstanceStateUtils.writeTempInstance(context, externalLogger, RETAINED_HTML_KEY, toHtml(false), bundle)
         bundle.putInt(SELECTION_START_KEY, selectionStart)
         bundle.putInt(SELECTION_END_KEY, selectionEnd)
 
@@ -1060,7 +1284,8 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
             bundle.putBoolean(BLOCK_DIALOG_VISIBLE_KEY, true)
             bundle.putInt(BLOCK_EDITOR_START_INDEX_KEY, unknownBlockSpanStart)
-            InstanceStateUtils.writeTempInstance(context, externalLogger, BLOCK_EDITOR_HTML_KEY, source?.getPureHtml(false), bundle)
+            InstanceStateUtils.writeTempStrings(context, externalLogger, BLOCK_EDITOR_HTML_KEY,
+                    listOf(source?.getPureHtml(false)), bundle)
         }
 
         bundle.putBoolean(IS_MEDIA_ADDED_KEY, isMediaAdded)
@@ -1115,12 +1340,15 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     fun indent() {
         history.beforeTextChanged(this@AztecText)
         blockFormatter.indent()
+        // the nesting levels are changed in place
+        contentGeneration++
         contentChangeWatcher.notifyContentChanged()
     }
 
     fun outdent() {
         history.beforeTextChanged(this@AztecText)
         blockFormatter.outdent()
+        contentGeneration++
         contentChangeWatcher.notifyContentChanged()
     }
 
@@ -1286,12 +1514,18 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
             newSelStart--
         }
 
-        AztecTextFormat.values().forEach {
-            if (contains(it, newSelStart, newSelEnd)) {
-                styles.add(it)
-            }
+        // without the tracking the span changes don't count as edits
+        if (isChangeTrackingEnabled
+                && appliedStylesText === editableText && appliedStylesGeneration == contentGeneration
+                && appliedStylesSelection[0] == newSelStart && appliedStylesSelection[1] == newSelEnd
+                && appliedStylesSelection[2] == this.selectionStart && appliedStylesSelection[3] == this.selectionEnd) {
+            styles.addAll(appliedStyles)
+            return styles
         }
 
+        // all the formats are resolved at once, the ones of the plugins are still checked one by one
+        styles.addAll(appliedStylesResolver.resolve(newSelStart, newSelEnd))
+
         plugins.filter { it is IToolbarButton }
                 .flatMap { (it as IToolbarButton).action.textFormats }
                 .forEach {
@@ -1300,6 +1534,14 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                     }
                 }
 
+        appliedStyles = ArrayList(styles)
+        appliedStylesText = editableText
+        appliedStylesGeneration = contentGeneration
+        appliedStylesSelection[0] = newSelStart
+        appliedStylesSelection[1] = newSelEnd
+        appliedStylesSelection[2] = this.selectionStart
+        appliedStylesSelection[3] = this.selectionEnd
+
         return styles
     }
 
@@ -1432,10 +1674,9 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         if (!isViewInitialized) return
 
         if (isEventObservableCandidate()) {
-            // we need to make a copy to preserve the contents as they were before the change
-            val textCopy = SpannableStringBuilder(text)
-            val data = BeforeTextChangedEventData(textCopy, start, count, after)
-            textWatcherEventBuilder.beforeEventData = data
+            // only the replaced text is kept, a sequence rebuilds the text before it from the text after its events
+            textWatcherEventBuilder.beforeEventData = BeforeTextChangedEventData(ReplacedText(text, start, count),
+                    start, count, after, text.length, EndOfBufferMarkerAdder.safeLength(text))
         }
     }
 
@@ -1443,8 +1684,8 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         if (!isViewInitialized) return
 
         if (isEventObservableCandidate()) {
-            val textCopy = SpannableStringBuilder(text)
-            val data = OnTextChangedEventData(textCopy, start, before, count)
+            val insertedText = text.subSequence(start, start + count).toString()
+            val data = OnTextChangedEventData(null, start, before, count, text.length, insertedText)
             textWatcherEventBuilder.onEventData = data
         }
     }
@@ -1464,8 +1705,8 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         }
 
         if (isEventObservableCandidate()) {
-            val textCopy = Editable.Factory.getInstance().newEditable(editableText)
-            val data = AfterTextChangedEventData(textCopy)
+            // no copy, the sequences only look at the whole text after the event while the event gets added below
+            val data = AfterTextChangedEventData(editableText)
             textWatcherEventBuilder.afterEventData = data
 
             // now that we have a full event cycle (before, on, and after) we can add the event to the observation queue
@@ -1502,16 +1743,212 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     }
 
     open fun fromHtml(source: String, isInit: Boolean = true) {
+        cancelHtmlLoading()
+
+        val parser = AztecParser(alignmentRendering, pluginSet)
+        val builder = buildSpannedHtml(source, parser, isInCalypsoMode, isInGutenbergMode, shouldSkipTidying(),
+                shouldIgnoreWhitespace())
+
+        setSpannedHtml(builder, isInit)
+    }
+
+    /**
+     * Same as [fromHtml], except that the HTML is parsed on a background thread and only the resulting text is set
+     * on the main thread, when [onHtmlLoadedListener] gets notified. Any load still pending is dropped, and so is
+     * this one if [fromHtml] or [fromHtmlAsync] gets called, or the editor gets detached from its window, before it
+     * is done.
+     *
+     * @return the handle to cancel the load with.
+     */
+    @JvmOverloads
+    fun fromHtmlAsync(source: String, isInit: Boolean = true,
+                      onHtmlLoadedListener: OnHtmlLoadedListener? = null): HtmlLoading {
+        cancelHtmlLoading()
+
+        // the configuration is read here, the parsing must not touch the view
+        val parser = AztecParser(alignmentRendering, pluginSet)
+        val calypsoMode = isInCalypsoMode
+        val gutenbergMode = isInGutenbergMode
+        val skipTidying = shouldSkipTidying()
+        val ignoreWhitespace = shouldIgnoreWhitespace()
+
+        val job = htmlLoadingScope.launch {
+            val builder = withContext(htmlParsingDispatcher) {
+                buildSpannedHtml(source, parser, calypsoMode, gutenbergMode, skipTidying, ignoreWhitespace)
+            }
+
+            htmlLoadingJob = null
+            setSpannedHtml(builder, isInit)
+            onHtmlLoadedListener?.onHtmlLoaded()
+        }
+        htmlLoadingJob = job
+
+        return HtmlLoading(job)
+    }
+
+    private fun cancelHtmlLoading() {
+        htmlLoadingJob?.cancel()
+        htmlLoadingJob = null
+    }
+
+    /**
+     * Remembers the [html] the text was serialized to for the source editor, see [fromSourceHtml].
+     */
+    internal fun keepSourceSnapshot(html: String) {
+        sourceSnapshot = html.replace(AztecCursorSpan.AZTEC_CURSOR_TAG, "")
+    }
+
+    /**
+     * Loads the [source] coming back from the source editor like [fromHtml], except that only the top level blocks
+     * which differ from the HTML passed to [keepSourceSnapshot] get parsed. Their spans take the place of the old
+     * ones in the current text, the other blocks keep their spans and loaded media. Falls back to [fromHtml] when the
+     * text changed since the snapshot or the blocks can't be matched to it.
+     */
+    internal fun fromSourceHtml(source: String) {
+        val snapshot = sourceSnapshot
+        sourceSnapshot = null
+        if (snapshot == null || !spliceSourceHtml(source, snapshot)) {
+            fromHtml(source)
+        }
+    }
+
+    // parses the blocks of the source which differ from the previous one into the text, false if it can't be done
+    private fun spliceSourceHtml(source: String, previousSource: String): Boolean {
+        // the modes and plugins rewriting the whole HTML or text can't be applied to a part of it
+        if (isInCalypsoMode || isInGutenbergMode || !shouldIgnoreWhitespace() ||
+                pluginSet.htmlPreprocessors.isNotEmpty() || pluginSet.spanPostprocessors.isNotEmpty()) {
+            return false
+        }
+
+        val cursorIndex = source.indexOf(SOURCE_CURSOR_TAG)
+        val html = if (cursorIndex == -1) source else source.removeRange(cursorIndex, cursorIndex + SOURCE_CURSOR_TAG.length)
+
+        val oldBlocks = HtmlBlockSplitter.split(previousSource) ?: return false
+        val newBlocks = HtmlBlockSplitter.split(html) ?: return false
+        if (oldBlocks.isEmpty() || newBlocks.isEmpty()) {
+            return false
+        }
+        val text = editableText
+        val oldStarts = HtmlBlockSplitter.findBlockStarts(text, oldBlocks) ?: return false
+
+        // the blocks from first until the ends changed, the ones before and after them are the same
+        var first = 0
+        while (first < oldBlocks.size && first < newBlocks.size && oldBlocks[first].html == newBlocks[first].html) {
+            first++
+        }
+        var oldEnd = oldBlocks.size
+        var newEnd = newBlocks.size
+        while (oldEnd > first && newEnd > first && oldBlocks[oldEnd - 1].html == newBlocks[newEnd - 1].html) {
+            oldEnd--
+            newEnd--
+        }
+
+        // the block with the cursor is parsed again, the position of the cursor comes from it
+        val cursorBlock = if (cursorIndex == -1) -1 else HtmlBlockSplitter.blockAt(newBlocks, cursorIndex)
+        if (cursorBlock != -1) {
+            first = Math.min(first, cursorBlock)
+            if (cursorBlock >= newEnd) {
+                oldEnd += cursorBlock + 1 - newEnd
+                newEnd = cursorBlock + 1
+            }
+        }
+
+        if (first == oldEnd && first == newEnd) {
+            return true
+        }
+
+        // whitespace at the start of a block is dropped after whitespace, so it depends on the block before it
+        if (oldEnd < oldBlocks.size && newEnd < newBlocks.size && HtmlBlockSplitter.startsWithWhitespace(newBlocks[newEnd])) {
+            oldEnd++
+            newEnd++
+        }
+
+        // the last block has no newline after it, so the one before changes too when blocks are added or removed there
+        if (oldEnd == oldBlocks.size && first > 0 && (first == oldEnd || first == newEnd)) {
+            first--
+        }
+
+        val start = oldStarts[first]
+        val end = if (oldEnd < oldBlocks.size) oldStarts[oldEnd] else text.length
+        if (first == newEnd) {
+            disableTextChangedListener()
+            text.delete(start, end)
+            enableTextChangedListener()
+            return true
+        }
+
+        // the blocks around the changed ones are parsed with them, for the whitespace and the newlines between them
+        val contextStart = Math.max(0, first - 1)
+        val contextEnd = Math.min(newBlocks.size, newEnd + 1)
+        val chunk = StringBuilder()
+        for (i in contextStart until contextEnd) {
+            val block = newBlocks[i]
+            if (i == cursorBlock) {
+                val position = Math.min(Math.max(cursorIndex, block.contentStart), block.contentEnd) - block.start
+                chunk.append(block.html, 0, position).append(SOURCE_CURSOR_TAG).append(block.html, position, block.html.length)
+            } else {
+                chunk.append(block.html)
+            }
+        }
+
+        val builder = buildSpannedHtml(chunk.toString(), AztecParser(alignmentRendering, pluginSet), false, false,
+                shouldSkipTidying(), true)
+        val chunkStarts = HtmlBlockSplitter.findBlockStarts(builder, newBlocks.subList(contextStart, contextEnd))
+                ?: return false
+        val replacementStart = chunkStarts[first - contextStart]
+        val replacementEnd = if (newEnd < contextEnd) chunkStarts[newEnd - contextStart] else builder.length
+
+        var cursorPosition = -1
+        builder.getSpans(0, builder.length, AztecCursorSpan::class.java).forEach {
+            cursorPosition = builder.getSpanStart(it)
+            builder.removeSpan(it)
+        }
+
+        val imageSpans = builder.getSpans(replacementStart, replacementEnd, AztecImageSpan::class.java).asList()
+        val videoSpans = builder.getSpans(replacementStart, replacementEnd, AztecVideoSpan::class.java).asList()
+        builder.getSpans(replacementStart, replacementEnd, AztecDynamicImageSpan::class.java).forEach {
+            it.textView = WeakReference(this)
+        }
+
+        disableTextChangedListener()
+        text.replace(start, end, builder, replacementStart, replacementEnd)
+        enableTextChangedListener()
+
+        if (cursorPosition != -1) {
+            val position = start + Math.min(Math.max(cursorPosition, replacementStart), replacementEnd) - replacementStart
+            setSelection(Math.min(position, text.length))
+        }
+
+        if (isInitialHTMLSHAMissing(initialEditorContentParsedSHA256)) {
+            initialEditorContentParsedSHA256 = calculateInitialHTMLSHA(toPlainHtml(false), initialEditorContentParsedSHA256)
+            unchangedContentGeneration = contentGeneration
+        }
+
+        loadImages(imageSpans)
+        loadVideos(videoSpans)
+        mediaCallback?.mediaLoadingStarted()
+        return true
+    }
+
+    // Builds the detached text for the HTML. Doesn't touch the view, so it can run on any thread.
+    private fun buildSpannedHtml(source: String, parser: AztecParser, isInCalypsoMode: Boolean,
+                                 isInGutenbergMode: Boolean, shouldSkipTidying: Boolean,
+                                 shouldIgnoreWhitespace: Boolean): SpannableStringBuilder {
         val builder = SpannableStringBuilder()
-        val parser = AztecParser(alignmentRendering, plugins)
 
         var cleanSource = CleaningUtils.cleanNestedBoldTags(source)
         cleanSource = Format.removeSourceEditorFormatting(cleanSource, isInCalypsoMode, isInGutenbergMode)
-        builder.append(parser.fromHtml(cleanSource, context, shouldSkipTidying(), shouldIgnoreWhitespace()))
+        builder.append(parser.fromHtml(cleanSource, context, shouldSkipTidying, shouldIgnoreWhitespace))
 
         Format.preProcessSpannedText(builder, isInCalypsoMode)
 
         switchToAztecStyle(builder, 0, builder.length)
+
+        return builder
+    }
+
+    private fun setSpannedHtml(builder: SpannableStringBuilder, isInit: Boolean) {
+        sourceSnapshot = null
         disableTextChangedListener()
 
         builder.getSpans(0, builder.length, AztecDynamicImageSpan::class.java).forEach {
@@ -1526,8 +1963,9 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
         setSelection(cursorPosition)
 
-        if (isInit) {
+        if (isInit && isInitialHTMLSHAMissing(initialEditorContentParsedSHA256)) {
             initialEditorContentParsedSHA256 = calculateInitialHTMLSHA(toPlainHtml(false), initialEditorContentParsedSHA256)
+            unchangedContentGeneration = contentGeneration
         }
 
         loadImages()
@@ -1535,9 +1973,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         mediaCallback?.mediaLoadingStarted()
     }
 
-    private fun loadImages() {
-        val spans = this.text.getSpans(0, text.length, AztecImageSpan::class.java)
-
+    private fun loadImages(spans: List<AztecImageSpan> = spanIndex.getSpans(AztecImageSpan::class.java)) {
         // Avoid the work of getting placeholder drawable if there are no images. This becomes a big
         // on screens that have many AztecText views
         if (spans.isEmpty()) {
@@ -1566,19 +2002,14 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                 }
 
                 private fun replaceImage(drawable: Drawable?) {
-                    it.drawable = drawable
-                    post {
-                        refreshText(false)
-                    }
+                    mediaUpdateScheduler.replaceDrawable(it, drawable)
                 }
             }
             imageGetter?.loadImage(it.getSource(), callbacks, maxDimension, minImagesWidth)
         }
     }
 
-    private fun loadVideos() {
-        val spans = this.text.getSpans(0, text.length, AztecVideoSpan::class.java)
-
+    private fun loadVideos(spans: List<AztecVideoSpan> = spanIndex.getSpans(AztecVideoSpan::class.java)) {
         // Avoid the work of getting placeholder drawable if there are no videos. This becomes a big
         // on screens that have many AztecText views
         if (spans.isEmpty()) {
@@ -1606,10 +2037,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                 }
 
                 private fun replaceImage(drawable: Drawable?) {
-                    it.drawable = drawable
-                    post {
-                        refreshText(false)
-                    }
+                    mediaUpdateScheduler.replaceDrawable(it, drawable)
                 }
             }
             videoThumbnailGetter?.loadVideoThumbnail(it.getSource(), callbacks, maxImagesWidth, minImagesWidth)
@@ -1620,7 +2048,23 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     }
 
     open fun hasChanges(): EditorHasChanges {
-        return hasChanges(initialEditorContentParsedSHA256, toPlainHtml(false))
+        if (!isChangeTrackingEnabled) {
+            return hasChanges(initialEditorContentParsedSHA256, toPlainHtml(false))
+        }
+
+        val generation = contentGeneration
+        if (generation == unchangedContentGeneration) {
+            return EditorHasChanges.NO_CHANGES
+        }
+        if (generation != checkedContentGeneration) {
+            checkedContentChanges = hasChanges(initialEditorContentParsedSHA256, toPlainHtml(false))
+            checkedContentGeneration = generation
+            if (checkedContentChanges == EditorHasChanges.NO_CHANGES) {
+                // edited back to the initial content
+                unchangedContentGeneration = generation
+            }
+        }
+        return checkedContentChanges
     }
 
     // returns regular or "calypso" html depending on the mode
@@ -1651,19 +2095,36 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     // general function accepts any Spannable and converts it to platform agnostic HTML
     fun toPlainHtml(content: Spannable, withCursorTag: Boolean = false): String {
-        return if (Looper.myLooper() != Looper.getMainLooper()) {
+        // only the snapshot needs the main thread, the serialization runs on the caller's thread
+        val snapshot = if (Looper.myLooper() != Looper.getMainLooper()) {
             runBlocking {
                 withContext(Dispatchers.Main) {
-                    parseHtml(content, withCursorTag)
+                    snapshotHtml(content, withCursorTag)
                 }
             }
         } else {
-            parseHtml(content, withCursorTag)
+            snapshotHtml(content, withCursorTag, false)
         }
+        return snapshot.toPlainHtml()
     }
 
-    private fun parseHtml(content: Spannable, withCursorTag: Boolean): String {
-        val parser = AztecParser(alignmentRendering, plugins)
+    /**
+     * Captures the current content for [HtmlSnapshot.toPlainHtml], which can then run on any thread. Has to be called
+     * on the main thread.
+     */
+    fun snapshotHtml(withCursorTag: Boolean = false): HtmlSnapshot {
+        return snapshotHtml(text, withCursorTag)
+    }
+
+    fun snapshotHtml(content: Spannable, withCursorTag: Boolean = false): HtmlSnapshot {
+        return snapshotHtml(content, withCursorTag, true)
+    }
+
+    // serialized right away on the main thread, the content can keep the spans of the editor, which get the alignment
+    // of the blocks written to their style attribute as before
+    private fun snapshotHtml(content: Spannable, withCursorTag: Boolean, copySpans: Boolean): HtmlSnapshot {
+        val parser = AztecParser(alignmentRendering, pluginSet)
+        parser.isSpanIndexEnabled = isSpanIndexSerializerEnabled
         val output: SpannableStringBuilder
         try {
             output = SpannableStringBuilder(content)
@@ -1683,11 +2144,11 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
             output.setSpan(AztecCursorSpan(), selectionEnd, selectionEnd, Spanned.SPAN_MARK_MARK)
         }
 
-        parser.syncVisualNewlinesOfBlockElements(output)
-
-        Format.postProcessSpannedText(output, isInCalypsoMode)
+        if (copySpans) {
+            HtmlSnapshot.copySpans(output)
+        }
 
-        return EndOfBufferMarkerAdder.removeEndOfTextMarker(parser.toHtml(output, withCursorTag, shouldSkipTidying()))
+        return HtmlSnapshot(output, parser, isInCalypsoMode, withCursorTag, shouldSkipTidying())
     }
 
     // default behavior returns formatted HTML from this text
@@ -1859,7 +2320,10 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
         if (stealEditorFocus) {
             setFocusOnParentView()
         }
-        text = editableText
+        // the content stays the same so there is nothing to record
+        history.runWithoutRecording {
+            text = editableText
+        }
         setSelection(selStart, selEnd)
         enableTextChangedListener()
     }
@@ -1948,7 +2412,8 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     // Convert selected text to html and add it to clipboard
     fun copy(editable: Editable, start: Int, end: Int) {
         val selectedText = editable.subSequence(start, end)
-        val parser = AztecParser(alignmentRendering, plugins)
+        val parser = AztecParser(alignmentRendering, pluginSet)
+        parser.isSpanIndexEnabled = isSpanIndexSerializerEnabled
         val output = SpannableStringBuilder(selectedText)
 
         clearMetaSpans(output)
@@ -2020,7 +2485,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                 val itemToPaste = when {
                     !firstItem.text.isNullOrEmpty() -> {
                         val textToPaste = if (asPlainText) clip.getItemAt(0).coerceToText(context).toString()
-                        else clip.getItemAt(0).coerceToHtmlText(AztecParser(alignmentRendering, plugins))
+                        else clip.getItemAt(0).coerceToHtmlText(AztecParser(alignmentRendering, pluginSet))
                         IClipboardPastePlugin.PastedItem.HtmlText(textToPaste)
                     }
                     firstItem.uri != null -> {
@@ -2034,7 +2499,6 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                     }
                 }
                 if (itemToPaste != null) {
-                    val oldHtml = toPlainHtml().replace("<aztec_cursor>", "")
                     val pastedHtmlText: String = plugins.filterIsInstance<IClipboardPastePlugin<*>>()
                             .fold(null as? String?) { acc, plugin ->
                                 plugin.itemToHtml(itemToPaste, acc ?: selectedText?.takeIf { it.isNotBlank() }) ?: acc
@@ -2044,19 +2508,111 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                         is IClipboardPastePlugin.PastedItem.PastedIntent -> itemToPaste.intent.toString()
                     }
 
-                    val newHtml = oldHtml.replace(
-                            Constants.REPLACEMENT_MARKER_STRING,
-                            pastedHtmlText + "<" + AztecCursorSpan.AZTEC_CURSOR_TAG + ">"
-                    )
+                    if (!pasteInPlace(min, pastedHtmlText)) {
+                        val oldHtml = toPlainHtml().replace("<aztec_cursor>", "")
+                        val newHtml = oldHtml.replace(
+                                Constants.REPLACEMENT_MARKER_STRING,
+                                pastedHtmlText + "<" + AztecCursorSpan.AZTEC_CURSOR_TAG + ">"
+                        )
 
-                    fromHtml(newHtml, false)
-                    inlineFormatter.joinStyleSpans(0, length())
+                        fromHtml(newHtml, false)
+                        inlineFormatter.joinStyleSpans(0, length())
+                    }
                 }
             }
             contentChangeWatcher.notifyContentChanged()
         }
     }
 
+    // Parses only the pasted HTML and puts it in place of the replacement marker at the position, instead of parsing
+    // the whole text again with the HTML in it. Only done for inline content, which doesn't split the paragraph it goes
+    // into, false otherwise.
+    private fun pasteInPlace(position: Int, html: String): Boolean {
+        // the modes and plugins rewriting the whole HTML or text can't be applied to a part of it
+        if (isInCalypsoMode || isInGutenbergMode || !shouldIgnoreWhitespace() ||
+                pluginSet.htmlPreprocessors.isNotEmpty() || pluginSet.spanPostprocessors.isNotEmpty()) {
+            return false
+        }
+
+        val text = editableText
+        if (position >= text.length || text[position] != Constants.REPLACEMENT_MARKER_CHAR) {
+            return false
+        }
+
+        // whitespace at the edges of the pasted text collapses with the text around it
+        if (hasWhitespaceAtTheEdges(html)) {
+            return false
+        }
+
+        val fragment = buildSpannedHtml(html, AztecParser(alignmentRendering, pluginSet), false, false,
+                shouldSkipTidying(), true)
+        val isInline = fragment.getSpans(0, fragment.length, Any::class.java).all {
+            it is IAztecInlineSpan || it is AztecMediaSpan || it is AztecMediaClickableSpan
+        }
+        if (!isInline || fragment.contains(Constants.NEWLINE)) {
+            return false
+        }
+
+        // the media of the fragment are nested in the blocks around the marker
+        val nestingLevel = text.getSpans(position, position + 1, IAztecParagraphStyle::class.java)
+                .filter { text.getSpanStart(it) <= position && text.getSpanEnd(it) > position }
+                .maxOfOrNull { it.nestingLevel } ?: 0
+        fragment.getSpans(0, fragment.length, IAztecNestable::class.java).forEach { it.nestingLevel += nestingLevel }
+        fragment.getSpans(0, fragment.length, AztecDynamicImageSpan::class.java).forEach {
+            it.textView = WeakReference(this)
+        }
+        val imageSpans = fragment.getSpans(0, fragment.length, AztecImageSpan::class.java).asList()
+        val videoSpans = fragment.getSpans(0, fragment.length, AztecVideoSpan::class.java).asList()
+
+        // the spans around the marker keep the pasted text in or out of them the way they do with the marker
+        val end = position + fragment.length
+        val spans = text.getSpans(position, position + 1, Any::class.java)
+        val starts = IntArray(spans.size) { shiftPastedPosition(text.getSpanStart(spans[it]), position, fragment.length) }
+        val ends = IntArray(spans.size) { shiftPastedPosition(text.getSpanEnd(spans[it]), position, fragment.length) }
+        val flags = IntArray(spans.size) { text.getSpanFlags(spans[it]) }
+
+        disableTextChangedListener()
+        text.replace(position, position + 1, fragment)
+        spans.forEachIndexed { i, span ->
+            if (text.getSpanStart(span) != starts[i] || text.getSpanEnd(span) != ends[i]) {
+                text.setSpan(span, starts[i], ends[i], flags[i])
+            }
+        }
+        enableTextChangedListener()
+
+        sourceSnapshot = null
+        setSelection(end)
+        inlineFormatter.joinStyleSpans(position, end)
+
+        loadImages(imageSpans)
+        loadVideos(videoSpans)
+        mediaCallback?.mediaLoadingStarted()
+        return true
+    }
+
+    // where a position of the text ends up once the marker at the paste position is replaced with the pasted text
+    private fun shiftPastedPosition(index: Int, position: Int, pastedLength: Int): Int {
+        return if (index <= position) index else index - 1 + pastedLength
+    }
+
+    // whether the first or the last character of the text of the HTML, outside of its tags, is whitespace, or whether
+    // that can't be told
+    private fun hasWhitespaceAtTheEdges(html: String): Boolean {
+        var first = 0
+        while (first < html.length && html[first] == '<') {
+            val tagEnd = html.indexOf('>', first)
+            if (tagEnd == -1) return true
+            first = tagEnd + 1
+        }
+        var last = html.length - 1
+        while (last >= first && html[last] == '>') {
+            val tagStart = html.lastIndexOf('<', last)
+            if (tagStart == -1) return true
+            last = tagStart - 1
+        }
+        return first <= last && (Character.isWhitespace(html[first]) || Character.isWhitespace(html[last]))
+    }
+
     fun clearMetaSpans(text: Spannable) {
         BaseInputConnection.removeComposingSpans(text)
         text.getSpans(0, text.length, SuggestionSpan::class.java).forEach { text.removeSpan(it) }
@@ -2163,7 +2719,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
             val spanStart = text.getSpanStart(unknownHtmlSpan)
 
             val textBuilder = SpannableStringBuilder()
-            textBuilder.append(AztecParser(alignmentRendering, plugins).fromHtml(source.getPureHtml(), context).trim())
+            textBuilder.append(AztecParser(alignmentRendering, pluginSet).fromHtml(source.getPureHtml(), context).trim())
             setSelection(spanStart)
 
             disableTextChangedListener()
@@ -2252,7 +2808,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     fun removeMedia(attributePredicate: AttributePredicate) {
         history.beforeTextChanged(this@AztecText)
-        text.getSpans(0, text.length, AztecMediaSpan::class.java)
+        spanIndex.getSpans(AztecMediaSpan::class.java)
                 .filter {
                     attributePredicate.matches(it.attributes)
                 }
@@ -2312,7 +2868,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
 
     fun replaceMediaSpan(attributePredicate: AttributePredicate, aztecMediaSpan: AztecMediaSpan) {
         history.beforeTextChanged(this@AztecText)
-        text.getSpans(0, text.length, AztecMediaSpan::class.java).firstOrNull {
+        spanIndex.getSpans(AztecMediaSpan::class.java).firstOrNull {
             attributePredicate.matches(it.attributes)
         }?.let { mediaSpan ->
             val start = text.getSpanStart(mediaSpan)
@@ -2336,21 +2892,48 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     }
 
     fun updateElementAttributes(attributePredicate: AttributePredicate, attrs: AztecAttributes) {
-        text.getSpans(0, text.length, IAztecAttributedSpan::class.java).firstOrNull {
+        spanIndex.getSpans(IAztecAttributedSpan::class.java).firstOrNull {
             attributePredicate.matches(it.attributes)
-        }?.attributes = attrs
+        }?.let {
+            replaceElementAttributes(it, attrs)
+        }
+    }
+
+    /**
+     * Same as [updateElementAttributes], for the first element whose attribute [attributeName] has the
+     * [attributeValue]. The elements are looked up by the value instead of going over all of them.
+     */
+    fun updateElementAttributes(attributeName: String, attributeValue: String, attrs: AztecAttributes) {
+        spanIndex.getAttributedSpans(attributeName, attributeValue).firstOrNull()?.let {
+            replaceElementAttributes(it, attrs)
+        }
+    }
+
+    private fun replaceElementAttributes(span: IAztecAttributedSpan, attrs: AztecAttributes) {
+        span.attributes = attrs
+        spanIndex.onAttributesChanged(span)
+        contentGeneration++
     }
 
     fun getElementPosition(attributePredicate: AttributePredicate): Int? {
-        return text.getSpans(0, text.length, IAztecAttributedSpan::class.java).firstOrNull {
+        return spanIndex.getSpans(IAztecAttributedSpan::class.java).firstOrNull {
             attributePredicate.matches(it.attributes)
         }?.let {
             editableText.getSpanStart(it)
         }
     }
 
+    /**
+     * Same as [getElementPosition], for the first element whose attribute [attributeName] has the [attributeValue].
+     */
+    fun getElementPosition(attributeName: String, attributeValue: String): Int? {
+        return spanIndex.getAttributedSpans(attributeName, attributeValue).firstOrNull()?.let {
+            editableText.getSpanStart(it)
+        }
+    }
+
     fun resetAttributedMediaSpan(attributePredicate: AttributePredicate) {
-        text.getSpans(0, text.length, AztecMediaSpan::class.java)
+        spanIndex.getSpans(AztecMediaSpan::class.java)
                 .filter {
                     attributePredicate.matches(it.attributes) && text.getSpanStart(it) != -1 && text.getSpanEnd(it) != -1
                 }
@@ -2360,7 +2943,7 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     }
 
     fun setOverlayLevel(attributePredicate: AttributePredicate, index: Int, level: Int) {
-        text.getSpans(0, text.length, AztecMediaSpan::class.java)
+        spanIndex.getSpans(AztecMediaSpan::class.java)
                 .filter {
                     attributePredicate.matches(it.attributes)
                 }
@@ -2369,8 +2952,20 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                 }
     }
 
+    /**
+     * Same as [setOverlayLevel], for the media whose attribute [attributeName] has the [attributeValue]. The media
+     * are looked up by the value instead of going over all of them.
+     */
+    fun setOverlayLevel(attributeName: String, attributeValue: String, index: Int, level: Int) {
+        spanIndex.getAttributedSpans(attributeName, attributeValue)
+                .filterIsInstance<AztecMediaSpan>()
+                .forEach {
+                    it.setOverlayLevel(index, level)
+                }
+    }
+
     fun setOverlay(attributePredicate: AttributePredicate, index: Int, overlay: Drawable?, gravity: Int) {
-        text.getSpans(0, text.length, AztecMediaSpan::class.java)
+        spanIndex.getSpans(AztecMediaSpan::class.java)
                 .filter {
                     attributePredicate.matches(it.attributes)
                 }
@@ -2378,19 +2973,33 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
                     // set the new overlay drawable
                     it.setOverlay(index, overlay, gravity)
 
-                    invalidate()
+                    mediaUpdateScheduler.redraw()
+                }
+    }
+
+    /**
+     * Same as [setOverlay], for the media whose attribute [attributeName] has the [attributeValue].
+     */
+    fun setOverlay(attributeName: String, attributeValue: String, index: Int, overlay: Drawable?, gravity: Int) {
+        spanIndex.getAttributedSpans(attributeName, attributeValue)
+                .filterIsInstance<AztecMediaSpan>()
+                .forEach {
+                    // set the new overlay drawable
+                    it.setOverlay(index, overlay, gravity)
+
+                    mediaUpdateScheduler.redraw()
                 }
     }
 
     fun clearOverlays(attributePredicate: AttributePredicate) {
-        text.getSpans(0, text.length, AztecMediaSpan::class.java)
+        spanIndex.getSpans(AztecMediaSpan::class.java)
                 .filter {
                     attributePredicate.matches(it.attributes)
                 }
                 .forEach {
                     it.clearOverlays()
 
-                    invalidate()
+                    mediaUpdateScheduler.redraw()
                     post {
                         // Refresh last history item so undo/redo works properly
                         // for media.
@@ -2404,14 +3013,20 @@ open class AztecText : AppCompatEditText, TextWatcher, UnknownHtmlSpan.OnUnknown
     }
 
     fun getAllElementAttributes(attributePredicate: AttributePredicate): List<AztecAttributes> {
-        return text
-                .getSpans(0, text.length, IAztecAttributedSpan::class.java)
+        return spanIndex.getSpans(IAztecAttributedSpan::class.java)
                 .filter {
                     attributePredicate.matches(it.attributes)
                 }
                 .map { it.attributes }
     }
 
+    /**
+     * Same as [getAllElementAttributes], for the elements whose attribute [attributeName] has the [attributeValue].
+     */
+    fun getAllElementAttributes(attributeName: String, attributeValue: String): List<AztecAttributes> {
+        return spanIndex.getAttributedSpans(attributeName, attributeValue).map { it.attributes }
+    }
+
     override fun onUnknownHtmlTapped(unknownHtmlSpan: UnknownHtmlSpan) {
         showBlockEditorDialog(unknownHtmlSpan)
     }
@@ -2,15 +2,44 @@ package org.wordpress.aztec
 
 import android.os.Handler
 import android.os.Looper
+import android.text.Editable
+import android.text.Spanned
 import android.widget.EditText
 import org.wordpress.aztec.source.SourceViewEditText
 import java.util.LinkedList
 
 class History(val historyEnabled: Boolean, val historySize: Int) {
+    enum class Mode {
+        /**
+         * Every history step is a formatted HTML copy of the whole document.
+         */
+        SNAPSHOT,
+
+        /**
+         * History steps of the visual editor only keep the edited range, see [TextDelta]. The source editor keeps
+         * using snapshots. Deltas are bound to the editor content so they are not retained across instance state.
+         */
+        DELTA
+    }
+
+    var mode = Mode.SNAPSHOT
+        set(value) {
+            if (field != value) {
+                clearHistory()
+            }
+            field = value
+        }
+
     var historyCursor = 0
     var historyList = LinkedList<String>()
     var inputLast: String = ""
 
+    var deltaCursor = 0
+    var deltaList = LinkedList<TextDelta>()
+    private var pendingDelta: TextDelta? = null
+    private var deltaEditText: AztecText? = null
+    private var isRecordingDisabled = false
+
     private var historyListener: IHistoryListener? = null
 
     private var historyWorking = false
@@ -24,6 +53,10 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
     // Time in ms to wait before applying change history to the stack
     var historyThrottleTime = 500L
 
+    private val deltaRunnable = Runnable {
+        deltaEditText?.let { commitDelta(it) }
+    }
+
     init {
         if (historyEnabled) {
             historyRunnable = HistoryRunnable(this)
@@ -33,6 +66,22 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
     }
 
     fun beforeTextChanged(editText: EditText) {
+        if (isDeltaEditor(editText)) {
+            // the change is not known upfront (e.g. formatting), but it is made around the selection
+            val text = (editText as AztecText).text
+            val start = affectedRangeStart(text, editText.selectionStart)
+            val end = affectedRangeEnd(text, editText.selectionEnd)
+            var rangeStart = start
+            var rangeEnd = end
+            // the spans changed in place can be any of the ones overlapping it
+            text.getSpans(start, end, Any::class.java).filter { TextDelta.isTracked(text, it) }.forEach {
+                rangeStart = Math.min(rangeStart, text.getSpanStart(it))
+                rangeEnd = Math.max(rangeEnd, text.getSpanEnd(it))
+            }
+            recordDelta(editText, text, rangeStart, rangeEnd, true)
+            return
+        }
+
         if (historyRunnable != null && historyEnabled && !historyWorking) {
             mainHandler.removeCallbacks(historyRunnable)
             if (!textChangedPending) {
@@ -49,6 +98,97 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
         }
     }
 
+    /**
+     * Records the upcoming replacement of [count] chars at [start] in [Mode.DELTA]. Changes not made by the user
+     * only start a new step if there already is history that would otherwise get out of sync with the content.
+     */
+    fun beforeTextChanged(editText: AztecText, text: CharSequence, start: Int, count: Int, isUserChange: Boolean) {
+        if (isDeltaEditor(editText) && text is Spanned) {
+            recordDelta(editText, text, start, start + count, isUserChange)
+        }
+    }
+
+    fun onTextChanged(editText: AztecText, start: Int, before: Int, count: Int) {
+        if (isDeltaEditor(editText) && !historyWorking && !isRecordingDisabled) {
+            pendingDelta?.onTextReplaced(before, count)
+        }
+    }
+
+    /**
+     * Runs [action] without recording it, for changes that do not alter the content, like re-setting the same text.
+     */
+    fun runWithoutRecording(action: () -> Unit) {
+        val wasDisabled = isRecordingDisabled
+        isRecordingDisabled = true
+        try {
+            action()
+        } finally {
+            isRecordingDisabled = wasDisabled
+        }
+    }
+
+    // the start of the paragraph before the selection when it is at the start of one, as deleting merges them
+    private fun affectedRangeStart(text: CharSequence, selectionStart: Int): Int {
+        var i = Math.min(Math.max(selectionStart - 1, 0), text.length)
+        while (i > 0 && text[i - 1] != Constants.NEWLINE) i--
+        return i
+    }
+
+    // the end of the paragraph of the selection, including its newline
+    private fun affectedRangeEnd(text: CharSequence, selectionEnd: Int): Int {
+        var i = Math.min(Math.max(selectionEnd, 0), text.length)
+        while (i < text.length && text[i] != Constants.NEWLINE) i++
+        return Math.min(i + 1, text.length)
+    }
+
+    private fun isDeltaEditor(editText: EditText): Boolean {
+        return mode == Mode.DELTA && editText is AztecText
+    }
+
+    private fun recordDelta(editText: AztecText, text: Spanned, start: Int, end: Int, isUserChange: Boolean) {
+        if (!historyEnabled || historyWorking || isRecordingDisabled) {
+            return
+        }
+
+        val pending = pendingDelta
+        if (pending != null) {
+            pending.cover(text, start, end)
+        } else if (isUserChange || deltaList.isNotEmpty()) {
+            pendingDelta = TextDelta(text, start, end)
+        } else {
+            return
+        }
+
+        deltaEditText = editText
+        mainHandler.removeCallbacks(deltaRunnable)
+        mainHandler.postDelayed(deltaRunnable, historyThrottleTime)
+    }
+
+    private fun commitDelta(editText: AztecText) {
+        mainHandler.removeCallbacks(deltaRunnable)
+        val delta = pendingDelta ?: return
+        pendingDelta = null
+
+        delta.close(editText.text)
+        if (!delta.hasChanges()) {
+            return
+        }
+
+        while (deltaCursor in 0 until deltaList.size) {
+            deltaList.removeAt(deltaCursor)
+        }
+
+        if (deltaList.size >= historySize) {
+            deltaList.removeAt(0)
+            deltaCursor--
+        }
+
+        deltaList.add(delta)
+        deltaCursor = deltaList.size
+
+        updateActions()
+    }
+
     protected fun doHandleHistory(inputBefore: String, editText: EditText?) {
         textChangedPending = false
         inputLast = when (editText) {
@@ -81,7 +221,7 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
      * processing has completed. Example: uploading media.
      */
     fun refreshLastHistoryItem(editText: EditText) {
-        if (!historyEnabled || historyWorking) {
+        if (!historyEnabled || historyWorking || isDeltaEditor(editText)) {
             return
         }
         if (editText is AztecText) {
@@ -92,7 +232,12 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
     }
 
     fun redo(editText: EditText) {
-        if (!redoValid()) {
+        if (isDeltaEditor(editText)) {
+            redoDelta(editText as AztecText)
+            return
+        }
+
+        if (!snapshotRedoValid()) {
             return
         }
 
@@ -125,7 +270,12 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
     }
 
     fun undo(editText: EditText) {
-        if (!undoValid()) {
+        if (isDeltaEditor(editText)) {
+            undoDelta(editText as AztecText)
+            return
+        }
+
+        if (!snapshotUndoValid()) {
             return
         }
 
@@ -147,6 +297,43 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
         historyListener?.onUndo()
     }
 
+    private fun undoDelta(editText: AztecText) {
+        commitDelta(editText)
+        if (!deltaUndoValid()) {
+            return
+        }
+
+        deltaCursor--
+        applyDelta(editText) { deltaList[deltaCursor].undo(it) }
+
+        updateActions()
+        historyListener?.onUndo()
+    }
+
+    private fun redoDelta(editText: AztecText) {
+        commitDelta(editText)
+        if (!deltaRedoValid()) {
+            return
+        }
+
+        applyDelta(editText) { deltaList[deltaCursor].redo(it) }
+        deltaCursor++
+
+        updateActions()
+        historyListener?.onRedo()
+    }
+
+    private fun applyDelta(editText: AztecText, action: (Editable) -> Int) {
+        historyWorking = true
+        editText.disableTextChangedListener()
+
+        val selection = action(editText.text)
+        editText.setSelection(selection.coerceIn(0, editText.length()))
+
+        editText.enableTextChangedListener()
+        historyWorking = false
+    }
+
     private fun setTextFromHistory(editText: EditText) {
         if (editText is AztecText) {
             editText.fromHtml(historyList[historyCursor])
@@ -155,7 +342,47 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
         }
     }
 
+    /**
+     * Whether any of the editors sharing the history can redo. In [Mode.DELTA] the visual and the source editor keep
+     * separate steps, use [redoValid] with the editor to know if its own redo does anything.
+     */
     fun redoValid(): Boolean {
+        return if (mode == Mode.DELTA) deltaRedoValid() || snapshotRedoValid() else snapshotRedoValid()
+    }
+
+    /**
+     * Whether any of the editors sharing the history can undo. In [Mode.DELTA] the visual and the source editor keep
+     * separate steps, use [undoValid] with the editor to know if its own undo does anything.
+     */
+    fun undoValid(): Boolean {
+        return if (mode == Mode.DELTA) deltaUndoValid() || snapshotUndoValid() else snapshotUndoValid()
+    }
+
+    fun redoValid(editText: EditText): Boolean {
+        return if (isDeltaEditor(editText)) deltaRedoValid() else snapshotRedoValid()
+    }
+
+    fun undoValid(editText: EditText): Boolean {
+        return if (isDeltaEditor(editText)) deltaUndoValid() else snapshotUndoValid()
+    }
+
+    private fun deltaRedoValid(): Boolean {
+        if (!historyEnabled || historySize <= 0 || historyWorking) {
+            return false
+        }
+
+        return pendingDelta == null && deltaCursor < deltaList.size
+    }
+
+    private fun deltaUndoValid(): Boolean {
+        if (!historyEnabled || historySize <= 0 || historyWorking) {
+            return false
+        }
+
+        return pendingDelta != null || deltaCursor > 0
+    }
+
+    private fun snapshotRedoValid(): Boolean {
         if (!historyEnabled || historySize <= 0 || historyList.size <= 0 || historyWorking) {
             return false
         }
@@ -163,7 +390,7 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
         return historyCursor < historyList.size
     }
 
-    fun undoValid(): Boolean {
+    private fun snapshotUndoValid(): Boolean {
         if (!historyEnabled || historySize <= 0 || historyWorking) {
             return false
         }
@@ -178,6 +405,11 @@ class History(val historyEnabled: Boolean, val historySize: Int) {
     fun clearHistory() {
         inputLast = ""
         historyList.clear()
+
+        mainHandler.removeCallbacks(deltaRunnable)
+        pendingDelta = null
+        deltaList.clear()
+        deltaCursor = 0
     }
 
     fun setHistoryListener(listener: IHistoryListener) {
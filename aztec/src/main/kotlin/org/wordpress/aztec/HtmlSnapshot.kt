@@ -0,0 +1,58 @@
+package org.wordpress.aztec
+
+import android.text.SpannableStringBuilder
+import org.wordpress.aztec.source.Format
+import org.wordpress.aztec.spans.IAztecAttributedSpan
+import org.wordpress.aztec.spans.IAztecCopyableSpan
+import org.wordpress.aztec.watchers.EndOfBufferMarkerAdder
+
+/**
+ * The content of an [AztecText] captured for serialization by [AztecText.snapshotHtml].
+ *
+ * Capturing copies the text and its spans, each [IAztecCopyableSpan] with its own nesting level, alignment and
+ * attributes, so it is cheap enough for the main thread. The serialization itself works on the copy only and can run
+ * on any thread, while the editor keeps changing its spans.
+ */
+class HtmlSnapshot internal constructor(private val content: SpannableStringBuilder,
+                                        private val parser: AztecParser,
+                                        private val isInCalypsoMode: Boolean,
+                                        private val withCursorTag: Boolean,
+                                        private val shouldSkipTidying: Boolean) {
+    // serializing prepares the copy in place, so it is only done once
+    private val html: String by lazy {
+        parser.syncVisualNewlinesOfBlockElements(content)
+
+        Format.postProcessSpannedText(content, isInCalypsoMode)
+
+        EndOfBufferMarkerAdder.removeEndOfTextMarker(parser.toHtml(content, withCursorTag, shouldSkipTidying))
+    }
+
+    /**
+     * The platform agnostic HTML of the captured content, the same [AztecText.toPlainHtml] returns.
+     */
+    fun toPlainHtml(): String {
+        return html
+    }
+
+    companion object {
+        /**
+         * Replaces the copyable spans of the [text] with copies, in place and in the same order. Copying attributes
+         * only shares their entries, so this is linear in the number of spans.
+         */
+        internal fun copySpans(text: SpannableStringBuilder) {
+            text.getSpans(0, text.length, Any::class.java).forEach {
+                val start = text.getSpanStart(it)
+                val end = text.getSpanEnd(it)
+                val flags = text.getSpanFlags(it)
+
+                // every span is set again, so they keep their order
+                val span = if (it is IAztecCopyableSpan) it.copySpan() else it
+                if (span is IAztecAttributedSpan) {
+                    span.attributes = AztecAttributes(span.attributes)
+                }
+                text.removeSpan(it)
+                text.setSpan(span, start, end, flags)
+            }
+        }
+    }
+}
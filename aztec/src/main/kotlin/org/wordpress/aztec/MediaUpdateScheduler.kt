@@ -0,0 +1,94 @@
+package org.wordpress.aztec
+
+import android.graphics.Rect
+import android.graphics.drawable.Drawable
+import org.wordpress.aztec.spans.AztecDynamicImageSpan
+import java.lang.ref.WeakReference
+
+/**
+ * Collects the drawables delivered by the media loaders and swaps them into their spans once per frame.
+ *
+ * A swap that changes the size of any media needs a single relayout of the text for the whole batch. When every
+ * drawable keeps the size of the one it replaces, it takes over its bounds and the editor is only redrawn. The other
+ * changes to the media drawn, like their overlays, are redrawn with them.
+ */
+internal class MediaUpdateScheduler(aztecText: AztecText) {
+    private val aztecTextRef = WeakReference(aztecText)
+
+    // the loaders may call back from any thread, the swaps are applied on the main thread
+    private val pendingDrawables = LinkedHashMap<AztecDynamicImageSpan, Drawable?>()
+    private var isScheduled = false
+
+    private val flushRunnable = Runnable { flush() }
+
+    fun replaceDrawable(span: AztecDynamicImageSpan, drawable: Drawable?) {
+        synchronized(pendingDrawables) {
+            pendingDrawables[span] = drawable
+            if (isScheduled) {
+                return
+            }
+            isScheduled = true
+        }
+        aztecTextRef.get()?.postOnAnimation(flushRunnable)
+    }
+
+    /**
+     * Redraws the editor with the next swaps, or on its own in the next frame, so the changes made to the media in
+     * the meantime share a single redraw.
+     */
+    fun redraw() {
+        synchronized(pendingDrawables) {
+            if (isScheduled) {
+                return
+            }
+            isScheduled = true
+        }
+        aztecTextRef.get()?.postOnAnimation(flushRunnable)
+    }
+
+    private fun flush() {
+        val drawables = synchronized(pendingDrawables) {
+            isScheduled = false
+            val drawables = LinkedHashMap(pendingDrawables)
+            pendingDrawables.clear()
+            drawables
+        }
+
+        val aztecText = aztecTextRef.get() ?: return
+
+        var needsRelayout = false
+        drawables.forEach { (span, drawable) ->
+            if (!swapDrawable(span, drawable)) {
+                needsRelayout = true
+            }
+        }
+
+        if (needsRelayout) {
+            aztecText.refreshText(false)
+        } else {
+            aztecText.invalidate()
+        }
+    }
+
+    // returns true if the new drawable takes the place of the old one without changing the layout
+    private fun swapDrawable(span: AztecDynamicImageSpan, drawable: Drawable?): Boolean {
+        val oldDrawable = span.drawable
+        val oldAspectRatio = span.aspectRatio
+        val oldBounds = oldDrawable?.let { Rect(it.bounds) }
+
+        span.drawable = drawable
+
+        if (oldDrawable == null || drawable == null || oldBounds == null || oldBounds.isEmpty) {
+            return false
+        }
+
+        // the laid out size only depends on these, see AztecDynamicImageSpan.adjustBounds
+        val isSameSize = oldDrawable.intrinsicWidth == drawable.intrinsicWidth
+                && oldDrawable.intrinsicHeight == drawable.intrinsicHeight
+                && oldAspectRatio == span.aspectRatio
+        if (isSameSize) {
+            drawable.bounds = oldBounds
+        }
+        return isSameSize
+    }
+}
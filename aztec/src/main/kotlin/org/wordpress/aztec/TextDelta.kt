@@ -0,0 +1,216 @@
+package org.wordpress.aztec
+
+import android.text.Editable
+import android.text.InputFilter
+import android.text.NoCopySpan
+import android.text.SpanWatcher
+import android.text.Spanned
+import android.text.TextWatcher
+import org.wordpress.aztec.spans.IAztecAttributedSpan
+import org.wordpress.aztec.spans.IAztecNestable
+import java.util.Collections
+import java.util.IdentityHashMap
+
+/**
+ * A single undo/redo step of [History] in [History.Mode.DELTA].
+ *
+ * Instead of a copy of the whole document, a delta keeps the text of the edited range together with the spans that
+ * touch it, once as they were before the edit and once as they were after it. Undoing or redoing swaps the range in
+ * place, so both the memory and the time spent on a step depend on the size of the edit, not of the document.
+ *
+ * While a step is being recorded, [cover] must be called with the range about to change (before it changes) and
+ * [onTextReplaced] right after the change, so the tracked range can grow to include every edit of the step.
+ */
+class TextDelta(text: Spanned, start: Int, end: Int) {
+    /**
+     * A span and where it was. The nesting level and the attributes of the span are changed in place, e.g. by indenting
+     * or aligning, so they are recorded along with it and restored.
+     */
+    class SpanRecord(val span: Any, val start: Int, val end: Int, val flags: Int) {
+        private val nestingLevel = (span as? IAztecNestable)?.nestingLevel ?: 0
+        private val attributes = (span as? IAztecAttributedSpan)?.let { AztecAttributes(it.attributes) }
+
+        fun restore() {
+            (span as? IAztecNestable)?.nestingLevel = nestingLevel
+            // a copy, as the span can change its attributes again
+            attributes?.let { (span as IAztecAttributedSpan).attributes = AztecAttributes(it) }
+        }
+
+        fun hasSameState(other: SpanRecord): Boolean {
+            return start == other.start && end == other.end && flags == other.flags
+                    && nestingLevel == other.nestingLevel && hasSameAttributes(other.attributes)
+        }
+
+        private fun hasSameAttributes(other: AztecAttributes?): Boolean {
+            val attributes = this.attributes
+            if (attributes == null || other == null) {
+                return attributes == other
+            }
+            if (attributes.length != other.length) {
+                return false
+            }
+            for (i in 0 until attributes.length) {
+                if (attributes.getQName(i) != other.getQName(i) || attributes.getValue(i) != other.getValue(i)) {
+                    return false
+                }
+            }
+            return true
+        }
+    }
+
+    class State(val text: String, val spans: List<SpanRecord>)
+
+    var start = start
+        private set
+
+    // end of the tracked range in the document as it was before the edit
+    var oldEnd = end
+        private set
+
+    // end of the tracked range in the document as it is now
+    var newEnd = end
+        private set
+
+    lateinit var before: State
+        private set
+    lateinit var after: State
+        private set
+
+    private var isTextReplaced = false
+    private val beforeText = StringBuilder()
+    private val beforeSpans = ArrayList<SpanRecord>()
+    private val recordedSpans = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+
+    init {
+        beforeText.append(text, start, end)
+        recordSpans(text, start, end)
+    }
+
+    /**
+     * Grows the tracked range so that it covers [from, to) of the current text. Has to be called before that part
+     * of the text gets modified, so its original content can still be recorded.
+     */
+    fun cover(text: Spanned, from: Int, to: Int) {
+        if (from < start) {
+            recordSpans(text, from, start)
+            beforeText.insert(0, text, from, start)
+            start = from
+        }
+
+        if (to > newEnd) {
+            recordSpans(text, newEnd, to)
+            beforeText.append(text, newEnd, to)
+            oldEnd += to - newEnd
+            newEnd = to
+        }
+    }
+
+    fun onTextReplaced(removed: Int, inserted: Int) {
+        newEnd += inserted - removed
+        isTextReplaced = true
+    }
+
+    /**
+     * Ends the recording, capturing the state of the tracked range after the edit.
+     */
+    fun close(text: Spanned) {
+        before = State(beforeText.toString(), ArrayList(beforeSpans))
+        after = capture(text, start, newEnd)
+
+        beforeText.setLength(0)
+        beforeSpans.clear()
+        recordedSpans.clear()
+    }
+
+    fun hasChanges(): Boolean {
+        if (before.text != after.text || before.spans.size != after.spans.size) {
+            return true
+        }
+
+        val afterSpans = IdentityHashMap<Any, SpanRecord>()
+        after.spans.forEach { afterSpans[it.span] = it }
+
+        return before.spans.any {
+            val record = afterSpans[it.span]
+            record == null || !record.hasSameState(it)
+        }
+    }
+
+    /**
+     * Brings the document back to the state before the edit. Returns the offset to put the cursor at.
+     */
+    fun undo(editable: Editable): Int {
+        return apply(editable, newEnd, before)
+    }
+
+    /**
+     * Brings the document to the state after the edit. Returns the offset to put the cursor at.
+     */
+    fun redo(editable: Editable): Int {
+        return apply(editable, oldEnd, after)
+    }
+
+    private fun apply(editable: Editable, currentEnd: Int, target: State): Int {
+        editable.getSpans(start, currentEnd, Any::class.java)
+                .filter { isTracked(editable, it) }
+                .forEach { editable.removeSpan(it) }
+
+        // the restored text has already gone through the filters once
+        val filters = editable.filters
+        editable.filters = arrayOf<InputFilter>()
+        editable.replace(start, currentEnd, target.text)
+        editable.filters = filters
+
+        target.spans
+                .filter { it.end <= editable.length }
+                .forEach {
+                    it.restore()
+                    editable.setSpan(it.span, it.start, it.end, it.flags)
+                }
+
+        return start + target.text.length
+    }
+
+    private fun recordSpans(text: Spanned, from: Int, to: Int) {
+        text.getSpans(from, to, Any::class.java).forEach {
+            if (recordedSpans.contains(it) || !isTracked(text, it)) {
+                return@forEach
+            }
+
+            val spanStart = toOriginalOffset(text.getSpanStart(it))
+            val spanEnd = toOriginalOffset(text.getSpanEnd(it))
+
+            // spans ending inside the already edited range did not exist before the edit
+            if (spanStart < 0 || spanEnd < 0) {
+                return@forEach
+            }
+
+            recordedSpans.add(it)
+            beforeSpans.add(SpanRecord(it, spanStart, spanEnd, text.getSpanFlags(it)))
+        }
+    }
+
+    private fun toOriginalOffset(offset: Int): Int {
+        return when {
+            !isTextReplaced || offset <= start -> offset
+            offset >= newEnd -> offset - newEnd + oldEnd
+            else -> -1
+        }
+    }
+
+    companion object {
+        fun capture(text: Spanned, start: Int, end: Int): State {
+            val spans = text.getSpans(start, end, Any::class.java)
+                    .filter { isTracked(text, it) }
+                    .map { SpanRecord(it, text.getSpanStart(it), text.getSpanEnd(it), text.getSpanFlags(it)) }
+            return State(text.subSequence(start, end).toString(), spans)
+        }
+
+        // selection, composition and the watchers attached by the framework are not part of the content. Aztec spans
+        // are, even the ones watching their own content.
+        internal fun isTracked(text: Spanned, span: Any): Boolean {
+            return (span is IAztecSpan || span !is NoCopySpan && span !is TextWatcher && span !is SpanWatcher)
+                    && (text.getSpanFlags(span) and Spanned.SPAN_COMPOSING) == 0
+        }
+    }
+}
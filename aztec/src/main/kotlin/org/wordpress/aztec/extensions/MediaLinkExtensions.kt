@@ -7,7 +7,7 @@ import org.wordpress.aztec.spans.AztecMediaSpan
 import org.wordpress.aztec.spans.AztecURLSpan
 
 fun AztecText.getMediaLink(attributePredicate: AztecText.AttributePredicate): String {
-    text.getSpans(0, text.length, AztecMediaSpan::class.java)
+    spanIndex.getSpans(AztecMediaSpan::class.java)
             .firstOrNull { attributePredicate.matches(it.attributes) }
             ?.let {
                 val start = text.getSpanStart(it)
@@ -20,7 +20,7 @@ fun AztecText.getMediaLink(attributePredicate: AztecText.AttributePredicate): St
 }
 
 fun AztecText.getMediaLinkAttributes(attributePredicate: AztecText.AttributePredicate): AztecAttributes {
-    text.getSpans(0, text.length, AztecMediaSpan::class.java)
+    spanIndex.getSpans(AztecMediaSpan::class.java)
             .firstOrNull { attributePredicate.matches(it.attributes) }
             ?.let {
                 val start = text.getSpanStart(it)
@@ -33,7 +33,7 @@ fun AztecText.getMediaLinkAttributes(attributePredicate: AztecText.AttributePred
 }
 
 fun AztecText.removeLinkFromMedia(attributePredicate: AztecText.AttributePredicate) {
-    text.getSpans(0, text.length, AztecMediaSpan::class.java)
+    spanIndex.getSpans(AztecMediaSpan::class.java)
             .filter { attributePredicate.matches(it.attributes) }
             .forEach {
                 val start = text.getSpanStart(it)
@@ -44,7 +44,7 @@ fun AztecText.removeLinkFromMedia(attributePredicate: AztecText.AttributePredica
 }
 
 fun AztecText.addLinkToMedia(attributePredicate: AztecText.AttributePredicate, link: String, linkAttributes: AztecAttributes = AztecAttributes()) {
-    text.getSpans(0, text.length, AztecMediaSpan::class.java)
+    spanIndex.getSpans(AztecMediaSpan::class.java)
             .filter { attributePredicate.matches(it.attributes) }
             .forEach {
                 val start = text.getSpanStart(it)
@@ -0,0 +1,82 @@
+package org.wordpress.aztec.plugins
+
+import android.text.style.CharacterStyle
+import org.wordpress.aztec.plugins.html2visual.IHtmlCommentHandler
+import org.wordpress.aztec.plugins.html2visual.IHtmlContentHandler
+import org.wordpress.aztec.plugins.html2visual.IHtmlPreprocessor
+import org.wordpress.aztec.plugins.html2visual.IHtmlTagHandler
+import org.wordpress.aztec.plugins.html2visual.IHtmlTextHandler
+import org.wordpress.aztec.plugins.html2visual.ISpanPostprocessor
+import org.wordpress.aztec.plugins.visual2html.IBlockSpanHandler
+import org.wordpress.aztec.plugins.visual2html.IHtmlPostprocessor
+import org.wordpress.aztec.plugins.visual2html.IInlineSpanHandler
+import org.wordpress.aztec.plugins.visual2html.ISpanPreprocessor
+import org.wordpress.aztec.spans.IAztecParagraphStyle
+import java.util.concurrent.ConcurrentHashMap
+import java.util.regex.Pattern
+
+/**
+ * An immutable snapshot of a plugin list, prepared for the HTML conversions.
+ *
+ * The plugins are split by the interfaces they implement once, the [IHtmlTextHandler] patterns are compiled once,
+ * and the span handlers compatible with a span type are looked up once per type, so the conversions don't have to
+ * scan the whole plugin list for every tag, text node or span they meet. The lists keep the order of the plugins.
+ */
+class AztecPluginSet(plugins: List<IAztecPlugin>) {
+    val plugins: List<IAztecPlugin> = ArrayList(plugins)
+
+    val htmlPreprocessors: List<IHtmlPreprocessor> = this.plugins.filterIsInstance<IHtmlPreprocessor>()
+    val tagHandlers: List<IHtmlTagHandler> = this.plugins.filterIsInstance<IHtmlTagHandler>()
+    val contentHandlers: List<IHtmlContentHandler> = this.plugins.filterIsInstance<IHtmlContentHandler>()
+    val commentHandlers: List<IHtmlCommentHandler> = this.plugins.filterIsInstance<IHtmlCommentHandler>()
+    val textHandlers: List<IHtmlTextHandler> = this.plugins.filterIsInstance<IHtmlTextHandler>()
+    val textHandlerPatterns: List<Pattern> = textHandlers.map { Pattern.compile(it.pattern) }
+    val spanPostprocessors: List<ISpanPostprocessor> = this.plugins.filterIsInstance<ISpanPostprocessor>()
+
+    val spanPreprocessors: List<ISpanPreprocessor> = this.plugins.filterIsInstance<ISpanPreprocessor>()
+    val htmlPostprocessors: List<IHtmlPostprocessor> = this.plugins.filterIsInstance<IHtmlPostprocessor>()
+    private val blockSpanHandlers = this.plugins.filterIsInstance<IBlockSpanHandler>()
+    private val inlineSpanHandlers = this.plugins.filterIsInstance<IInlineSpanHandler>()
+
+    // the conversions can run on several threads at once
+    private val blockSpanHandlersByType = ConcurrentHashMap<Class<*>, List<IBlockSpanHandler>>()
+    private val inlineSpanHandlersByType = ConcurrentHashMap<Class<*>, List<IInlineSpanHandler>>()
+
+    /**
+     * The [IBlockSpanHandler]s able to handle spans of the type of [span].
+     */
+    fun getBlockSpanHandlers(span: IAztecParagraphStyle): List<IBlockSpanHandler> {
+        if (blockSpanHandlers.isEmpty()) {
+            return blockSpanHandlers
+        }
+
+        return blockSpanHandlersByType.getOrPut(span.javaClass) { blockSpanHandlers.filter { it.canHandleSpan(span) } }
+    }
+
+    /**
+     * The [IInlineSpanHandler]s able to handle spans of the type of [span].
+     */
+    fun getInlineSpanHandlers(span: CharacterStyle): List<IInlineSpanHandler> {
+        if (inlineSpanHandlers.isEmpty()) {
+            return inlineSpanHandlers
+        }
+
+        return inlineSpanHandlersByType.getOrPut(span.javaClass) { inlineSpanHandlers.filter { it.canHandleSpan(span) } }
+    }
+
+    /**
+     * Whether this set still matches [plugins], i.e. the same plugins in the same order.
+     */
+    fun isBuiltFrom(plugins: List<IAztecPlugin>): Boolean {
+        if (plugins.size != this.plugins.size) {
+            return false
+        }
+
+        return plugins.indices.all { plugins[it] === this.plugins[it] }
+    }
+
+    companion object {
+        @JvmField
+        val EMPTY = AztecPluginSet(emptyList())
+    }
+}
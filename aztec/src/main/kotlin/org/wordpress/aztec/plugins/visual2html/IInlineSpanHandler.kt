@@ -21,7 +21,8 @@ interface IInlineSpanHandler : IAztecPlugin {
     /**
      * Determines, whether the plugin can handle a particular [span] type.
      *
-     * This method is called by [org.wordpress.aztec.AztecParser] during span-to-HTML parsing.
+     * This method is called by [org.wordpress.aztec.AztecParser] during span-to-HTML parsing. The answer is cached
+     * per span type, see [org.wordpress.aztec.plugins.AztecPluginSet].
      *
      * @return true for compatible spans, false otherwise.
      */
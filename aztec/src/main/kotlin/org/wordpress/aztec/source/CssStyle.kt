@@ -0,0 +1,107 @@
+package org.wordpress.aztec.source
+
+/**
+ * The declarations of an HTML *style* attribute, parsed once from its [source] and kept in the order they are written.
+ *
+ * Like [CssStyleFormatter] always read them, the whitespace is dropped from the declarations and the property names
+ * are compared ignoring the case. Declarations without a colon or a value are kept as they are, so they are written
+ * back unchanged.
+ */
+internal class CssStyle private constructor(val source: String, private val names: List<String>,
+                                            private val values: List<String?>) {
+    /**
+     * The value of the first declaration of the [property] that has one, or an empty string.
+     */
+    fun getValue(property: String): String {
+        for (i in names.indices) {
+            val value = values[i]
+            if (!value.isNullOrEmpty() && names[i].equals(property, ignoreCase = true)) {
+                return value
+            }
+        }
+        return ""
+    }
+
+    fun contains(property: String): Boolean {
+        return getValue(property).isNotEmpty()
+    }
+
+    /**
+     * The style without the declarations of the [property] that have a value, along with the semicolon ending each of
+     * them. So a semicolon ending the style is kept, unless it ends a removed declaration. Its [source] is written with
+     * a space after each semicolon, or is empty when no declarations are left.
+     */
+    fun remove(property: String): CssStyle {
+        val keptNames = ArrayList<String>(names.size)
+        val keptValues = ArrayList<String?>(values.size)
+        var isPreviousRemoved = false
+        for (i in names.indices) {
+            val value = values[i]
+            if (isPreviousRemoved && value == null && names[i].isEmpty()) {
+                // the empty declaration after the semicolon ending the removed one goes along with it
+                isPreviousRemoved = false
+                continue
+            }
+
+            isPreviousRemoved = !value.isNullOrEmpty() && names[i].equals(property, ignoreCase = true)
+            if (!isPreviousRemoved) {
+                keptNames.add(names[i])
+                keptValues.add(value)
+            }
+        }
+
+        val style = StringBuilder()
+        for (i in keptNames.indices) {
+            if (i > 0) {
+                style.append("; ")
+            }
+            style.append(keptNames[i])
+            keptValues[i]?.let { style.append(':').append(it) }
+        }
+        return CssStyle(style.trim().toString(), keptNames, keptValues)
+    }
+
+    companion object {
+        private val EMPTY = CssStyle("", listOf(""), listOf(null))
+
+        /**
+         * Splits the [style] into its declarations, and each of them at its first colon into the property name and
+         * the value.
+         */
+        fun parse(style: String): CssStyle {
+            if (style.isEmpty()) {
+                return EMPTY
+            }
+
+            val names = ArrayList<String>()
+            val values = ArrayList<String?>()
+            val declaration = StringBuilder()
+            var colon = -1
+            for (i in 0..style.length) {
+                val c = if (i < style.length) style[i] else ';'
+                if (c == ';') {
+                    if (colon == -1) {
+                        names.add(declaration.toString())
+                        values.add(null)
+                    } else {
+                        names.add(declaration.substring(0, colon))
+                        values.add(declaration.substring(colon + 1))
+                    }
+                    declaration.setLength(0)
+                    colon = -1
+                } else if (!isWhitespace(c)) {
+                    if (c == ':' && colon == -1) {
+                        colon = declaration.length
+                    }
+                    declaration.append(c)
+                }
+            }
+            return CssStyle(style, names, values)
+        }
+
+        // the characters the style used to be stripped of with the \s pattern
+        private fun isWhitespace(c: Char): Boolean {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\u000C' || c == '\r'
+        }
+    }
+}
@@ -11,8 +11,6 @@ import org.wordpress.aztec.spans.IAztecAlignmentSpan
 import org.wordpress.aztec.spans.IAztecAttributedSpan
 import org.wordpress.aztec.spans.IAztecParagraphStyle
 import org.wordpress.aztec.util.ColorConverter
-import java.util.regex.Matcher
-import java.util.regex.Pattern
 
 /**
  * Utility for parsing and processing the HTML *style* attribute to create a styled [Spannable].
@@ -68,16 +66,6 @@ class CssStyleFormatter {
             }
         }
 
-        private fun getPattern(styleAttr: String): Pattern {
-            return Pattern.compile(
-                    "(?:;|\\A)$styleAttr:(.+?)(?:;|$)", Pattern.CASE_INSENSITIVE or Pattern.MULTILINE)
-        }
-
-        private fun getMatcher(attributes: AztecAttributes, styleAttributeName: String): Matcher {
-            val style = (attributes.getValue(STYLE_ATTRIBUTE) ?: "").replace("\\s".toRegex(), "")
-            return getPattern(styleAttributeName).matcher(style)
-        }
-
         private fun processColor(attributes: AztecAttributes, text: Editable, start: Int, end: Int) {
             val colorAttrValue = getStyleAttribute(attributes, CSS_COLOR_ATTRIBUTE)
             if (!colorAttrValue.isBlank()) {
@@ -99,31 +87,23 @@ class CssStyleFormatter {
         }
 
         fun containsStyleAttribute(attributes: AztecAttributes, styleAttributeName: String): Boolean {
-            return attributes.hasAttribute(STYLE_ATTRIBUTE) && getMatcher(attributes, styleAttributeName).find()
+            return attributes.hasAttribute(STYLE_ATTRIBUTE) && attributes.cssStyle.contains(styleAttributeName)
         }
 
         fun removeStyleAttribute(attributes: AztecAttributes, styleAttributeName: String) {
             if (attributes.hasAttribute(STYLE_ATTRIBUTE)) {
-                val m = getMatcher(attributes, styleAttributeName)
-                var newStyle = m.replaceAll("")
+                val style = attributes.cssStyle.remove(styleAttributeName)
 
-                if (newStyle.isBlank()) {
+                if (style.source.isBlank()) {
                     attributes.removeAttribute(STYLE_ATTRIBUTE)
                 } else {
-                    newStyle = newStyle.replace(";".toRegex(), "; ")
-                    attributes.setValue(STYLE_ATTRIBUTE, newStyle.trim())
+                    attributes.cssStyle = style
                 }
             }
         }
 
         fun getStyleAttribute(attributes: AztecAttributes, styleAttributeName: String): String {
-            val m = getMatcher(attributes, styleAttributeName)
-
-            var styleAttributeValue = ""
-            if (m.find()) {
-                m.group(1)?.let { styleAttributeValue = it }
-            }
-            return styleAttributeValue
+            return attributes.cssStyle.getValue(styleAttributeName)
         }
 
         fun addStyleAttribute(attributes: AztecAttributes, styleAttributeName: String, styleAttributeValue: String) {
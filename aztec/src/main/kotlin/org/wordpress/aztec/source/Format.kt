@@ -12,15 +12,18 @@ import org.wordpress.aztec.spans.IAztecAlignmentSpan
 import org.wordpress.aztec.spans.IAztecParagraphStyle
 import org.wordpress.aztec.spans.ParagraphSpan
 import org.wordpress.aztec.util.CleaningUtils
+import java.util.concurrent.ConcurrentHashMap
 import java.util.regex.Matcher
 import java.util.regex.Pattern
 
 object Format {
-    // list of block elements
-    private val block = "div|br|blockquote|ul|ol|li|p|pre|h1|h2|h3|h4|h5|h6|iframe|hr"
-
     private val iframePlaceholder = "iframe-replacement-0x0"
 
+    // the compiled patterns, by their expression, so every format only pays for the matching
+    private val patterns = ConcurrentHashMap<String, Pattern>()
+
+    private val protectedPreOrScript = Regex("<(pre|script)[^>]*>[\\s\\S]+?</\\1>")
+
     @JvmStatic
     fun addSourceEditorFormatting(content: String, isCalypsoFormat: Boolean = false): String {
         var html = replaceAll(content, "iframe", iframePlaceholder)
@@ -41,10 +44,7 @@ object Format {
         } else {
             html = replaceAll(doc.body().html(), iframePlaceholder, "iframe")
 
-            val newlineToTheLeft = replaceAll(html, "(?<!</?($block)>)\n<((?!/?($block)).*?)>", "<$2>")
-            val newlineToTheRight = replaceAll(newlineToTheLeft, "<(/?(?!$block).)>\n(?!</?($block)>)", "<$1>")
-            val fixBrNewlines = replaceAll(newlineToTheRight, "([\t ]*)(<br>)(?!\n)", "$1$2\n$1")
-            html = replaceAll(fixBrNewlines, ">([\t ]*)(<br>)", ">\n$1$2")
+            html = HtmlSourceScanner.formatNewlines(html)
         }
 
         return html.trim()
@@ -57,12 +57,16 @@ object Format {
             val doc = Jsoup.parseBodyFragment(htmlWithoutSourceFormatting.replace("\n", "")).outputSettings(Document.OutputSettings().prettyPrint(false))
             return doc.body().html()
         } else {
-            return if (isGutenbergMode) { html } else { replaceAll(html, "\\s*<(/?($block)(.*?))>\\s*", "<$1>") }
+            return if (isGutenbergMode) { html } else { HtmlSourceScanner.removeBlockWhitespace(html) }
         }
     }
 
+    private fun compiled(regex: String): Pattern {
+        return patterns.getOrPut(regex) { Pattern.compile(regex) }
+    }
+
     private fun replaceAll(content: String, pattern: String, replacement: String): String {
-        val p = Pattern.compile(pattern)
+        val p = compiled(pattern)
         val m = p.matcher(content)
         return m.replaceAll(replacement)
     }
@@ -87,7 +91,7 @@ object Format {
         if (content.contains("<pre") || content.contains("<script")) {
             preserve_linebreaks = true
 
-            content = content.replace(Regex("<(pre|script)[^>]*>[\\s\\S]+?</\\1>"), { matchResult: MatchResult ->
+            content = content.replace(protectedPreOrScript, { matchResult: MatchResult ->
                 var value = replaceAll(matchResult.groupValues[0], "<br ?/?>(\\r\\n|\\n)?", "<wp-line-break>")
                 value = replaceAll(value, "</?p( [^>]*)?>(\\r\\n|\\n)?", "<wp-line-break>")
                 replaceAll(value, "\\r?\\n", "<wp-line-break>")
@@ -97,7 +101,7 @@ object Format {
         // keep <br> tags inside captions and remove line breaks
         if (content.contains("[caption")) {
             preserve_br = true
-            p = Pattern.compile("\\[caption[\\s\\S]+?\\[/caption]")
+            p = compiled("\\[caption[\\s\\S]+?\\[/caption]")
             m = p.matcher(content)
             sb = StringBuffer()
             if (m.find()) {
@@ -145,7 +149,7 @@ object Format {
         }
 
         if (content.contains("<object")) {
-            p = Pattern.compile("<object[\\s\\S]+?</object>")
+            p = compiled("<object[\\s\\S]+?</object>")
             m = p.matcher(content)
             sb = StringBuffer()
             if (m.find()) {
@@ -200,7 +204,7 @@ object Format {
                 "|article|aside|hgroup|header|footer|nav|figure|details|menu|summary"
 
         if (html.contains("<object")) {
-            p = Pattern.compile("<object[\\s\\S]+?</object>")
+            p = compiled("<object[\\s\\S]+?</object>")
             m = p.matcher(html)
             sb = StringBuffer()
             while (m.find()) {
@@ -210,7 +214,7 @@ object Format {
             html = sb.toString()
         }
 
-        p = Pattern.compile("<[^<>]+>")
+        p = compiled("<[^<>]+>")
         m = p.matcher(html)
         sb = StringBuffer()
         while (m.find()) {
@@ -223,7 +227,7 @@ object Format {
         if (html.contains("<pre") || html.contains("<script")) {
             preserve_linebreaks = true
 
-            html = html.replace(Regex("<(pre|script)[^>]*>[\\s\\S]+?</\\1>"), { matchResult: MatchResult ->
+            html = html.replace(protectedPreOrScript, { matchResult: MatchResult ->
                 replaceAll(matchResult.groupValues[0], "(\\r\\n|\\n)", "<wp-line-break>")
             })
         }
@@ -232,7 +236,7 @@ object Format {
         if (html.contains("[caption' )")) {
             preserve_br = true
 
-            p = Pattern.compile("\\[caption[\\s\\S]+?\\[/caption]")
+            p = compiled("\\[caption[\\s\\S]+?\\[/caption]")
             m = p.matcher(html)
             sb = StringBuffer()
             while (m.find()) {
@@ -240,7 +244,7 @@ object Format {
                 m.appendReplacement(sb, Matcher.quoteReplacement(replaceAll(html.substring(m.start(), m.end()), "<br([^>]*)>", "<wp-temp-br$1>")))
 
                 // no line breaks inside HTML tags
-                val p2 = Pattern.compile("<[a-zA-Z0-9]+( [^<>]+)?>")
+                val p2 = compiled("<[a-zA-Z0-9]+( [^<>]+)?>")
                 val content = html.substring(m.start(), m.end())
                 val m2 = p2.matcher(content)
                 val sb2 = StringBuffer()
@@ -369,7 +373,7 @@ object Format {
     }
 
     private fun replace(content: String, pattern: String, replacement: String): String {
-        val p = Pattern.compile(pattern)
+        val p = compiled(pattern)
         val m = p.matcher(content)
         return m.replaceFirst(replacement)
     }
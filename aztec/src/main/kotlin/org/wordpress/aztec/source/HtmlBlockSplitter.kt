@@ -0,0 +1,184 @@
+package org.wordpress.aztec.source
+
+import android.text.Spanned
+import org.wordpress.aztec.Constants
+import org.wordpress.aztec.spans.IAztecParagraphStyle
+
+/**
+ * Splits HTML into its top level elements, so the blocks that changed between two versions of the source can be
+ * found without parsing either of them, and finds those blocks in the parsed text.
+ *
+ * Only the elements the parser turns into a single top level block span are accepted, see [SPLITTABLE_ELEMENTS]. The
+ * split fails when there is anything else at the top level, text and comments included, or when the tags of an
+ * element don't balance, as the parser could then group the content differently.
+ */
+internal object HtmlBlockSplitter {
+    private val SPLITTABLE_ELEMENTS = setOf("p", "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "blockquote", "pre")
+
+    private val VOID_ELEMENTS = setOf("area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta",
+            "param", "source", "track", "wbr")
+
+    private const val COMMENT_START = "<!--"
+    private const val COMMENT_END = "-->"
+
+    private const val NO_QUOTE = '\u0000'
+
+    /**
+     * A top level element of the HTML, from [start] to [end]. Its content goes from [contentStart], after the opening
+     * tag, to [contentEnd], the start of the closing tag.
+     */
+    class Block(val name: String, val html: String, val start: Int, val end: Int, val contentStart: Int, val contentEnd: Int)
+
+    /**
+     * The top level elements of the [html] in order, or null when it can't be split into elements the parser keeps
+     * apart.
+     */
+    fun split(html: String): List<Block>? {
+        val blocks = ArrayList<Block>()
+        var i = 0
+        while (true) {
+            while (i < html.length && Character.isWhitespace(html[i])) {
+                i++
+            }
+            if (i == html.length) {
+                return blocks
+            }
+
+            if (html[i] != '<') return null
+            val name = readName(html, i + 1)
+            if (name !in SPLITTABLE_ELEMENTS) return null
+
+            val contentStart = tagEnd(html, i) + 1
+            val contentEnd = closingTagStart(html, i)
+            if (contentStart == 0 || contentEnd == -1) return null
+
+            val end = tagEnd(html, contentEnd) + 1
+            blocks.add(Block(name, html.substring(i, end), i, end, contentStart, contentEnd))
+            i = end
+        }
+    }
+
+    /**
+     * The index of the block of the [position] in the HTML the [blocks] were split from. A position between two blocks
+     * belongs to the next one, one after all of them to the last one.
+     */
+    fun blockAt(blocks: List<Block>, position: Int): Int {
+        val index = blocks.indexOfFirst { position < it.end }
+        return if (index == -1) blocks.lastIndex else index
+    }
+
+    /**
+     * Whether the text of the [block] starts with whitespace, which the parser drops after other whitespace.
+     */
+    fun startsWithWhitespace(block: Block): Boolean {
+        var i = block.contentStart - block.start
+        while (i < block.html.length && block.html[i] == '<') {
+            val tagEnd = tagEnd(block.html, i)
+            if (tagEnd == -1) return false
+            i = tagEnd + 1
+        }
+        return i < block.html.length && Character.isWhitespace(block.html[i])
+    }
+
+    /**
+     * The starts of the top level block spans of the [text], matched to the [blocks], or null when the text doesn't
+     * consist of one top level block span per block, with the same tag and in the same order. Only the end of buffer
+     * marker can follow the last of them.
+     */
+    fun findBlockStarts(text: Spanned, blocks: List<Block>): IntArray? {
+        // the outer spans go before the spans nested in them
+        val spans = text.getSpans(0, text.length, IAztecParagraphStyle::class.java)
+                .sortedWith(compareBy<IAztecParagraphStyle>({ text.getSpanStart(it) }, { -text.getSpanEnd(it) },
+                        { it.nestingLevel }))
+
+        val starts = IntArray(blocks.size)
+        var count = 0
+        var blockEnd = 0
+        spans.forEach {
+            val spanStart = text.getSpanStart(it)
+            val spanEnd = text.getSpanEnd(it)
+            if (spanStart < blockEnd) {
+                return@forEach
+            }
+            if (spanStart != blockEnd || spanEnd == spanStart || count == blocks.size ||
+                    !it.TAG.equals(blocks[count].name, ignoreCase = true)) {
+                return null
+            }
+            starts[count++] = spanStart
+            blockEnd = spanEnd
+        }
+
+        val isEndOfText = blockEnd == text.length ||
+                blockEnd == text.length - 1 && text[blockEnd] == Constants.END_OF_BUFFER_MARKER
+        return if (count == blocks.size && isEndOfText) starts else null
+    }
+
+    // the start of the closing tag of the element opened at the start, or -1 when its tags don't balance
+    private fun closingTagStart(html: String, start: Int): Int {
+        var depth = 0
+        var i = start
+        while (i < html.length) {
+            val tagStart = html.indexOf('<', i)
+            if (tagStart == -1) return -1
+
+            if (html.startsWith(COMMENT_START, tagStart)) {
+                val commentEnd = html.indexOf(COMMENT_END, tagStart + COMMENT_START.length)
+                if (commentEnd == -1) return -1
+                i = commentEnd + COMMENT_END.length
+                continue
+            }
+
+            val isClosing = tagStart + 1 < html.length && html[tagStart + 1] == '/'
+            val name = readName(html, if (isClosing) tagStart + 2 else tagStart + 1)
+            if (name.isEmpty()) {
+                // a bracket in the text
+                i = tagStart + 1
+                continue
+            }
+
+            val tagEnd = tagEnd(html, tagStart)
+            if (tagEnd == -1) return -1
+
+            if (isClosing) {
+                depth--
+                if (depth == 0) {
+                    return if (name == readName(html, start + 1)) tagStart else -1
+                }
+            } else if (html[tagEnd - 1] != '/' && name !in VOID_ELEMENTS) {
+                depth++
+            } else if (depth == 0) {
+                // the element itself is empty
+                return -1
+            }
+            i = tagEnd + 1
+        }
+        return -1
+    }
+
+    // the index of the bracket closing the tag opened at the start, skipping the quoted attribute values
+    private fun tagEnd(html: String, start: Int): Int {
+        var quote = NO_QUOTE
+        for (i in start + 1 until html.length) {
+            val c = html[i]
+            if (quote != NO_QUOTE) {
+                if (c == quote) quote = NO_QUOTE
+            } else if (c == '"' || c == '\'') {
+                quote = c
+            } else if (c == '>') {
+                return i
+            }
+        }
+        return -1
+    }
+
+    private fun readName(html: String, start: Int): String {
+        if (start >= html.length || !html[start].isLetter()) {
+            return ""
+        }
+        var end = start + 1
+        while (end < html.length && (html[end].isLetterOrDigit() || html[end] == '-' || html[end] == '_' || html[end] == ':')) {
+            end++
+        }
+        return html.substring(start, end).lowercase()
+    }
+}
@@ -0,0 +1,214 @@
+package org.wordpress.aztec.source
+
+/**
+ * Hand written scanners for the whitespace rules of the (non Calypso) source editor formatting.
+ *
+ * Each scan goes over the HTML once, without backtracking, and produces exactly the output of the regular expression
+ * named in its documentation, which [Format] used to apply. A tag counts as a block element when its name starts
+ * with one of [BLOCK_ELEMENTS], like it does for the expressions.
+ */
+internal object HtmlSourceScanner {
+    private val BLOCK_ELEMENTS = arrayOf("div", "br", "blockquote", "ul", "ol", "li", "p", "pre",
+            "h1", "h2", "h3", "h4", "h5", "h6", "iframe", "hr")
+
+    private const val BR = "<br>"
+
+    /**
+     * Moves the newlines around the inline tags of the pretty printed HTML into the tags and puts every `<br>` on its
+     * own line, keeping the indentation. This is the same as replacing, one after the other:
+     *
+     * `(?<!</?(block)>)\n<((?!/?(block)).*?)>` with `<$2>`,
+     * `<(/?(?!block).)>\n(?!</?(block)>)` with `<$1>`,
+     * `([\t ]*)(<br>)(?!\n)` with `$1$2\n$1` and
+     * `>([\t ]*)(<br>)` with `>\n$1$2`.
+     */
+    fun formatNewlines(html: String): String {
+        return newlinesBeforeBreaks(breaksOnOwnLine(newlineToTheRight(newlineToTheLeft(html))))
+    }
+
+    /**
+     * Removes the whitespace around the block element tags, same as replacing `\s*<(/?(block)(.*?))>\s*` with `<$1>`.
+     */
+    fun removeBlockWhitespace(html: String): String {
+        val out = StringBuilder(html.length)
+        val length = html.length
+        var i = 0
+        // the end of the last match, whitespace before it is not part of the next one
+        var matchEnd = 0
+        while (i < length) {
+            val c = html[i]
+            if (c == '<') {
+                val nameStart = if (i + 1 < length && html[i + 1] == '/') i + 2 else i + 1
+                val tagEnd = if (isBlockElementAt(html, nameStart)) tagEnd(html, nameStart) else -1
+                if (tagEnd != -1) {
+                    var whitespaceStart = i
+                    while (whitespaceStart > matchEnd && isWhitespace(html[whitespaceStart - 1])) {
+                        whitespaceStart--
+                    }
+                    out.setLength(out.length - (i - whitespaceStart))
+                    out.append(html, i, tagEnd + 1)
+
+                    i = tagEnd + 1
+                    while (i < length && isWhitespace(html[i])) {
+                        i++
+                    }
+                    matchEnd = i
+                    continue
+                }
+            }
+            out.append(c)
+            i++
+        }
+        return out.toString()
+    }
+
+    // drops the newline before a tag, unless the newline follows a bare block tag or the tag is a block one
+    private fun newlineToTheLeft(html: String): String {
+        val out = StringBuilder(html.length)
+        val length = html.length
+        var i = 0
+        while (i < length) {
+            val c = html[i]
+            if (c == '\n' && i + 1 < length && html[i + 1] == '<' && !endsWithBareBlockTag(html, i)) {
+                val nameStart = i + 2
+                val isBlock = isBlockElementAt(html, nameStart)
+                        || nameStart < length && html[nameStart] == '/' && isBlockElementAt(html, nameStart + 1)
+                val tagEnd = if (isBlock) -1 else tagEnd(html, nameStart)
+                if (tagEnd != -1) {
+                    out.append(html, i + 1, tagEnd + 1)
+                    i = tagEnd + 1
+                    continue
+                }
+            }
+            out.append(c)
+            i++
+        }
+        return out.toString()
+    }
+
+    // drops the newline after a single character, non block, tag, unless a bare block tag follows it
+    private fun newlineToTheRight(html: String): String {
+        val out = StringBuilder(html.length)
+        val length = html.length
+        var i = 0
+        while (i < length) {
+            val c = html[i]
+            if (c == '<') {
+                val tagLength = when {
+                    i + 1 < length && html[i + 1] == '/' && isShortInlineTag(html, i + 2) -> 4
+                    isShortInlineTag(html, i + 1) -> 3
+                    else -> 0
+                }
+                if (tagLength > 0) {
+                    out.append(html, i, i + tagLength)
+                    i += tagLength + 1
+                    continue
+                }
+            }
+            out.append(c)
+            i++
+        }
+        return out.toString()
+    }
+
+    // whether the single character at [name] is a non block tag name, closing the tag right before a newline to drop
+    private fun isShortInlineTag(html: String, name: Int): Boolean {
+        return name + 2 < html.length
+                && !isLineTerminator(html[name])
+                && !isBlockElementAt(html, name)
+                && html[name + 1] == '>'
+                && html[name + 2] == '\n'
+                && !isBareBlockTagAt(html, name + 3)
+    }
+
+    // adds a newline and the indentation after every <br> which is not followed by a newline yet
+    private fun breaksOnOwnLine(html: String): String {
+        val out = StringBuilder(html.length)
+        val length = html.length
+        var i = 0
+        var matchEnd = 0
+        while (i < length) {
+            if (html.startsWith(BR, i) && (i + BR.length == length || html[i + BR.length] != '\n')) {
+                var indentStart = i
+                while (indentStart > matchEnd && isIndentation(html[indentStart - 1])) {
+                    indentStart--
+                }
+                out.append(BR).append('\n').append(html, indentStart, i)
+                i += BR.length
+                matchEnd = i
+                continue
+            }
+            out.append(html[i])
+            i++
+        }
+        return out.toString()
+    }
+
+    // adds a newline between a tag and the (indented) <br> following it
+    private fun newlinesBeforeBreaks(html: String): String {
+        val out = StringBuilder(html.length)
+        val length = html.length
+        var i = 0
+        while (i < length) {
+            val c = html[i]
+            if (c == '>') {
+                var brStart = i + 1
+                while (brStart < length && isIndentation(html[brStart])) {
+                    brStart++
+                }
+                if (html.startsWith(BR, brStart)) {
+                    out.append(">\n").append(html, i + 1, brStart).append(BR)
+                    i = brStart + BR.length
+                    continue
+                }
+            }
+            out.append(c)
+            i++
+        }
+        return out.toString()
+    }
+
+    private fun isBlockElementAt(html: String, index: Int): Boolean {
+        return BLOCK_ELEMENTS.any { html.startsWith(it, index) }
+    }
+
+    // a bare block tag is an opening or closing block element tag without attributes, e.g. <p> or </div>
+    private fun isBareBlockTagAt(html: String, index: Int): Boolean {
+        if (index >= html.length || html[index] != '<') return false
+        val nameStart = if (index + 1 < html.length && html[index + 1] == '/') index + 2 else index + 1
+        return BLOCK_ELEMENTS.any { html.startsWith(it, nameStart) && html.startsWith(">", nameStart + it.length) }
+    }
+
+    private fun endsWithBareBlockTag(html: String, end: Int): Boolean {
+        if (end < 1 || html[end - 1] != '>') return false
+        return BLOCK_ELEMENTS.any {
+            val nameStart = end - 1 - it.length
+            nameStart >= 1 && html.startsWith(it, nameStart)
+                    && (html[nameStart - 1] == '<' || nameStart >= 2 && html[nameStart - 1] == '/' && html[nameStart - 2] == '<')
+        }
+    }
+
+    // the index of the first '>' from [start] on the same line, or -1 if there is none
+    private fun tagEnd(html: String, start: Int): Int {
+        for (i in start until html.length) {
+            val c = html[i]
+            if (c == '>') return i
+            if (isLineTerminator(c)) return -1
+        }
+        return -1
+    }
+
+    // the characters which are not matched by '.' in a regular expression
+    private fun isLineTerminator(c: Char): Boolean {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029'
+    }
+
+    // the characters matched by '\s' in a regular expression
+    private fun isWhitespace(c: Char): Boolean {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\u000C' || c == '\r'
+    }
+
+    private fun isIndentation(c: Char): Boolean {
+        return c == ' ' || c == '\t'
+    }
+}
@@ -55,6 +55,12 @@ object HtmlStyleUtils {
             "|&there4;|&sim;|&cong;|&asymp;|&ne;|&equiv;|&le;|&ge;|&sub;|&sup;|&nsub;|&sube;|&supe;|&oplus;|&otimes;" +
             "|&perp;|&sdot;|&lceil;|&rceil;|&lfloor;|&rfloor;|&lang;|&rang;|&loz;|&spades;|&clubs;|&hearts;|&diams;)"
 
+    // compiled once, these are matched over the whole source
+    private val PATTERN_HTML_TAGS = Pattern.compile(REGEX_HTML_TAGS)
+    private val PATTERN_HTML_ATTRIBUTES = Pattern.compile(REGEX_HTML_ATTRIBUTES)
+    private val PATTERN_HTML_COMMENTS = Pattern.compile(REGEX_HTML_COMMENTS)
+    private val PATTERN_HTML_ENTITIES = Pattern.compile(REGEX_HTML_ENTITIES)
+
     val SPANNABLE_FLAGS = Spannable.SPAN_EXCLUSIVE_EXCLUSIVE
 
     /**
@@ -82,10 +88,10 @@ object HtmlStyleUtils {
             return
         }
 
-        applySpansByRegex(content, start, end, REGEX_HTML_TAGS, tagColor, attributeColor)
-        applySpansByRegex(content, start, end, REGEX_HTML_ATTRIBUTES, tagColor, attributeColor)
-        applySpansByRegex(content, start, end, REGEX_HTML_COMMENTS, tagColor, attributeColor)
-        applySpansByRegex(content, start, end, REGEX_HTML_ENTITIES, tagColor, attributeColor)
+        applySpansByRegex(content, start, end, PATTERN_HTML_TAGS, tagColor, attributeColor)
+        applySpansByRegex(content, start, end, PATTERN_HTML_ATTRIBUTES, tagColor, attributeColor)
+        applySpansByRegex(content, start, end, PATTERN_HTML_COMMENTS, tagColor, attributeColor)
+        applySpansByRegex(content, start, end, PATTERN_HTML_ENTITIES, tagColor, attributeColor)
     }
 
     /**
@@ -96,26 +102,25 @@ object HtmlStyleUtils {
      * *
      * @param end the index in `content` to style until
      * *
-     * @param regex the pattern to match for styling
+     * @param pattern the pattern to match for styling
      */
-    private fun applySpansByRegex(content: Spannable, start: Int, end: Int, regex: String, @ColorInt tagColor: Int,
+    private fun applySpansByRegex(content: Spannable, start: Int, end: Int, pattern: Pattern, @ColorInt tagColor: Int,
                                   @ColorInt attributeColor: Int) {
         if (start < 0 || end < 0 || start > content.length || end > content.length ||
                 start >= end) {
             return
         }
 
-        val pattern = Pattern.compile(regex)
         val matcher = pattern.matcher(content.subSequence(start, end))
 
         while (matcher.find()) {
             val matchStart = matcher.start() + start
             val matchEnd = matcher.end() + start
-            when (regex) {
-                REGEX_HTML_TAGS -> content.setSpan(ForegroundColorSpan(tagColor), matchStart, matchEnd, SPANNABLE_FLAGS)
-                REGEX_HTML_ATTRIBUTES -> content.setSpan(ForegroundColorSpan(attributeColor), matchStart, matchEnd, SPANNABLE_FLAGS)
-                REGEX_HTML_COMMENTS -> content.setSpan(ForegroundColorSpan(attributeColor), matchStart, matchEnd, SPANNABLE_FLAGS)
-                REGEX_HTML_ENTITIES -> {
+            when (pattern) {
+                PATTERN_HTML_TAGS -> content.setSpan(ForegroundColorSpan(tagColor), matchStart, matchEnd, SPANNABLE_FLAGS)
+                PATTERN_HTML_ATTRIBUTES -> content.setSpan(ForegroundColorSpan(attributeColor), matchStart, matchEnd, SPANNABLE_FLAGS)
+                PATTERN_HTML_COMMENTS -> content.setSpan(ForegroundColorSpan(attributeColor), matchStart, matchEnd, SPANNABLE_FLAGS)
+                PATTERN_HTML_ENTITIES -> {
                     content.setSpan(ForegroundColorSpan(tagColor), matchStart, matchEnd, SPANNABLE_FLAGS)
                     content.setSpan(AztecStyleSpan(Typeface.BOLD), matchStart, matchEnd, SPANNABLE_FLAGS)
                     content.setSpan(RelativeSizeSpan(0.75f), matchStart, matchEnd, SPANNABLE_FLAGS)
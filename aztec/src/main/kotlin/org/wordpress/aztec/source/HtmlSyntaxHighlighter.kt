@@ -0,0 +1,343 @@
+package org.wordpress.aztec.source
+
+import android.graphics.Typeface
+import android.text.Spannable
+import android.text.style.ForegroundColorSpan
+import android.text.style.RelativeSizeSpan
+import androidx.annotation.ColorInt
+import org.wordpress.aztec.spans.AztecStyleSpan
+import java.util.Collections
+
+/**
+ * Highlights the syntax of the HTML source line by line.
+ *
+ * A single pass tokenizer styles tags, attribute values, comments and entities. The lexer state at the start of every
+ * line is kept, so after an edit only the changed lines are styled again, followed by the lines whose starting state
+ * changed as a result (e.g. after opening a comment). Lines are only styled once they are requested through
+ * [highlight] or [ensureStyled], usually the ones around the visible part of the editor. The states of all the lines
+ * are still tracked, as they depend on everything before them.
+ *
+ * The offset at which each line starts is kept as well, so neither an edit nor styling a range goes through the text
+ * before it. Only the edits reported through the text watcher callbacks are followed, the text is highlighted from
+ * scratch again if it changed otherwise.
+ */
+class HtmlSyntaxHighlighter(@ColorInt private val tagColor: Int, @ColorInt private val attributeColor: Int) {
+    companion object {
+        private const val STATE_TEXT = 0
+        private const val STATE_TAG = 1
+        private const val STATE_SINGLE_QUOTED_VALUE = 2
+        private const val STATE_DOUBLE_QUOTED_VALUE = 3
+        private const val STATE_COMMENT = 4
+
+        private const val COMMENT_START = "<!--"
+        private const val COMMENT_END = "-->"
+
+        private const val NEWLINE = '\n'
+    }
+
+    private enum class Token {
+        TAG, ATTRIBUTE, COMMENT, ENTITY
+    }
+
+    // the lexer state at the start of each line and whether the line is styled
+    private val lineStates = ArrayList<Int>()
+    private val styledLines = ArrayList<Boolean>()
+
+    // the offset at which each line starts, in its first lineStates.size entries, and the length of the text
+    private var lineStarts = IntArray(0)
+    private var contentLength = 0
+
+    // the pending edit, reported by the text watcher callbacks
+    private var hasPendingEdit = false
+    private var editStart = 0
+    private var removedLength = 0
+    private var insertedLength = 0
+    private var removedNewlines = 0
+    private var insertedNewlines = 0
+
+    /**
+     * Tokenizes the whole [content] and styles the lines overlapping the range from [start] to [end].
+     */
+    fun highlight(content: Spannable, start: Int = 0, end: Int = content.length) {
+        hasPendingEdit = false
+        lineStates.clear()
+        styledLines.clear()
+        contentLength = content.length
+        HtmlStyleUtils.clearSpans(content, 0, content.length)
+
+        var state = STATE_TEXT
+        var lineStart = 0
+        while (true) {
+            val lineEnd = lineEnd(content, lineStart)
+            val isStyled = lineEnd >= start && lineStart <= end
+
+            ensureLineCapacity(lineStates.size + 1)
+            lineStarts[lineStates.size] = lineStart
+            lineStates.add(state)
+            styledLines.add(isStyled)
+            state = tokenizeLine(content, lineStart, lineEnd, state, isStyled)
+
+            if (lineEnd >= content.length) break
+            lineStart = lineEnd + 1
+        }
+    }
+
+    /**
+     * Styles the lines overlapping the range from [start] to [end] which were not styled yet.
+     */
+    fun ensureStyled(content: Spannable, start: Int, end: Int) {
+        if (lineStates.isEmpty() || content.length != contentLength) {
+            highlight(content, start, end)
+            return
+        }
+
+        var line = lineOf(start)
+        while (line < lineStates.size && lineStarts[line] <= end) {
+            if (!styledLines[line]) {
+                styleLine(content, line, lineStarts[line], lineEndOf(line))
+            }
+            line++
+        }
+    }
+
+    fun beforeTextChanged(text: CharSequence, start: Int, count: Int) {
+        removedLength = count
+        removedNewlines = countNewlines(text, start, start + count)
+    }
+
+    fun onTextChanged(text: CharSequence, start: Int, count: Int) {
+        editStart = start
+        insertedLength = count
+        insertedNewlines = countNewlines(text, start, start + count)
+        hasPendingEdit = true
+    }
+
+    /**
+     * Forgets the edit reported by the last text watcher callbacks, for an edit which is not highlighted.
+     */
+    fun discardEdit() {
+        hasPendingEdit = false
+    }
+
+    fun afterTextChanged(content: Spannable) {
+        if (!hasPendingEdit || lineStates.isEmpty()) {
+            return
+        }
+        hasPendingEdit = false
+
+        val firstLine = lineOf(editStart)
+        if (content.length != contentLength - removedLength + insertedLength
+                || firstLine + removedNewlines >= lineStates.size) {
+            // the states went out of sync with the text, changed while it was not watched
+            highlight(content, editStart, editStart)
+            return
+        }
+        contentLength = content.length
+
+        // replace the lines of the removed newlines with the lines of the inserted ones, the lines after them move
+        // along with the text
+        val lineCount = lineStates.size
+        val newLineCount = lineCount - removedNewlines + insertedNewlines
+        val movedLine = firstLine + 1 + insertedNewlines
+        ensureLineCapacity(newLineCount)
+        System.arraycopy(lineStarts, firstLine + 1 + removedNewlines, lineStarts, movedLine, newLineCount - movedLine)
+        for (line in movedLine until newLineCount) {
+            lineStarts[line] += insertedLength - removedLength
+        }
+        var insertedLine = firstLine
+        for (i in editStart until editStart + insertedLength) {
+            if (content[i] == NEWLINE) {
+                lineStarts[++insertedLine] = i + 1
+            }
+        }
+
+        val isStyled = styledLines[firstLine]
+        lineStates.subList(firstLine + 1, firstLine + 1 + removedNewlines).clear()
+        styledLines.subList(firstLine + 1, firstLine + 1 + removedNewlines).clear()
+        lineStates.addAll(firstLine + 1, Collections.nCopies(insertedNewlines, STATE_TEXT))
+        styledLines.addAll(firstLine + 1, Collections.nCopies(insertedNewlines, isStyled))
+
+        // go over the edited lines and then until the state at the start of a line is the known one again
+        val lastEditedLine = firstLine + insertedNewlines
+        var line = firstLine
+        while (true) {
+            val state = if (styledLines[line]) {
+                styleLine(content, line, lineStarts[line], lineEndOf(line))
+            } else {
+                tokenizeLine(content, lineStarts[line], lineEndOf(line), lineStates[line], false)
+            }
+
+            line++
+            if (line >= lineStates.size) break
+
+            if (line > lastEditedLine && lineStates[line] == state) break
+            lineStates[line] = state
+        }
+    }
+
+    // styles the line from scratch and returns the state at its end
+    private fun styleLine(content: Spannable, line: Int, lineStart: Int, lineEnd: Int): Int {
+        if (lineStart < lineEnd) {
+            HtmlStyleUtils.clearSpans(content, lineStart, lineEnd)
+        }
+        styledLines[line] = true
+        return tokenizeLine(content, lineStart, lineEnd, lineStates[line], true)
+    }
+
+    // tokenizes the line, styling the tokens if requested, and returns the state at its end
+    private fun tokenizeLine(content: Spannable, lineStart: Int, lineEnd: Int, startState: Int, isStyled: Boolean): Int {
+        var state = startState
+        var tokenStart = lineStart
+        var i = lineStart
+
+        while (i < lineEnd) {
+            val c = content[i]
+            when (state) {
+                STATE_TEXT -> {
+                    if (c == '<') {
+                        if (regionMatches(content, i, lineEnd, COMMENT_START)) {
+                            state = STATE_COMMENT
+                            tokenStart = i
+                            i += COMMENT_START.length
+                            continue
+                        } else if (isTagStart(content, i, lineEnd)) {
+                            state = STATE_TAG
+                            tokenStart = i
+                        }
+                    } else if (c == '&') {
+                        val entityEnd = entityEnd(content, i, lineEnd)
+                        if (entityEnd > 0) {
+                            if (isStyled) applyToken(content, Token.ENTITY, i, entityEnd)
+                            i = entityEnd
+                            continue
+                        }
+                    }
+                }
+                STATE_TAG -> {
+                    if (c == '>') {
+                        if (isStyled) applyToken(content, Token.TAG, tokenStart, i + 1)
+                        state = STATE_TEXT
+                    } else if (c == '<') {
+                        // not a tag after all, look at the bracket again as text
+                        if (isStyled) applyToken(content, Token.TAG, tokenStart, i)
+                        state = STATE_TEXT
+                        continue
+                    } else if ((c == '"' || c == '\'') && i > lineStart && content[i - 1] == '=') {
+                        if (isStyled) applyToken(content, Token.TAG, tokenStart, i)
+                        state = if (c == '"') STATE_DOUBLE_QUOTED_VALUE else STATE_SINGLE_QUOTED_VALUE
+                        tokenStart = i
+                    }
+                }
+                STATE_SINGLE_QUOTED_VALUE, STATE_DOUBLE_QUOTED_VALUE -> {
+                    if (c == (if (state == STATE_DOUBLE_QUOTED_VALUE) '"' else '\'')) {
+                        if (isStyled) applyToken(content, Token.ATTRIBUTE, tokenStart, i + 1)
+                        state = STATE_TAG
+                        tokenStart = i + 1
+                    }
+                }
+                STATE_COMMENT -> {
+                    if (regionMatches(content, i, lineEnd, COMMENT_END)) {
+                        i += COMMENT_END.length
+                        if (isStyled) applyToken(content, Token.COMMENT, tokenStart, i)
+                        state = STATE_TEXT
+                        continue
+                    }
+                }
+            }
+            i++
+        }
+
+        // tokens spanning several lines are styled a line at a time
+        if (isStyled) {
+            when (state) {
+                STATE_TAG -> applyToken(content, Token.TAG, tokenStart, lineEnd)
+                STATE_SINGLE_QUOTED_VALUE, STATE_DOUBLE_QUOTED_VALUE -> applyToken(content, Token.ATTRIBUTE, tokenStart, lineEnd)
+                STATE_COMMENT -> applyToken(content, Token.COMMENT, tokenStart, lineEnd)
+            }
+        }
+        return state
+    }
+
+    private fun applyToken(content: Spannable, token: Token, start: Int, end: Int) {
+        if (start >= end) return
+
+        val flags = HtmlStyleUtils.SPANNABLE_FLAGS
+        when (token) {
+            Token.TAG -> content.setSpan(ForegroundColorSpan(tagColor), start, end, flags)
+            Token.ATTRIBUTE, Token.COMMENT -> content.setSpan(ForegroundColorSpan(attributeColor), start, end, flags)
+            Token.ENTITY -> {
+                content.setSpan(ForegroundColorSpan(tagColor), start, end, flags)
+                content.setSpan(AztecStyleSpan(Typeface.BOLD), start, end, flags)
+                content.setSpan(RelativeSizeSpan(0.75f), start, end, flags)
+            }
+        }
+    }
+
+    // a tag starts with a lowercase letter, optionally after the slash of a closing tag
+    private fun isTagStart(content: CharSequence, start: Int, end: Int): Boolean {
+        var i = start + 1
+        if (i < end && content[i] == '/') i++
+        return i < end && content[i] in 'a'..'z'
+    }
+
+    // returns the end of the named or numeric entity starting at [start], or -1 if there is none
+    private fun entityEnd(content: CharSequence, start: Int, end: Int): Int {
+        var i = start + 1
+        if (i < end && content[i] == '#') {
+            i++
+            val isHex = i < end && (content[i] == 'x' || content[i] == 'X')
+            if (isHex) i++
+            val digitsStart = i
+            while (i < end && (content[i] in '0'..'9' || isHex && (content[i] in 'a'..'f' || content[i] in 'A'..'F'))) i++
+            if (i == digitsStart) return -1
+        } else {
+            if (i >= end || !content[i].isLetter()) return -1
+            while (i < end && content[i].isLetterOrDigit()) i++
+        }
+        return if (i < end && content[i] == ';') i + 1 else -1
+    }
+
+    private fun regionMatches(content: CharSequence, start: Int, end: Int, token: String): Boolean {
+        if (start + token.length > end) return false
+        for (i in token.indices) {
+            if (content[start + i] != token[i]) return false
+        }
+        return true
+    }
+
+    // the line the offset is on, found among the line starts
+    private fun lineOf(offset: Int): Int {
+        var low = 0
+        var high = lineStates.size - 1
+        while (low < high) {
+            val middle = (low + high + 1) ushr 1
+            if (lineStarts[middle] <= offset) low = middle else high = middle - 1
+        }
+        return low
+    }
+
+    // the offset of the newline ending the line, or the length of the text for the last one
+    private fun lineEndOf(line: Int): Int {
+        return if (line + 1 < lineStates.size) lineStarts[line + 1] - 1 else contentLength
+    }
+
+    private fun ensureLineCapacity(lines: Int) {
+        if (lineStarts.size < lines) {
+            lineStarts = lineStarts.copyOf(Math.max(lines, lineStarts.size * 2))
+        }
+    }
+
+    private fun lineEnd(content: CharSequence, lineStart: Int): Int {
+        var i = lineStart
+        while (i < content.length && content[i] != NEWLINE) i++
+        return i
+    }
+
+    private fun countNewlines(text: CharSequence, start: Int, end: Int): Int {
+        var count = 0
+        for (i in start until Math.min(end, text.length)) {
+            if (text[i] == NEWLINE) count++
+        }
+        return count
+    }
+}
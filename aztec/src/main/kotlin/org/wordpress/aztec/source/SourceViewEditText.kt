@@ -2,6 +2,7 @@ package org.wordpress.aztec.source
 
 import android.annotation.SuppressLint
 import android.content.Context
+import android.graphics.Rect
 import android.os.Bundle
 import android.os.Parcel
 import android.os.Parcelable
@@ -13,6 +14,7 @@ import android.util.AttributeSet
 import android.view.KeyEvent
 import android.view.MotionEvent
 import android.view.View
+import android.view.ViewTreeObserver
 import androidx.annotation.ColorInt
 import androidx.appcompat.widget.AppCompatEditText
 import org.wordpress.aztec.AztecText
@@ -27,6 +29,8 @@ import org.wordpress.aztec.util.InstanceStateUtils
 open class SourceViewEditText : AppCompatEditText, TextWatcher {
     companion object {
         val RETAINED_CONTENT_KEY = "RETAINED_CONTENT_KEY"
+
+        private const val INITIAL_STYLED_LENGTH = 10000
     }
 
     @ColorInt var tagColor = ContextCompat.getColor(context, R.color.html_tag)
@@ -34,7 +38,12 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
     @ColorInt var attributeColor = ContextCompat.getColor(context, R.color.html_attribute)
         internal set
 
-    private var styleTextWatcher: HtmlStyleTextWatcher? = null
+    private var highlighter: HtmlSyntaxHighlighter? = null
+
+    // only the source around the visible part of the editor is highlighted, the rest once scrolled to
+    private val visibleRect = Rect()
+    private val styleVisibleHtmlListener = ViewTreeObserver.OnScrollChangedListener { styleVisibleHtml() }
+    private val styleVisibleHtmlOnLayoutListener = ViewTreeObserver.OnGlobalLayoutListener { styleVisibleHtml() }
 
     private var onImeBackListener: AztecText.OnImeBackListener? = null
 
@@ -72,7 +81,7 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
         tagColor = values.getColor(R.styleable.SourceViewEditText_tagColor, tagColor)
         attributeColor = values.getColor(R.styleable.SourceViewEditText_attributeColor, attributeColor)
 
-        styleTextWatcher = HtmlStyleTextWatcher(tagColor, attributeColor)
+        highlighter = HtmlSyntaxHighlighter(tagColor, attributeColor)
 
         values.recycle()
     }
@@ -84,11 +93,15 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
         addTextChangedListener(this)
+        viewTreeObserver.addOnScrollChangedListener(styleVisibleHtmlListener)
+        viewTreeObserver.addOnGlobalLayoutListener(styleVisibleHtmlOnLayoutListener)
     }
 
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
         removeTextChangedListener(this)
+        viewTreeObserver.removeOnScrollChangedListener(styleVisibleHtmlListener)
+        viewTreeObserver.removeOnGlobalLayoutListener(styleVisibleHtmlOnLayoutListener)
     }
 
     override fun onRestoreInstanceState(state: Parcelable?) {
@@ -96,7 +109,8 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
         super.onRestoreInstanceState(savedState.superState)
         val customState = savedState.state
         visibility = customState.getInt("visibility")
-        val retainedContent = InstanceStateUtils.readAndPurgeTempInstance<String>(RETAINED_CONTENT_KEY, "", savedState.state)
+        val retainedContent = InstanceStateUtils.readAndPurgeTempStrings(RETAINED_CONTENT_KEY, savedState.state)
+                ?.firstOrNull() ?: ""
         setText(retainedContent)
         customState.getByteArray(AztecText.RETAINED_INITIAL_HTML_PARSED_SHA256_KEY)?.let {
             initialEditorContentParsedSHA256 = it
@@ -115,7 +129,7 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
         val bundle = Bundle()
         bundle.putByteArray(org.wordpress.aztec.AztecText.RETAINED_INITIAL_HTML_PARSED_SHA256_KEY,
                 initialEditorContentParsedSHA256)
-        InstanceStateUtils.writeTempInstance(context, null, RETAINED_CONTENT_KEY, text.toString(), bundle)
+        InstanceStateUtils.writeTempStrings(context, null, RETAINED_CONTENT_KEY, listOf(text.toString()), bundle)
         val superState = super.onSaveInstanceState()
         val savedState = superState?.let { SavedState(it) }
         bundle.putInt("visibility", visibility)
@@ -157,19 +171,21 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
             history?.beforeTextChanged(this)
         }
 
-        styleTextWatcher?.beforeTextChanged(text, start, count, after)
+        highlighter?.beforeTextChanged(text, start, count)
     }
 
     override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
-        styleTextWatcher?.onTextChanged(text, start, before, count)
+        highlighter?.onTextChanged(text, start, count)
     }
 
     override fun afterTextChanged(text: Editable?) {
         if (isTextChangedListenerDisabled()) {
             enableTextChangedListener()
+            // the text set while the listener is disabled is highlighted along with it
+            highlighter?.discardEdit()
             return
         }
-        styleTextWatcher?.afterTextChanged(text)
+        text?.let { highlighter?.afterTextChanged(it) }
     }
 
     fun redo() {
@@ -195,10 +211,11 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
     }
 
     fun displayStyledAndFormattedHtml(source: String) {
-        val styledHtml = styleHtml(Format.addSourceEditorFormatting(source, isInCalypsoMode))
+        val styledHtml = SpannableStringBuilder(Format.addSourceEditorFormatting(source, isInCalypsoMode))
+        val cursorPosition = consumeCursorTag(styledHtml)
+        styleHtml(styledHtml, cursorPosition)
 
         disableTextChangedListener()
-        val cursorPosition = consumeCursorTag(styledHtml)
         text = styledHtml
         initialEditorContentParsedSHA256 = AztecText.calculateInitialHTMLSHA(getPureHtml(false),
                 initialEditorContentParsedSHA256)
@@ -208,6 +225,51 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
             setSelection(cursorPosition)
     }
 
+    /**
+     * Same as [displayStyledAndFormattedHtml], except that only the part of the current source that differs from the
+     * new one gets replaced, so the unchanged lines keep their highlighting and layout.
+     */
+    fun updateStyledAndFormattedHtml(source: String) {
+        val content = text
+        if (content.isNullOrEmpty()) {
+            displayStyledAndFormattedHtml(source)
+            return
+        }
+
+        val formattedHtml = SpannableStringBuilder(Format.addSourceEditorFormatting(source, isInCalypsoMode))
+        val cursorPosition = consumeCursorTag(formattedHtml)
+
+        // the start and the end the current and the new source have in common stay in place
+        val maxLength = Math.min(content.length, formattedHtml.length)
+        var prefix = 0
+        while (prefix < maxLength && content[prefix] == formattedHtml[prefix]) {
+            prefix++
+        }
+        var suffix = 0
+        while (suffix < maxLength - prefix &&
+                content[content.length - 1 - suffix] == formattedHtml[formattedHtml.length - 1 - suffix]) {
+            suffix++
+        }
+
+        disableTextChangedListener()
+        if (prefix < content.length - suffix || prefix < formattedHtml.length - suffix) {
+            val end = content.length - suffix
+            val replacementEnd = formattedHtml.length - suffix
+            // afterTextChanged doesn't highlight the edits made while the listener is disabled, so this one is reported
+            // to the highlighter here
+            highlighter?.beforeTextChanged(content, prefix, end - prefix)
+            content.replace(prefix, end, formattedHtml, prefix, replacementEnd)
+            highlighter?.onTextChanged(content, prefix, replacementEnd - prefix)
+            highlighter?.afterTextChanged(content)
+        }
+        initialEditorContentParsedSHA256 = AztecText.calculateInitialHTMLSHA(getPureHtml(false),
+                initialEditorContentParsedSHA256)
+        enableTextChangedListener()
+
+        if (cursorPosition > 0)
+            setSelection(cursorPosition)
+    }
+
     fun consumeCursorTag(styledHtml: SpannableStringBuilder): Int {
         var cursorTagIndex = styledHtml.indexOf(AztecCursorSpan.AZTEC_CURSOR_TAG)
         if (cursorTagIndex < 0) return 0
@@ -232,16 +294,31 @@ open class SourceViewEditText : AppCompatEditText, TextWatcher {
     }
 
     fun displayStyledHtml(source: String) {
-        val styledHtml = styleHtml(source)
+        val styledHtml = SpannableStringBuilder(source)
+        styleHtml(styledHtml, selectionEnd)
         disableTextChangedListener()
         setTextKeepState(styledHtml)
         enableTextChangedListener()
     }
 
-    private fun styleHtml(source: String): SpannableStringBuilder {
-        val styledHtml = SpannableStringBuilder(source)
-        HtmlStyleUtils.styleHtmlForDisplayWithColors(styledHtml, tagColor, attributeColor)
-        return styledHtml
+    // styles the source around the position, the rest follows once it is laid out, see styleVisibleHtml
+    private fun styleHtml(styledHtml: SpannableStringBuilder, position: Int) {
+        highlighter?.highlight(styledHtml, position - INITIAL_STYLED_LENGTH, position + INITIAL_STYLED_LENGTH)
+    }
+
+    private fun styleVisibleHtml() {
+        val layout = layout ?: return
+        val content = text ?: return
+        if (!getLocalVisibleRect(visibleRect)) return
+
+        // keep a screen worth of styled source above and below the visible part
+        val margin = visibleRect.height()
+        val top = Math.max(0, visibleRect.top + scrollY - totalPaddingTop - margin)
+        val bottom = visibleRect.bottom + scrollY - totalPaddingTop + margin
+        val start = layout.getLineStart(layout.getLineForVertical(top))
+        val end = layout.getLineEnd(layout.getLineForVertical(bottom))
+
+        highlighter?.ensureStyled(content, start, end)
     }
 
     fun isCursorInsideTag(): Boolean {
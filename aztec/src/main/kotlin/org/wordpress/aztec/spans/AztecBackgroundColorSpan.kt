@@ -7,7 +7,7 @@ import org.wordpress.aztec.AztecAttributes
 
 class AztecBackgroundColorSpan(
         val color: Int
-) : BackgroundColorSpan(color), IAztecInlineSpan {
+) : BackgroundColorSpan(color), IAztecInlineSpan, IAztecCopyableSpan {
 
     var alpha: Int = 220
     var tag: String = "span"
@@ -22,4 +22,6 @@ class AztecBackgroundColorSpan(
     }
 
     override val TAG = tag
+
+    override fun copySpan(): Any = clone()
 }
\ No newline at end of file
@@ -24,7 +24,7 @@ import android.text.style.MetricAffectingSpan
 import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.formatting.InlineFormatter
 
-class AztecCodeSpan(override var attributes: AztecAttributes = AztecAttributes()) : MetricAffectingSpan(), IAztecExclusiveInlineSpan {
+class AztecCodeSpan(override var attributes: AztecAttributes = AztecAttributes()) : MetricAffectingSpan(), IAztecExclusiveInlineSpan, IAztecCopyableSpan {
     override val TAG = "code"
 
     var codeStyle = InlineFormatter.CodeStyle(0, 0.0f, 0)
@@ -51,4 +51,6 @@ class AztecCodeSpan(override var attributes: AztecAttributes = AztecAttributes()
                 Color.blue(codeStyle.codeBackground))
         tp.color = codeStyle.codeColor
     }
+
+    override fun copySpan(): Any = clone()
 }
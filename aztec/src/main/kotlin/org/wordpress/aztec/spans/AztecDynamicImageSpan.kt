@@ -9,7 +9,7 @@ import android.text.style.DynamicDrawableSpan
 import org.wordpress.aztec.AztecText
 import java.lang.ref.WeakReference
 
-abstract class AztecDynamicImageSpan(val context: Context, protected var imageDrawable: Drawable?) : DynamicDrawableSpan() {
+abstract class AztecDynamicImageSpan(val context: Context, protected var imageDrawable: Drawable?) : DynamicDrawableSpan(), IAztecCopyableSpan {
     var textView: WeakReference<AztecText>? = null
     var aspectRatio: Double = 1.0
 
@@ -154,4 +154,6 @@ abstract class AztecDynamicImageSpan(val context: Context, protected var imageDr
 
         canvas.restore()
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -64,7 +64,7 @@ open class AztecHeadingSpan(
         textFormat: ITextFormat,
         override var attributes: AztecAttributes,
         open var headerStyle: BlockFormatter.HeaderStyles
-) : MetricAffectingSpan(), IAztecLineBlockSpan, LineHeightSpan, UpdateLayout {
+) : MetricAffectingSpan(), IAztecLineBlockSpan, LineHeightSpan, UpdateLayout, IAztecCopyableSpan {
     override val TAG: String
         get() = heading.tag
 
@@ -230,4 +230,6 @@ open class AztecHeadingSpan(
     }
 
     override fun toString() = "AztecHeadingSpan : $TAG"
+
+    override fun copySpan(): Any = clone()
 }
@@ -29,7 +29,7 @@ open class AztecListItemSpan(
         override var nestingLevel: Int,
         override var attributes: AztecAttributes,
         var listItemStyle: BlockFormatter.ListItemStyle = BlockFormatter.ListItemStyle(
-                false, 0)) : CharacterStyle(), IAztecCompositeBlockSpan {
+                false, 0)) : CharacterStyle(), IAztecCompositeBlockSpan, IAztecCopyableSpan {
     fun toggleCheck() {
         if (attributes.getValue(CHECKED) == "true") {
             attributes.setValue(CHECKED, "false")
@@ -95,6 +95,8 @@ open class AztecListItemSpan(
             tp.color = listItemStyle.checkedItemsTextColor
         }
     }
+
+    override fun copySpan(): Any = clone()
 }
 
 class AztecListItemSpanAligned(
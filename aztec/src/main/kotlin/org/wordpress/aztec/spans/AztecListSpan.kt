@@ -1,21 +1,78 @@
 package org.wordpress.aztec.spans
 
 import android.graphics.Paint
+import android.text.SpanWatcher
+import android.text.Spannable
 import android.text.Spanned
 import android.text.style.LeadingMarginSpan
 import android.text.style.LineHeightSpan
 import android.text.style.UpdateLayout
 import org.wordpress.aztec.Constants
+import java.lang.ref.WeakReference
+import java.util.Arrays
 
 abstract class AztecListSpan(override var nestingLevel: Int,
                              var verticalPadding: Int = 0
 ) : LeadingMarginSpan.Standard(0),
         LineHeightSpan,
         UpdateLayout,
-        IAztecBlockSpan {
+        SpanWatcher,
+        IAztecBlockSpan,
+        IAztecCopyableSpan {
     override var endBeforeBleed: Int = -1
     override var startBeforeCollapse: Int = -1
 
+    // the sorted starts of the items of this list, so numbering a line is a lookup. Being a SpanWatcher, the list is
+    // told about the span changes within it and drops the index when its items are added, moved or re-nested.
+    private var itemStarts: IntArray? = null
+    // all the items within the list, the ones of its sublists included, by their start, and the lists within it
+    private var items: Array<AztecListItemSpan> = emptyArray()
+    private var innerLists: Array<AztecListSpan> = emptyArray()
+    private var indexedText: WeakReference<Spanned>? = null
+    private var indexedSpanStart = -1
+    private var indexedSpanEnd = -1
+
+    override fun onSpanAdded(text: Spannable, what: Any, start: Int, end: Int) {
+        invalidateItemIndex(what)
+    }
+
+    override fun onSpanRemoved(text: Spannable, what: Any, start: Int, end: Int) {
+        invalidateItemIndex(what)
+    }
+
+    override fun onSpanChanged(text: Spannable, what: Any, ostart: Int, oend: Int, nstart: Int, nend: Int) {
+        invalidateItemIndex(what)
+    }
+
+    private fun invalidateItemIndex(what: Any) {
+        if (what is AztecListItemSpan || what is AztecListSpan) {
+            itemStarts = null
+        }
+    }
+
+    private fun getItemStarts(text: Spanned, spanStart: Int, spanEnd: Int): IntArray {
+        val cached = itemStarts
+        if (cached != null && indexedText?.get() === text && indexedSpanStart == spanStart && indexedSpanEnd == spanEnd) {
+            return cached
+        }
+
+        // item starts are clipped to the list, as if looked up in its own text
+        val allItems = text.getSpans(spanStart, spanEnd, AztecListItemSpan::class.java)
+        val starts = allItems
+                .filter { it.nestingLevel == nestingLevel + 1 }
+                .map { Math.max(text.getSpanStart(it), spanStart) }
+                .toIntArray()
+        Arrays.sort(starts)
+
+        itemStarts = starts
+        items = allItems.sortedBy { text.getSpanStart(it) }.toTypedArray()
+        innerLists = text.getSpans(spanStart, spanEnd, AztecListSpan::class.java).filter { it !== this }.toTypedArray()
+        indexedText = WeakReference(text)
+        indexedSpanStart = spanStart
+        indexedSpanEnd = spanEnd
+        return starts
+    }
+
     override fun chooseHeight(text: CharSequence, start: Int, end: Int, spanstartv: Int, v: Int, fm: Paint.FontMetricsInt) {
         val spanned = text as Spanned
         val spanStart = spanned.getSpanStart(this)
@@ -35,46 +92,69 @@ abstract class AztecListSpan(override var nestingLevel: Int,
         val spanStart = (text as Spanned).getSpanStart(this)
         val spanEnd = text.getSpanEnd(this)
 
-        val listText = text.subSequence(spanStart, spanEnd) as Spanned
+        val itemStarts = getItemStarts(text, spanStart, spanEnd)
 
-        if (end - spanStart - 1 >= 0 && end - spanStart <= listText.length) {
-            val hasSublist = listText.getSpans(end - spanStart - 1, end - spanStart, AztecListSpan::class.java)
-                    .any { it.nestingLevel > nestingLevel }
+        if (end - 1 >= spanStart && end <= spanEnd) {
+            val hasSublist = innerLists.any { it.nestingLevel > nestingLevel && overlaps(text, it, end - 1, end) }
             if (hasSublist) {
                 return null
             }
         }
 
         // only display a line indicator when it's the first line of a list item
-        val textBeforeBeforeEnd = listText.subSequence(0, end - spanStart) as Spanned
-        val startOfLine = textBeforeBeforeEnd.lastIndexOf(Constants.NEWLINE) + 1
-        val isValidListItem = listText.getSpans(0, listText.length, AztecListItemSpan::class.java)
-                .any { it.nestingLevel == nestingLevel + 1 && listText.getSpanStart(it) == startOfLine }
+        var startOfLine = end
+        while (startOfLine > spanStart && text[startOfLine - 1] != Constants.NEWLINE) {
+            startOfLine--
+        }
 
-        if (!isValidListItem) {
+        if (Arrays.binarySearch(itemStarts, startOfLine) < 0) {
             return null
         }
 
-        // count the list item spans up to the current line with the expected nesting level => item number
-        val checkEnd = Math.min(textBeforeBeforeEnd.length + 1, listText.length)
-        return listText.getSpans(0, checkEnd, AztecListItemSpan::class.java)
-                .filter { it.nestingLevel == nestingLevel + 1 }
-                .size
+        // count the list items starting up to the current line => item number
+        val checkEnd = Math.min(end + 1, spanEnd)
+        var low = 0
+        var high = itemStarts.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (itemStarts[middle] < checkEnd) low = middle + 1 else high = middle
+        }
+        return low
     }
 
-    fun getNumberOfItemsInProcessedLine(text: CharSequence): Int {
+    /**
+     * The item of this list or of one of its sublists at the [index], in the order the items start in, or null if
+     * there are not as many items.
+     */
+    fun getItemAt(text: CharSequence, index: Int): AztecListItemSpan? {
         val spanStart = (text as Spanned).getSpanStart(this)
         val spanEnd = text.getSpanEnd(this)
 
-        val listText = text.subSequence(spanStart, spanEnd) as Spanned
+        getItemStarts(text, spanStart, spanEnd)
+        return items.getOrNull(index)
+    }
 
-        return listText.getSpans(0, listText.length, AztecListItemSpan::class.java)
-                .filter { it.nestingLevel == nestingLevel + 1 }
-                .size
+    // whether the span would be found by getSpans(start, end) on the text
+    private fun overlaps(text: Spanned, span: Any, start: Int, end: Int): Boolean {
+        val spanStart = text.getSpanStart(span)
+        val spanEnd = text.getSpanEnd(span)
+        if (spanStart == -1 || spanStart > end || spanEnd < start) {
+            return false
+        }
+        return spanStart == spanEnd || start == end || (spanStart != end && spanEnd != start)
+    }
+
+    fun getNumberOfItemsInProcessedLine(text: CharSequence): Int {
+        val spanStart = (text as Spanned).getSpanStart(this)
+        val spanEnd = text.getSpanEnd(this)
+
+        return getItemStarts(text, spanStart, spanEnd).size
     }
 
     fun nestingDepth(text: Spanned, index: Int, nextIndex: Int): Int {
         val finalNextIndex = if (nextIndex > text.length) index else nextIndex
         return IAztecNestable.getNestingLevelAt(text, index, finalNextIndex)
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -52,7 +52,8 @@ open class AztecPreformatSpan(
         LeadingMarginSpan,
         LineBackgroundSpan,
         LineHeightSpan,
-        TypefaceSpan("monospace") {
+        TypefaceSpan("monospace"),
+        IAztecCopyableSpan {
     override val TAG: String = "pre"
 
     override var endBeforeBleed: Int = -1
@@ -124,6 +125,24 @@ open class AztecPreformatSpan(
         strokeCap = Paint.Cap.ROUND
     }
 
+    // reused on every line drawn, the corners only change with the border radius
+    private val fillPath = Path()
+    private val borderPath = Path()
+    private var cornerPathEffect: CornerPathEffect? = null
+    private var cornerRadius = 0
+
+    private fun getCornerPathEffect(): CornerPathEffect {
+        val radius = preformatStyle.preformatBorderRadius
+        val cached = cornerPathEffect
+        if (cached != null && cornerRadius == radius) {
+            return cached
+        }
+        return CornerPathEffect(radius.toFloat()).also {
+            cornerPathEffect = it
+            cornerRadius = radius
+        }
+    }
+
     override fun drawBackground(canvas: Canvas, paint: Paint, left: Int, right: Int, top: Int, baseline: Int,
                                 bottom: Int, text: CharSequence, start: Int, end: Int, lnum: Int) {
         val spanned = text as Spanned
@@ -141,13 +160,15 @@ open class AztecPreformatSpan(
                 Color.blue(preformatStyle.preformatBackground)
         )
 
-        fillPaint.pathEffect = CornerPathEffect(preformatStyle.preformatBorderRadius.toFloat())
-        strokePaint.pathEffect = CornerPathEffect(preformatStyle.preformatBorderRadius.toFloat())
+        val corners = getCornerPathEffect()
+        fillPaint.pathEffect = corners
+        strokePaint.pathEffect = corners
 
         strokePaint.color = preformatStyle.preformatBorderColor
         strokePaint.strokeWidth = preformatStyle.preformatBorderThickness.toFloat()
 
-        val fillPath = Path().apply {
+        fillPath.reset()
+        fillPath.apply {
             if (isFirstLine) {
                 moveTo(left.toFloat(), bottom.toFloat())
                 lineTo(left.toFloat(), top.toFloat())
@@ -171,7 +192,8 @@ open class AztecPreformatSpan(
 
         canvas.drawPath(fillPath, fillPaint)
 
-        val borderPath = Path().apply {
+        borderPath.reset()
+        borderPath.apply {
             if (isFirstLine) {
                 moveTo(left.toFloat(), bottom.toFloat())
                 lineTo(left.toFloat(), top.toFloat())
@@ -205,4 +227,6 @@ open class AztecPreformatSpan(
     }
 
     override val textFormat: ITextFormat = AztecTextFormat.FORMAT_PREFORMAT
+
+    override fun copySpan(): Any = clone()
 }
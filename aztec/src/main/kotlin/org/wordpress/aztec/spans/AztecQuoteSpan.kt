@@ -25,7 +25,6 @@ import androidx.core.text.TextDirectionHeuristicCompat
 import androidx.core.text.TextDirectionHeuristicsCompat
 import androidx.core.text.TextUtilsCompat
 import androidx.core.view.ViewCompat
-import android.text.Editable
 import android.text.Layout
 import android.text.Spanned
 import android.text.TextPaint
@@ -35,12 +34,13 @@ import android.text.style.LineBackgroundSpan
 import android.text.style.LineHeightSpan
 import android.text.style.UpdateAppearance
 import android.text.style.UpdateLayout
-import androidx.collection.ArrayMap
 import org.wordpress.aztec.AlignmentRendering
 import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.AztecTextFormat
 import org.wordpress.aztec.ITextFormat
 import org.wordpress.aztec.formatting.BlockFormatter
+import java.lang.ref.WeakReference
+import java.util.Arrays
 import java.util.Locale
 
 fun createAztecQuoteSpan(
@@ -77,14 +77,31 @@ open class AztecQuoteSpan(
         IAztecBlockSpan,
         LineHeightSpan,
         UpdateLayout,
-        UpdateAppearance {
+        UpdateAppearance,
+        IAztecCopyableSpan {
 
     override var endBeforeBleed: Int = -1
     override var startBeforeCollapse: Int = -1
 
     private val rect = Rect()
     private var offset: Int = 0
-    private val quoteStart = ArrayMap<Int, Float>()
+
+    // the start of the stripe drawn in the margin of each line, by the start of the line, for the background to start
+    // from. Kept in sorted arrays rather than a map, so drawing doesn't box the offsets.
+    private var quoteStartLines = IntArray(INITIAL_LINE_CAPACITY)
+    private var quoteStarts = FloatArray(INITIAL_LINE_CAPACITY)
+    private var quoteStartCount = 0
+
+    // whether the quote is within a list item, looked up again when the quote moves or is nested differently
+    private var isWithinListItem = false
+    private var listItemText: WeakReference<Spanned>? = null
+    private var listItemSpanStart = -1
+    private var listItemSpanEnd = -1
+    private var listItemNestingLevel = -1
+
+    // the text direction heuristic for the default locale, picked again when the locale changes
+    private var directionLocale: Locale? = null
+    private var directionHeuristic: TextDirectionHeuristicCompat = TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR
 
     override val TAG: String = "blockquote"
 
@@ -148,8 +165,7 @@ open class AztecQuoteSpan(
         p.style = Paint.Style.FILL
         p.color = quoteStyle.quoteColor
 
-        val editable = text as Editable
-        val isWithinListItem = isWithinListItem(editable, start, end)
+        val isWithinListItem = isWithinListItem(text as Spanned)
         val isRtl = isRtlQuote(text, start, end)
 
         val margin: Int
@@ -172,12 +188,12 @@ open class AztecQuoteSpan(
             marginStart = (margin + dir * quoteStyle.quoteWidth).toFloat()
             marginEnd = margin.toFloat()
 
-            quoteStart[start] = marginStart
+            setQuoteStart(start, marginStart)
         } else {
             marginStart = margin.toFloat()
             marginEnd = (margin + dir * quoteStyle.quoteWidth).toFloat()
 
-            quoteStart[start] = marginEnd
+            setQuoteStart(start, marginEnd)
         }
 
         c.drawRect(marginStart, top.toFloat(), marginEnd, bottom.toFloat(), p)
@@ -186,9 +202,43 @@ open class AztecQuoteSpan(
         p.color = color
     }
 
-    private fun isWithinListItem(editable: Editable, start: Int, end: Int): Boolean {
-        return editable.getSpans(start, end, AztecListItemSpan::class.java)
-                .any { it.nestingLevel == nestingLevel - 1 }
+    private fun isWithinListItem(text: Spanned): Boolean {
+        val spanStart = text.getSpanStart(this)
+        val spanEnd = text.getSpanEnd(this)
+        if (listItemText?.get() !== text || listItemSpanStart != spanStart || listItemSpanEnd != spanEnd ||
+                listItemNestingLevel != nestingLevel) {
+            isWithinListItem = text.getSpans(spanStart, spanEnd, AztecListItemSpan::class.java)
+                    .any { it.nestingLevel == nestingLevel - 1 }
+            listItemText = WeakReference(text)
+            listItemSpanStart = spanStart
+            listItemSpanEnd = spanEnd
+            listItemNestingLevel = nestingLevel
+        }
+        return isWithinListItem
+    }
+
+    private fun setQuoteStart(lineStart: Int, quoteStart: Float) {
+        val index = Arrays.binarySearch(quoteStartLines, 0, quoteStartCount, lineStart)
+        if (index >= 0) {
+            quoteStarts[index] = quoteStart
+            return
+        }
+
+        val insertion = -(index + 1)
+        if (quoteStartCount == quoteStartLines.size) {
+            quoteStartLines = quoteStartLines.copyOf(quoteStartCount * 2)
+            quoteStarts = quoteStarts.copyOf(quoteStartCount * 2)
+        }
+        System.arraycopy(quoteStartLines, insertion, quoteStartLines, insertion + 1, quoteStartCount - insertion)
+        System.arraycopy(quoteStarts, insertion, quoteStarts, insertion + 1, quoteStartCount - insertion)
+        quoteStartLines[insertion] = lineStart
+        quoteStarts[insertion] = quoteStart
+        quoteStartCount++
+    }
+
+    private fun getQuoteStart(lineStart: Int): Int {
+        val index = Arrays.binarySearch(quoteStartLines, 0, quoteStartCount, lineStart)
+        return if (index >= 0) quoteStarts[index].toInt() else 0
     }
 
     override fun drawBackground(c: Canvas, p: Paint, left: Int, right: Int,
@@ -211,9 +261,9 @@ open class AztecQuoteSpan(
 
         if (isRtl) {
             quoteBackgroundStart = left
-            quoteBackgroundEnd = quoteStart[start]?.toInt() ?: 0
+            quoteBackgroundEnd = getQuoteStart(start)
         } else {
-            quoteBackgroundStart = quoteStart[start]?.toInt() ?: 0
+            quoteBackgroundStart = getQuoteStart(start)
             quoteBackgroundEnd = right
         }
 
@@ -224,13 +274,17 @@ open class AztecQuoteSpan(
     }
 
     private fun isRtlQuote(text: CharSequence, start: Int, end: Int): Boolean {
-        val textDirectionHeuristic: TextDirectionHeuristicCompat =
-                if (TextUtilsCompat.getLayoutDirectionFromLocale(Locale.getDefault()) == ViewCompat.LAYOUT_DIRECTION_RTL) {
-                    TextDirectionHeuristicsCompat.FIRSTSTRONG_RTL
-                } else {
-                    TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR
-                }
-        return textDirectionHeuristic.isRtl(text, start, end - start)
+        val locale = Locale.getDefault()
+        if (locale !== directionLocale) {
+            directionHeuristic =
+                    if (TextUtilsCompat.getLayoutDirectionFromLocale(locale) == ViewCompat.LAYOUT_DIRECTION_RTL) {
+                        TextDirectionHeuristicsCompat.FIRSTSTRONG_RTL
+                    } else {
+                        TextDirectionHeuristicsCompat.FIRSTSTRONG_LTR
+                    }
+            directionLocale = locale
+        }
+        return directionHeuristic.isRtl(text, start, end - start)
     }
 
     override val textFormat: ITextFormat = AztecTextFormat.FORMAT_QUOTE
@@ -238,4 +292,10 @@ open class AztecQuoteSpan(
     override fun updateDrawState(tp: TextPaint?) {
         tp?.color = quoteStyle.quoteTextColor
     }
+
+    override fun copySpan(): Any = clone()
+
+    companion object {
+        private const val INITIAL_LINE_CAPACITY = 8
+    }
 }
@@ -5,6 +5,8 @@ import org.wordpress.aztec.AztecAttributes
 
 class AztecStrikethroughSpan(tag: String = "s",
                              override var attributes: AztecAttributes = AztecAttributes())
-    : StrikethroughSpan(), IAztecInlineSpan {
+    : StrikethroughSpan(), IAztecInlineSpan, IAztecCopyableSpan {
     override val TAG = tag
+
+    override fun copySpan(): Any = clone()
 }
@@ -5,7 +5,7 @@ import android.text.style.StyleSpan
 import org.wordpress.aztec.AztecAttributes
 
 open class AztecStyleSpan(style: Int, override var attributes: AztecAttributes = AztecAttributes())
-    : StyleSpan(style), IAztecInlineSpan {
+    : StyleSpan(style), IAztecInlineSpan, IAztecCopyableSpan {
     override val TAG by lazy {
         when (style) {
             Typeface.BOLD -> {
@@ -17,4 +17,6 @@ open class AztecStyleSpan(style: Int, override var attributes: AztecAttributes =
         }
         throw IllegalArgumentException()
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -4,6 +4,8 @@ import android.text.style.SubscriptSpan
 import org.wordpress.aztec.AztecAttributes
 
 class AztecSubscriptSpan @JvmOverloads constructor(override var attributes: AztecAttributes = AztecAttributes())
-    : SubscriptSpan(), IAztecInlineSpan {
+    : SubscriptSpan(), IAztecInlineSpan, IAztecCopyableSpan {
     override val TAG = "sub"
+
+    override fun copySpan(): Any = clone()
 }
@@ -4,6 +4,8 @@ import android.text.style.SuperscriptSpan
 import org.wordpress.aztec.AztecAttributes
 
 class AztecSuperscriptSpan @JvmOverloads constructor(override var attributes: AztecAttributes = AztecAttributes())
-    : SuperscriptSpan(), IAztecInlineSpan {
+    : SuperscriptSpan(), IAztecInlineSpan, IAztecCopyableSpan {
     override val TAG = "sup"
+
+    override fun copySpan(): Any = clone()
 }
@@ -68,6 +68,10 @@ open class AztecTaskListSpan(
     private var toggled: Boolean = false
     override val TAG = "ul"
 
+    // reused on every draw of the checkboxes
+    private val checkbox: Drawable by lazy { context.resources.getDrawable(R.drawable.ic_checkbox, null) }
+    private val fontMetrics = Paint.FontMetrics()
+
     override val startTag: String
         get() {
             attributes.setTaskList()
@@ -96,21 +100,19 @@ open class AztecTaskListSpan(
 
         p.color = listStyle.indicatorColor
         p.style = Paint.Style.FILL
-        val drawableHeight = (0.8 * (p.fontMetrics.bottom - p.fontMetrics.top))
+        p.getFontMetrics(fontMetrics)
+        val drawableHeight = (0.8 * (fontMetrics.bottom - fontMetrics.top))
         // Make sure the marker is correctly aligned on RTL languages
         val markerStartPosition: Float = x + (listStyle.indicatorMargin * dir) * 1f
-        val d: Drawable = context.resources.getDrawable(R.drawable.ic_checkbox, null)
+        val d: Drawable = checkbox
         val leftBound = markerStartPosition.toInt()
         if (isChecked(text, lineIndex)) {
-            d.state = intArrayOf(android.R.attr.state_checked)
-        } else {
-            d.state = intArrayOf()
-        }
-        val (startShift, endShift) = if (dir > 0) {
-            0.8 to 0.2
+            d.state = CHECKED_STATE
         } else {
-            0.2 to 0.8
+            d.state = UNCHECKED_STATE
         }
+        val startShift = if (dir > 0) 0.8 else 0.2
+        val endShift = if (dir > 0) 0.2 else 0.8
 
         d.setBounds((leftBound - drawableHeight * startShift).toInt().coerceAtLeast(0),
                 (baseline - drawableHeight * 0.8).toInt(),
@@ -133,13 +135,13 @@ open class AztecTaskListSpan(
     }
 
     private fun isChecked(text: CharSequence, lineIndex: Int): Boolean {
-        val spanStart = (text as Spanned).getSpanStart(this)
-        val spanEnd = text.getSpanEnd(this)
-        val sortedSpans = text.getSpans(spanStart, spanEnd, AztecListItemSpan::class.java).sortedBy {
-            text.getSpanStart(it)
-        }
-        return sortedSpans.getOrNull(lineIndex - 1)?.attributes?.getValue("checked") == "true"
+        return getItemAt(text, lineIndex - 1)?.attributes?.getValue("checked") == "true"
     }
 
     override val textFormat: ITextFormat = AztecTextFormat.FORMAT_TASK_LIST
+
+    companion object {
+        private val CHECKED_STATE = intArrayOf(android.R.attr.state_checked)
+        private val UNCHECKED_STATE = intArrayOf()
+    }
 }
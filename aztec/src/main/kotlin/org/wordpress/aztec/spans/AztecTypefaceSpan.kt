@@ -6,6 +6,8 @@ import org.wordpress.aztec.AztecAttributes
 open class AztecTypefaceSpan @JvmOverloads constructor(tag: String,
                                                        family: String,
                                                        override var attributes: AztecAttributes = AztecAttributes())
-    : TypefaceSpan(family), IAztecInlineSpan {
+    : TypefaceSpan(family), IAztecInlineSpan, IAztecCopyableSpan {
     override val TAG = tag
+
+    override fun copySpan(): Any = clone()
 }
@@ -22,7 +22,7 @@ import android.text.style.URLSpan
 import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.formatting.LinkFormatter
 
-class AztecURLSpan : URLSpan, IAztecInlineSpan {
+class AztecURLSpan : URLSpan, IAztecInlineSpan, IAztecCopyableSpan {
     override val TAG = "a"
 
     var linkStyle = LinkFormatter.LinkStyle(0, true)
@@ -45,4 +45,6 @@ class AztecURLSpan : URLSpan, IAztecInlineSpan {
         ds.color = if (linkStyle.linkColor != 0) linkStyle.linkColor else ds.linkColor
         ds.isUnderlineText = linkStyle.linkUnderline
     }
+
+    override fun copySpan(): Any = clone()
 }
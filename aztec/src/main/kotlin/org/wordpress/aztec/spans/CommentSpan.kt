@@ -3,8 +3,10 @@ package org.wordpress.aztec.spans
 import android.text.TextPaint
 import android.text.style.CharacterStyle
 
-class CommentSpan(val text: String) : CharacterStyle() {
+class CommentSpan(val text: String) : CharacterStyle(), IAztecCopyableSpan {
     var isHidden: Boolean = false
     override fun updateDrawState(tp: TextPaint) {
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -4,9 +4,11 @@ import android.text.TextPaint
 import android.text.style.CharacterStyle
 import org.wordpress.aztec.AztecAttributes
 
-class FontSpan(override var attributes: AztecAttributes = AztecAttributes()) : CharacterStyle(), IAztecInlineSpan {
+class FontSpan(override var attributes: AztecAttributes = AztecAttributes()) : CharacterStyle(), IAztecInlineSpan, IAztecCopyableSpan {
     override var TAG = "font"
 
     override fun updateDrawState(tp: TextPaint?) {
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -31,9 +31,11 @@ class HiddenHtmlBlockSpanAligned(tag: String,
 
 open class HiddenHtmlBlockSpan(tag: String,
                                override var attributes: AztecAttributes,
-                               override var nestingLevel: Int) : IAztecBlockSpan {
+                               override var nestingLevel: Int) : IAztecBlockSpan, IAztecCopyableSpan {
     override var endBeforeBleed: Int = -1
     override var startBeforeCollapse: Int = -1
     override val TAG: String = tag
     override val textFormat: ITextFormat? = null
+
+    override fun copySpan(): Any = clone()
 }
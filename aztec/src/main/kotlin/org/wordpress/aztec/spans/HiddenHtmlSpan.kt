@@ -22,6 +22,8 @@ class HiddenHtmlSpanAligned(tag: String,
 
 open class HiddenHtmlSpan(tag: String,
                           override var attributes: AztecAttributes,
-                          override var nestingLevel: Int) : IAztecParagraphStyle {
+                          override var nestingLevel: Int) : IAztecParagraphStyle, IAztecCopyableSpan {
     override val TAG: String = tag
+
+    override fun copySpan(): Any = clone()
 }
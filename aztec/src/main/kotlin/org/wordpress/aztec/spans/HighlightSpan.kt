@@ -12,7 +12,7 @@ import org.wordpress.aztec.util.ColorConverter
 class HighlightSpan(
         override var attributes: AztecAttributes = AztecAttributes(),
         val colorHex: Int
-) : BackgroundColorSpan(colorHex), IAztecInlineSpan {
+) : BackgroundColorSpan(colorHex), IAztecInlineSpan, IAztecCopyableSpan {
     override var TAG = HIGHLIGHT_TAG
 
     companion object {
@@ -42,4 +42,6 @@ class HighlightSpan(
             }
         }
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -0,0 +1,13 @@
+package org.wordpress.aztec.spans
+
+/**
+ * A span that [org.wordpress.aztec.AztecText.snapshotHtml] copies, so that the snapshot serializes the span as it was
+ * when captured while the editor keeps changing it. The spans that aren't copyable are shared with the editor.
+ */
+interface IAztecCopyableSpan : Cloneable {
+    /**
+     * Returns a shallow copy of the span, normally `clone()`, which only the class of the span can call. The snapshot
+     * then gives an [IAztecAttributedSpan] copy its own attributes.
+     */
+    fun copySpan(): Any
+}
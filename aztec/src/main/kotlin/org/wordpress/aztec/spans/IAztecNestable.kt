@@ -49,9 +49,14 @@ interface IAztecNestable {
         }
 
         fun getParent(spannable: Spannable, child: SpanWrapper<out IAztecNestable>): SpanWrapper<out IAztecNestable>? {
-            return SpanWrapper.getSpans<IAztecNestable>(spannable, child.start, child.start + 1)
-                    .sortedBy { it.span.nestingLevel }
-                    .lastOrNull { it.span.nestingLevel < child.span.nestingLevel }
+            // the deepest nestable above the child, the last one found when several are at that level
+            var parent: IAztecNestable? = null
+            for (span in spannable.getSpans(child.start, child.start + 1, IAztecNestable::class.java)) {
+                if (span.nestingLevel < child.span.nestingLevel && (parent == null || span.nestingLevel >= parent.nestingLevel)) {
+                    parent = span
+                }
+            }
+            return parent?.let { SpanWrapper(spannable, it) }
         }
     }
 }
@@ -6,7 +6,7 @@ import android.text.style.CharacterStyle
 import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.source.CssStyleFormatter
 
-class MarkSpan : CharacterStyle, IAztecInlineSpan {
+class MarkSpan : CharacterStyle, IAztecInlineSpan, IAztecCopyableSpan {
     override var TAG = "mark"
 
     override var attributes: AztecAttributes = AztecAttributes()
@@ -42,4 +42,6 @@ class MarkSpan : CharacterStyle, IAztecInlineSpan {
         val currentColor = textColorValue ?: 0
         return String.format("#%06X", 0xFFFFFF and currentColor)
     }
+
+    override fun copySpan(): Any = clone()
 }
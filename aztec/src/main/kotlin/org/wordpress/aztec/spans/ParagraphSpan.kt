@@ -37,7 +37,7 @@ open class ParagraphSpan(
         override var nestingLevel: Int,
         override var attributes: AztecAttributes,
         var paragraphStyle: BlockFormatter.ParagraphStyle = BlockFormatter.ParagraphStyle(0))
-    : IAztecBlockSpan, LineHeightSpan {
+    : IAztecBlockSpan, LineHeightSpan, IAztecCopyableSpan {
 
     private var removeTopPadding = false
 
@@ -83,6 +83,8 @@ open class ParagraphSpan(
     override var endBeforeBleed: Int = -1
     override var startBeforeCollapse: Int = -1
     override val textFormat: ITextFormat = AztecTextFormat.FORMAT_PARAGRAPH
+
+    override fun copySpan(): Any = clone()
 }
 
 class ParagraphSpanAligned(
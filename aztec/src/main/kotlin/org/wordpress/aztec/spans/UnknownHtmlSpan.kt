@@ -10,7 +10,7 @@ class UnknownHtmlSpan @JvmOverloads constructor(
         context: Context,
         drawable: Int,
         var onUnknownHtmlTappedListener: OnUnknownHtmlTappedListener? = null
-    ) : ImageSpan(context, drawable), ParagraphStyle, IAztecNestable {
+    ) : ImageSpan(context, drawable), ParagraphStyle, IAztecNestable, IAztecCopyableSpan {
 
     fun onClick() {
         onUnknownHtmlTappedListener?.onUnknownHtmlTapped(this)
@@ -24,4 +24,6 @@ class UnknownHtmlSpan @JvmOverloads constructor(
     interface OnUnknownHtmlTappedListener {
         fun onUnknownHtmlTapped(unknownHtmlSpan: UnknownHtmlSpan)
     }
+
+    override fun copySpan(): Any = clone()
 }
@@ -677,9 +677,11 @@ class AztecToolbar : FrameLayout, IAztecToolbar, OnMenuItemClickListener {
         }
 
         if (editor!!.hasChanges() != NO_CHANGES || !Arrays.equals(editorContentParsedSHA256LastSwitch, sha256)) {
-            sourceEditor!!.displayStyledAndFormattedHtml(editorHtml)
+            sourceEditor!!.updateStyledAndFormattedHtml(editorHtml)
         }
         editorContentParsedSHA256LastSwitch = sha256
+        // switching back only parses the blocks edited in the meantime
+        editor!!.keepSourceSnapshot(editorHtml)
     }
 
     private fun syncEditorFromSource() {
@@ -693,7 +695,7 @@ class AztecToolbar : FrameLayout, IAztecToolbar, OnMenuItemClickListener {
         }
 
         if (sourceEditor!!.hasChanges() != NO_CHANGES || !Arrays.equals(sourceContentParsedSHA256LastSwitch, sha256)) {
-            editor!!.fromHtml(sourceHtml)
+            editor!!.fromSourceHtml(sourceHtml)
         }
         sourceContentParsedSHA256LastSwitch = sha256
     }
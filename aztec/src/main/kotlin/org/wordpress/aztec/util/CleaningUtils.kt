@@ -5,6 +5,8 @@ import org.jsoup.nodes.Document
 import org.jsoup.parser.Parser
 
 object CleaningUtils {
+    private const val COMMENT_START = "<!--"
+    private const val COMMENT_END = "-->"
 
     @JvmStatic
     fun cleanNestedBoldTags(doc: Document) {
@@ -19,10 +21,114 @@ object CleaningUtils {
         .forEach { it.unwrap() }
     }
 
+    /**
+     * Cleans the nested <b> tags of the HTML. The HTML is only parsed when a <b> tag opens inside another one, or when
+     * upper case tags leave that unclear, otherwise it is returned as it is.
+     */
     @JvmStatic
     fun cleanNestedBoldTags(html: String) : String {
+        if (!mayHaveNestedBoldTags(html)) {
+            return html
+        }
         val doc = Jsoup.parse(html, "", Parser.xmlParser()).outputSettings(Document.OutputSettings().prettyPrint(false))
         cleanNestedBoldTags(doc)
         return doc.html()
     }
-}
\ No newline at end of file
+
+    // Follows the tags the way the XML parser reads them and tells whether a <b> opens inside another one. Anything
+    // it doesn't follow exactly, like upper case names, bogus or unfinished tags and declarations, counts as nested.
+    private fun mayHaveNestedBoldTags(html: String): Boolean {
+        var depth = 0
+        var i = html.indexOf('<')
+        while (i != -1) {
+            if (i + 1 >= html.length) {
+                return false
+            }
+            val next = html[i + 1]
+            if (html.startsWith(COMMENT_START, i)) {
+                val commentEnd = html.indexOf(COMMENT_END, i + COMMENT_START.length)
+                // the parser ends comments in a few more ways, those are not followed
+                if (commentEnd == -1 || html.startsWith(">", i + COMMENT_START.length) ||
+                        html.startsWith("->", i + COMMENT_START.length) ||
+                        html.substring(i + COMMENT_START.length, commentEnd).contains("--!>")) {
+                    return true
+                }
+                i = html.indexOf('<', commentEnd + COMMENT_END.length)
+                continue
+            }
+            if (next == '!' || next == '?') {
+                return true
+            }
+
+            val isClosing = next == '/'
+            val nameStart = if (isClosing) i + 2 else i + 1
+            if (nameStart >= html.length || !html[nameStart].isLetter()) {
+                if (isClosing) {
+                    // a bogus comment
+                    return true
+                }
+                // a bracket in the text
+                i = html.indexOf('<', i + 1)
+                continue
+            }
+
+            var nameEnd = nameStart
+            while (nameEnd < html.length && !isNameEnd(html[nameEnd])) {
+                nameEnd++
+            }
+            val tagEnd = tagEnd(html, nameEnd)
+            if (tagEnd == -1) {
+                return true
+            }
+
+            val isBold = nameEnd - nameStart == 1 && html[nameStart] == 'b'
+            if (!isBold && nameEnd - nameStart == 1 && html[nameStart] == 'B') {
+                return true
+            }
+            if (isBold && isClosing) {
+                depth = Math.max(0, depth - 1)
+            } else if (isBold) {
+                if (depth > 0) {
+                    return true
+                }
+                if (html[tagEnd - 1] != '/') {
+                    depth++
+                }
+            }
+            i = html.indexOf('<', tagEnd + 1)
+        }
+        return false
+    }
+
+    private fun isNameEnd(c: Char): Boolean {
+        return c == '>' || c == '/' || c == '<' || Character.isWhitespace(c)
+    }
+
+    // the index of the bracket closing the tag, skipping the quoted attribute values, or -1 when it is not clear
+    private fun tagEnd(html: String, start: Int): Int {
+        var i = start
+        while (i < html.length) {
+            when (html[i]) {
+                '>' -> return i
+                '<' -> return -1
+                '"', '\'' -> {
+                    // a quote only starts a value after the equals sign
+                    var previous = i - 1
+                    while (previous > start && Character.isWhitespace(html[previous])) {
+                        previous--
+                    }
+                    if (previous < start || html[previous] != '=') {
+                        return -1
+                    }
+                    val valueEnd = html.indexOf(html[i], i + 1)
+                    if (valueEnd == -1) {
+                        return -1
+                    }
+                    i = valueEnd
+                }
+            }
+            i++
+        }
+        return -1
+    }
+}
@@ -0,0 +1,72 @@
+package org.wordpress.aztec.util
+
+import org.wordpress.aztec.Constants
+import org.wordpress.aztec.spans.AztecCursorSpan
+
+/**
+ * Hand written scanner for the cleanup [org.wordpress.aztec.AztecParser] applies to the HTML it reads and writes.
+ *
+ * It goes over the HTML once and produces exactly the output of removing [Constants.ZWJ_STRING] and
+ * [Constants.MAGIC_STRING], followed by replacing `(</? ?br>)*((aztec_cursor)?)</tag>` with `$2</tag>` for the
+ * closing tags of [CLOSING_TAGS], one after the other.
+ */
+internal object HtmlTidyScanner {
+    private val CLOSING_TAGS = arrayOf("</blockquote>", "</li>", "</p>", "</pre>")
+
+    private val BREAKS = arrayOf("<br>", "</br>", "< br>", "</ br>")
+
+    /**
+     * Drops the zero width joiners and the magic characters, and the line breaks right before the end of the quotes,
+     * list items, paragraphs and preformatted blocks. A cursor marker between the line breaks and the end is kept.
+     */
+    fun tidy(html: String): String {
+        val out = StringBuilder(html.length)
+        for (c in html) {
+            if (c == Constants.ZWJ_CHAR || c == Constants.MAGIC_CHAR) {
+                continue
+            }
+            out.append(c)
+
+            // the tags are looked for in the output, as the dropped characters don't separate them
+            if (c == '>') {
+                val tag = CLOSING_TAGS.firstOrNull { endsWith(out, out.length, it) }
+                if (tag != null) {
+                    removeBreaksBefore(out, out.length - tag.length)
+                }
+            }
+        }
+        return out.toString()
+    }
+
+    private fun removeBreaksBefore(out: StringBuilder, tagStart: Int) {
+        val breaksEnd = if (endsWith(out, tagStart, AztecCursorSpan.AZTEC_CURSOR_TAG)) {
+            tagStart - AztecCursorSpan.AZTEC_CURSOR_TAG.length
+        } else {
+            tagStart
+        }
+
+        var breaksStart = breaksEnd
+        while (true) {
+            val lineBreak = BREAKS.firstOrNull { endsWith(out, breaksStart, it) } ?: break
+            breaksStart -= lineBreak.length
+        }
+
+        if (breaksStart < breaksEnd) {
+            out.delete(breaksStart, breaksEnd)
+        }
+    }
+
+    // whether the text of the builder before the end ends with the suffix
+    private fun endsWith(out: StringBuilder, end: Int, suffix: String): Boolean {
+        val start = end - suffix.length
+        if (start < 0) {
+            return false
+        }
+        for (i in suffix.indices) {
+            if (out[start + i] != suffix[i]) {
+                return false
+            }
+        }
+        return true
+    }
+}
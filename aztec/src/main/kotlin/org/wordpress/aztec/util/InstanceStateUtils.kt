@@ -3,15 +3,39 @@ package org.wordpress.aztec.util
 import android.content.Context
 import android.os.Bundle
 import org.wordpress.android.util.AppLog
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
 import java.io.File
 import java.io.FileInputStream
 import java.io.FileOutputStream
 import java.io.IOException
+import java.io.InputStream
 import java.io.ObjectInputStream
 import java.io.ObjectOutputStream
+import java.io.OutputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
 
 class InstanceStateUtils {
     companion object {
+        // "AZS1", marks the files written by [writeTempStrings]
+        private const val STRINGS_FORMAT_MAGIC = 0x415A5331
+        private const val STRINGS_FLAG_DEFLATED = 1
+        private const val NULL_STRING = -1
+
+        // the writes are done in order, off the main thread. Their files are only read once written, see [awaitWrite]
+        private val writeExecutor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "aztec-instance-state").apply { isDaemon = true }
+        }
+        private val pendingWrites = ConcurrentHashMap<String, Future<*>>()
 
         private fun cacheFilenameKey(varName: String): String {
             return "CACHEFILENAMEKEY_$varName"
@@ -27,14 +51,14 @@ class InstanceStateUtils {
                 with(File.createTempFile(varName, ".inst", context.getCacheDir())) {
                     deleteOnExit() // just make sure if we miss deleting this cache file the VM will eventually do it
 
-                    FileOutputStream(this).use { output ->
+                    writeReplacing(this) { output ->
                         ObjectOutputStream(output).use { objectOutput ->
                             objectOutput.writeObject(obj)
-
-                            // keep the filename in the bundle to use it to read the object back
-                            bundle.putString(cacheFilenameKey(varName), this.path)
                         }
                     }
+
+                    // keep the filename in the bundle to use it to read the object back
+                    bundle.putString(cacheFilenameKey(varName), this.path)
                 }
             } catch (e: IOException) {
                 logCacheWriteException(externalLogger, varName, e)
@@ -45,6 +69,216 @@ class InstanceStateUtils {
             }
         }
 
+        /**
+         * Writes a list of strings to a temp file in a compact binary format and keeps the filename in the [bundle].
+         * Only the file is created here, the strings are encoded and written on a background thread. Reading them back
+         * with [readAndPurgeTempStrings] waits for the write to complete.
+         *
+         * Every string is stored as the difference to the string before it: the length of their common prefix and
+         * suffix, followed by the UTF-8 bytes of the rest. Successive versions of a document, like the current content
+         * and its history, then take little more than their differences.
+         */
+        fun writeTempStrings(context: Context, externalLogger: AztecLog.ExternalLogger?, varName: String,
+                             strings: List<String?>, bundle: Bundle, deflate: Boolean = true) {
+            val file = try {
+                File.createTempFile(varName, ".inst", context.getCacheDir())
+            } catch (e: IOException) {
+                logCacheWriteException(externalLogger, varName, e)
+                return
+            } catch (e: SecurityException) {
+                logCacheWriteException(externalLogger, varName, e)
+                return
+            }
+            file.deleteOnExit() // just make sure if we miss deleting this cache file the VM will eventually do it
+
+            // keep the filename in the bundle to use it to read the strings back
+            bundle.putString(cacheFilenameKey(varName), file.path)
+
+            // the strings are immutable, copying the list is enough to hand them over
+            val snapshot = ArrayList(strings)
+            val write = writeExecutor.submit {
+                try {
+                    writeReplacing(file) { output ->
+                        writeStrings(output, snapshot, deflate)
+                    }
+                } catch (e: IOException) {
+                    logCacheWriteException(externalLogger, varName, e)
+                } finally {
+                    pendingWrites.remove(file.path)
+                }
+            }
+            // the write might even be done already, only keep it around while pending
+            pendingWrites[file.path] = write
+            if (write.isDone) {
+                pendingWrites.remove(file.path)
+            }
+        }
+
+        /**
+         * Reads the strings written by [writeTempStrings] and deletes their file. Returns null if there is nothing to
+         * read back, for example when the file was already purged by the system.
+         */
+        fun readAndPurgeTempStrings(varName: String, bundle: Bundle): List<String?>? {
+            val filename = bundle.getString(cacheFilenameKey(varName))
+
+            if (filename.isNullOrEmpty()) {
+                return null
+            }
+
+            awaitWrite(filename)
+
+            val file = File(filename)
+
+            if (!file.exists()) {
+                return null
+            }
+
+            val strings = try {
+                FileInputStream(file).use { input ->
+                    readStrings(input)
+                }
+            } catch (e: IOException) {
+                AppLog.w(AppLog.T.EDITOR, "Error trying to read cache for $varName. Exception: ${e.message}")
+                null
+            }
+            file.delete() // eagerly delete the cache file. If any is missed the VM will delete it on reboot.
+
+            return strings
+        }
+
+        // writes a sibling of the file and moves it over the file once complete, so a failed or interrupted write never
+        // leaves the file with part of the content to read back
+        private fun writeReplacing(file: File, write: (OutputStream) -> Unit) {
+            val partial = File(file.parentFile, file.name + ".part")
+            partial.deleteOnExit()
+            try {
+                FileOutputStream(partial).use(write)
+                if (!partial.renameTo(file)) {
+                    throw IOException("Could not move ${partial.path} over ${file.path}")
+                }
+            } finally {
+                partial.delete()
+            }
+        }
+
+        private fun awaitWrite(filename: String) {
+            try {
+                pendingWrites[filename]?.get()
+            } catch (e: ExecutionException) {
+                // the write logged its own failure, reading reports what is left
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+            }
+        }
+
+        internal fun writeStrings(output: OutputStream, strings: List<String?>, deflate: Boolean) {
+            val header = DataOutputStream(output)
+            header.writeInt(STRINGS_FORMAT_MAGIC)
+            header.writeByte(if (deflate) STRINGS_FLAG_DEFLATED else 0)
+
+            val deflater = if (deflate) Deflater(Deflater.BEST_SPEED) else null
+            try {
+                val body = if (deflater != null) DeflaterOutputStream(output, deflater) else output
+                val data = DataOutputStream(BufferedOutputStream(body))
+                data.writeInt(strings.size)
+
+                var previous = ""
+                strings.forEach { string ->
+                    if (string == null) {
+                        data.writeInt(NULL_STRING)
+                        return@forEach
+                    }
+
+                    val prefix = commonPrefixLength(previous, string)
+                    val suffix = commonSuffixLength(previous, string, prefix)
+                    val bytes = string.substring(prefix, string.length - suffix).toByteArray(Charsets.UTF_8)
+
+                    data.writeInt(prefix)
+                    data.writeInt(suffix)
+                    data.writeInt(bytes.size)
+                    data.write(bytes)
+
+                    previous = string
+                }
+
+                data.flush()
+                if (body is DeflaterOutputStream) {
+                    body.finish()
+                }
+            } finally {
+                // the native memory of the deflater is only freed by the finalizer otherwise
+                deflater?.end()
+            }
+        }
+
+        internal fun readStrings(input: InputStream): List<String?> {
+            val header = DataInputStream(input)
+            if (header.readInt() != STRINGS_FORMAT_MAGIC) {
+                throw IOException("Unknown instance state format")
+            }
+            val isDeflated = header.readByte().toInt() and STRINGS_FLAG_DEFLATED != 0
+
+            val inflater = if (isDeflated) Inflater() else null
+            try {
+                val body = if (inflater != null) InflaterInputStream(input, inflater) else input
+                val data = DataInputStream(BufferedInputStream(body))
+
+                val count = data.readInt()
+                val strings = ArrayList<String?>(count)
+
+                var previous = ""
+                for (i in 0 until count) {
+                    val prefix = data.readInt()
+                    if (prefix == NULL_STRING) {
+                        strings.add(null)
+                        continue
+                    }
+
+                    val suffix = data.readInt()
+                    val bytes = ByteArray(data.readInt())
+                    data.readFully(bytes)
+
+                    val string = StringBuilder(prefix + bytes.size + suffix)
+                            .append(previous, 0, prefix)
+                            .append(String(bytes, Charsets.UTF_8))
+                            .append(previous, previous.length - suffix, previous.length)
+                            .toString()
+
+                    strings.add(string)
+                    previous = string
+                }
+
+                return strings
+            } finally {
+                inflater?.end()
+            }
+        }
+
+        private fun commonPrefixLength(a: String, b: String): Int {
+            val max = Math.min(a.length, b.length)
+            var length = 0
+            while (length < max && a[length] == b[length]) {
+                length++
+            }
+            // do not split a surrogate pair, its halves would not survive the UTF-8 encoding
+            if (length > 0 && Character.isHighSurrogate(b[length - 1])) {
+                length--
+            }
+            return length
+        }
+
+        private fun commonSuffixLength(a: String, b: String, prefix: Int): Int {
+            val max = Math.min(a.length, b.length) - prefix
+            var length = 0
+            while (length < max && a[a.length - 1 - length] == b[b.length - 1 - length]) {
+                length++
+            }
+            if (length > 0 && Character.isLowSurrogate(b[b.length - length])) {
+                length--
+            }
+            return length
+        }
+
         fun <T> readAndPurgeTempInstance(varName: String, defaultValue: T, bundle: Bundle): T {
             // the full path is kept in the bundle so, get it from there
             val filename = bundle.getString(cacheFilenameKey(varName))
@@ -87,21 +87,16 @@ open class BlockElementWatcher(aztecText: AztecText) : TextWatcher {
             }
 
             // check for a replay marker and use its bounds
-            hasReplay = aztecTextRef.get()?.text?.let text@ { text ->
-                text.getSpans(0, s.length, MarkForReplay::class.java).firstOrNull { mark ->
-                    if (mark != null) {
-                        startIndex = text.getSpanStart(mark)
-                        charCount = text.getSpanEnd(mark) - startIndex
-
-                        // remove the replay mark since we're about to do the replay now
-                        text.removeSpan(mark)
-
-                        return@text true
-                    } else {
-                        return@text false
-                    }
+            hasReplay = aztecTextRef.get()?.let { aztecText ->
+                aztecText.spanIndex.getSpans(MarkForReplay::class.java).firstOrNull()?.let { mark ->
+                    val text = aztecText.text
+                    startIndex = text.getSpanStart(mark)
+                    charCount = text.getSpanEnd(mark) - startIndex
+
+                    // remove the replay mark since we're about to do the replay now
+                    text.removeSpan(mark)
+                    true
                 }
-                return@text false
             } ?: false
         } while (hasReplay)
     }
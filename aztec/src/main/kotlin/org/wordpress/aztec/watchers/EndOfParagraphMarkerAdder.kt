@@ -14,27 +14,21 @@ import java.lang.ref.WeakReference
 
 class EndOfParagraphMarkerAdder(aztecText: AztecText, val verticalParagraphMargin: Int) : TextWatcher {
     private val aztecTextRef: WeakReference<AztecText?> = WeakReference(aztecText)
-    private var textChangedEventDetails = TextChangedEvent("", 0, 0, 0)
 
     override fun beforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
-        textChangedEventDetails = TextChangedEvent(text.toString())
     }
 
     override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
-        textChangedEventDetails.before = before
-        textChangedEventDetails.text = text
-        textChangedEventDetails.countOfCharacters = count
-        textChangedEventDetails.start = start
-        textChangedEventDetails.initialize()
+        val aztecText = aztecTextRef.get() ?: return
+        // the shared event isn't recorded while the listeners are disabled
+        if (aztecText.isTextChangedListenerDisabled() || !aztecText.isInCalypsoMode) return
 
-        if (!textChangedEventDetails.isNewLine()) return
-
-        val aztecText = aztecTextRef.get()
-        if (aztecText != null && !aztecText.isTextChangedListenerDisabled() && aztecText.isInCalypsoMode) {
+        val textChangedEventDetails = aztecText.textChangedEvent
+        if (textChangedEventDetails.isNewLine()) {
             val inputStart = textChangedEventDetails.inputStart
             val inputEnd = textChangedEventDetails.inputEnd
 
-            if (paragraphMarkerCanBeApplied(aztecText.text)) {
+            if (paragraphMarkerCanBeApplied(aztecText.text, textChangedEventDetails)) {
                 aztecText.text.setSpan(EndOfParagraphMarker(verticalParagraphMargin), inputStart, inputEnd,
                         Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
 
@@ -53,7 +47,7 @@ class EndOfParagraphMarkerAdder(aztecText: AztecText, val verticalParagraphMargi
         }
     }
 
-    fun paragraphMarkerCanBeApplied(text: Editable): Boolean {
+    fun paragraphMarkerCanBeApplied(text: Editable, textChangedEventDetails: TextChangedEvent): Boolean {
         val inputStart = textChangedEventDetails.inputStart
         val inputEnd = textChangedEventDetails.inputEnd
 
@@ -70,7 +64,9 @@ class EndOfParagraphMarkerAdder(aztecText: AztecText, val verticalParagraphMargi
     }
 
     override fun afterTextChanged(text: Editable) {
-        text.getSpans(0, text.length, EndOfParagraphMarker::class.java).forEach {
+        val markers = aztecTextRef.get()?.spanIndex?.getSpans(EndOfParagraphMarker::class.java)
+                ?: text.getSpans(0, text.length, EndOfParagraphMarker::class.java).toList()
+        markers.forEach {
             text.setSpan(it, text.getSpanStart(it), text.getSpanEnd(it), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
         }
     }
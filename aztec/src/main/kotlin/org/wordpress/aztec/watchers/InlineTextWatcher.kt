@@ -28,25 +28,10 @@ import java.lang.ref.WeakReference
 class InlineTextWatcher(var inlineFormatter: InlineFormatter, aztecText: AztecText) : TextWatcher {
     private val aztecTextRef: WeakReference<AztecText?> = WeakReference(aztecText)
 
-    private var textChangedEventDetails = TextChangedEvent("", 0, 0, 0)
-
     override fun beforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
-        if (aztecTextRef.get()?.isTextChangedListenerDisabled() ?: true) {
-            return
-        }
-        textChangedEventDetails = TextChangedEvent(text.toString())
     }
 
     override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
-        if (aztecTextRef.get()?.isTextChangedListenerDisabled() ?: true) {
-            return
-        }
-
-        textChangedEventDetails.before = before
-        textChangedEventDetails.text = text
-        textChangedEventDetails.countOfCharacters = count
-        textChangedEventDetails.start = start
-        textChangedEventDetails.initialize()
     }
 
     override fun afterTextChanged(text: Editable) {
@@ -54,6 +39,8 @@ class InlineTextWatcher(var inlineFormatter: InlineFormatter, aztecText: AztecTe
             return
         }
 
+        val textChangedEventDetails = aztecTextRef.get()?.textChangedEvent ?: return
+
         if (textChangedEventDetails.inputStart == 0 && textChangedEventDetails.count == 0) {
             removeLeadingStyle(text, IAztecInlineSpan::class.java)
             removeLeadingStyle(text, LeadingMarginSpan::class.java)
@@ -18,7 +18,6 @@ class SuggestionWatcher(aztecText: AztecText) : TextWatcher {
 
     data class CarryOverSpan(val span: IAztecInlineSpan, val start: Int, val end: Int)
 
-    private var textChangedEventDetails = TextChangedEvent("", 0, 0, 0)
     private val carryOverSpans = ArrayList<CarryOverSpan>()
 
     private var isRestoringSuggestedText = false
@@ -35,8 +34,6 @@ class SuggestionWatcher(aztecText: AztecText) : TextWatcher {
         if (aztecTextRef.get()?.isTextChangedListenerDisabled() != false || text !is Spannable) {
             return
         }
-        textChangedEventDetails = TextChangedEvent(text.toString())
-
         val selectionStart = aztecTextRef.get()?.selectionStart
         val selectionEnd = aztecTextRef.get()?.selectionEnd
 
@@ -72,12 +69,6 @@ class SuggestionWatcher(aztecText: AztecText) : TextWatcher {
             return
         }
 
-        textChangedEventDetails.before = before
-        textChangedEventDetails.text = text
-        textChangedEventDetails.countOfCharacters = count
-        textChangedEventDetails.start = start
-        textChangedEventDetails.initialize()
-
         if (!frameworkEvent && carryOverSpans.size > 0) {
             reapplyCarriedOverInlineSpans(text)
         }
@@ -20,6 +20,9 @@ data class TextChangedEvent(val textBefore: CharSequence = "", val deletedFromBl
 
     var inputStart = if (isAddingCharacters) inputEnd - count else inputEnd + count
 
+    // the single character removed by the change, if any. Recorded instead of keeping a copy of the text before.
+    private var removedCharacter: Char? = null
+
     constructor(text: CharSequence, start: Int, before: Int, count: Int) : this() {
         this.text = text
         this.start = start
@@ -29,6 +32,27 @@ data class TextChangedEvent(val textBefore: CharSequence = "", val deletedFromBl
         initialize()
     }
 
+    /**
+     * Starts recording a new change, called before [text] changes. Only keeps what is needed from the text that is
+     * about to be replaced.
+     */
+    fun onBeforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
+        // when a single character gets removed, it is the one ending up at inputEnd
+        removedCharacter = if (count - after == 1) text[start + after] else null
+    }
+
+    /**
+     * Completes the recording of the change, called once [text] has changed.
+     */
+    fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
+        this.before = before
+        this.text = text
+        this.countOfCharacters = count
+        this.start = start
+
+        initialize()
+    }
+
     fun initialize() {
         inputEnd = start + countOfCharacters
 
@@ -52,7 +76,7 @@ data class TextChangedEvent(val textBefore: CharSequence = "", val deletedFromBl
     }
 
     fun isNewLine(): Boolean {
-        if (isAddingCharacters) {
+        if (isAddingCharacters && inputStart >= 0 && inputStart < text.length) {
             val currentCharacter = text[inputStart]
             if (currentCharacter == '\n' ||
                     (inputStart - 1 >= 0 && text[inputStart - 1] == '\n' &&
@@ -68,7 +92,7 @@ data class TextChangedEvent(val textBefore: CharSequence = "", val deletedFromBl
             val currentCharacter = text[inputStart]
             return currentCharacter == Constants.END_OF_BUFFER_MARKER
         } else if (!isAddingCharacters && numberOfRemovedCharacters == 1) {
-            val removedCharacter = textBefore[inputEnd]
+            val removedCharacter = this.removedCharacter ?: textBefore[inputEnd]
             return removedCharacter == Constants.END_OF_BUFFER_MARKER
         }
         return false
@@ -21,7 +21,9 @@ class TextDeleter private constructor(aztecText: AztecText) : TextWatcher {
             return
         }
 
-        text.getSpans(0, text.length, MarkForDeletion::class.java).forEach {
+        val marks = aztecTextRef.get()?.spanIndex?.getSpans(MarkForDeletion::class.java)
+                ?: text.getSpans(0, text.length, MarkForDeletion::class.java).toList()
+        marks.forEach {
             val start = text.getSpanStart(it)
             val end = text.getSpanEnd(it)
 
@@ -10,27 +10,17 @@ import java.lang.ref.WeakReference
 class ZeroIndexContentWatcher(aztecText: AztecText) : TextWatcher {
 
     private val aztecTextRef: WeakReference<AztecText?> = WeakReference(aztecText)
-    private var textChangedEventDetails = TextChangedEvent("", 0, 0, 0)
-
     override fun beforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
-        textChangedEventDetails = TextChangedEvent(text.toString())
     }
 
     override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
-        textChangedEventDetails.before = before
-        textChangedEventDetails.text = text
-        textChangedEventDetails.countOfCharacters = count
-        textChangedEventDetails.start = start
-        textChangedEventDetails.initialize()
-
-        if (textChangedEventDetails.isNewLine()) return
-
-        val aztecText = aztecTextRef.get()
-        // last character was removed
-        if (aztecText != null
-                && text.length == 0
-                && textChangedEventDetails.inputEnd == 0
-                && textChangedEventDetails.inputStart == 1) {
+        val aztecText = aztecTextRef.get() ?: return
+
+        if (!aztecText.isTextChangedListenerDisabled() && aztecText.textChangedEvent.isNewLine()) return
+
+        // last character was removed. Read from the change itself, as the shared event of the editor isn't recorded
+        // while its listeners are disabled
+        if (text.length == 0 && start == 0 && before == 1 && count == 0) {
             aztecText.disableOnSelectionListener()
         }
     }
@@ -1,5 +1,7 @@
 package org.wordpress.aztec.watchers.event.sequence
 
+import android.text.SpannableStringBuilder
+import android.text.Spanned
 import org.wordpress.aztec.spans.AztecCodeSpan
 import org.wordpress.aztec.spans.AztecHeadingSpan
 import org.wordpress.aztec.spans.AztecListItemSpan
@@ -62,12 +64,28 @@ abstract class UserOperationEvent(var sequence: EventSequence<TextWatcherEvent>
         return true
     }
 
-    fun isEventFoundWithinABlock(data: BeforeTextChangedEventData) : Boolean {
+    /**
+     * Rebuilds the text as it was before the first event of the [sequence]: undoes its events, from the last one, on a
+     * copy of the text after it. Only the text replaced by each event was recorded, so the whole text is only copied
+     * here, once a sequence is observed. Returns null if the text was also changed in a way the events don't record.
+     */
+    fun getTextBefore(sequence: EventSequence<TextWatcherEvent>) : SpannableStringBuilder? {
+        val text = SpannableStringBuilder(sequence.last().afterEventData.textAfter ?: return null)
+        for (event in sequence.reversed()) {
+            val data = event.beforeEventData
+            if (text.length != data.textLength - data.count + data.after) {
+                return null
+            }
+            data.replacedText?.restore(text, data.start, data.after) ?: return null
+        }
+        return text
+    }
+
+    fun isEventFoundWithinABlock(text: Spanned, data: BeforeTextChangedEventData) : Boolean {
         // ok finally let's make sure  we are not within a Block element
         val inputStart = data.start + data.count
         val inputEnd = data.start + data.count + 1
 
-        val text = data.textBefore!!
         val isInsideList = text.getSpans(inputStart, inputEnd, AztecListItemSpan::class.java).isNotEmpty()
         val isInsidePre = text.getSpans(inputStart, inputEnd, AztecPreformatSpan::class.java).isNotEmpty()
         val isInsideCode = text.getSpans(inputStart, inputEnd, AztecCodeSpan::class.java).isNotEmpty()
@@ -64,12 +64,13 @@ class API25InWordSpaceInsertionEvent : UserOperationEvent() {
             val lastEvent = sequence.last()
 
             // if new text length is longer than original text by 1
-            if (firstEvent.beforeEventData.textBefore?.length == lastEvent.afterEventData.textAfter!!.length - 1) {
+            if (firstEvent.beforeEventData.textLength == lastEvent.afterEventData.textLength - 1) {
                 // now check that the inserted character is actually a space
                 val data = firstEvent.beforeEventData
                 if (lastEvent.afterEventData.textAfter!![data.start + data.count] == SPACE) {
                     // okay sequence has been observed completely, let's make sure we are not within a Block
-                    if (!isEventFoundWithinABlock(data)) {
+                    val textBefore = getTextBefore(sequence) ?: return ObservedOperationResultType.SEQUENCE_FOUND_CLEAR_QUEUE
+                    if (!isEventFoundWithinABlock(textBefore, data)) {
                         return ObservedOperationResultType.SEQUENCE_FOUND
                     } else {
                         // we're within a Block, things are going to be handled by the BlockHandler so let's just request
@@ -86,13 +87,12 @@ class API25InWordSpaceInsertionEvent : UserOperationEvent() {
     override fun buildReplacementEventWithSequenceData(sequence: EventSequence<TextWatcherEvent>): TextWatcherEvent {
         val builder = TextWatcherEventInsertText.Builder()
         // here make it all up as a unique event that does the insert as usual, as we'd get it on older APIs
-        val firstEvent = sequence.first()
         val lastEvent = sequence[sequence.size - 1]
 
-        val (oldText) = firstEvent.beforeEventData
+        val oldText = getTextBefore(sequence)!!
 
         val differenceIndex = StringUtils.indexOfDifference(oldText, lastEvent.afterEventData.textAfter)
-        oldText?.insert(differenceIndex, SPACE_STRING)
+        oldText.insert(differenceIndex, SPACE_STRING)
 
         builder.afterEventData = AfterTextChangedEventData(oldText)
         val replacementEvent = builder.build()
@@ -61,10 +61,15 @@ class API26PrependNewLineOnStyledSpecialTextEvent : UserOperationEvent() {
             val midEvent = sequence[1]
 
             // if new text length is equal as original text length
-            if (firstEvent.beforeEventData.textBefore?.length == lastEvent.afterEventData.textAfter!!.length) {
+            if (firstEvent.beforeEventData.textLength == lastEvent.afterEventData.textLength) {
                 //but, middle event has a new line at the start index of change
-                if (midEvent.onEventData.textOn!![midEvent.onEventData.start] == Constants.NEWLINE) {
-                    return ObservedOperationResultType.SEQUENCE_FOUND
+                if (midEvent.onEventData.insertedText.firstOrNull() == Constants.NEWLINE) {
+                    // the replacement is made of the text before, just clear the queue if it can't be rebuilt
+                    return if (getTextBefore(sequence) != null) {
+                        ObservedOperationResultType.SEQUENCE_FOUND
+                    } else {
+                        ObservedOperationResultType.SEQUENCE_FOUND_CLEAR_QUEUE
+                    }
                 }
             }
         }
@@ -77,10 +82,10 @@ class API26PrependNewLineOnStyledSpecialTextEvent : UserOperationEvent() {
         // here make it all up as a unique event that does the insert as usual, as we'd get it on older APIs
         val firstEvent = sequence.first()
 
-        val (oldText) = firstEvent.beforeEventData
+        val oldText = getTextBefore(sequence)!!
 
         val indexWhereToInsertNewLine = firstEvent.beforeEventData.start
-        oldText?.insert(indexWhereToInsertNewLine, Constants.NEWLINE_STRING)
+        oldText.insert(indexWhereToInsertNewLine, Constants.NEWLINE_STRING)
 
         builder.afterEventData = AfterTextChangedEventData(oldText)
         val replacementEvent = builder.build()
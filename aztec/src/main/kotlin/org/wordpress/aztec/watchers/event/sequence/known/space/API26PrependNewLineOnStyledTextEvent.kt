@@ -59,12 +59,13 @@ class API26PrependNewLineOnStyledTextEvent : UserOperationEvent() {
             val lastEvent = sequence.last()
 
             // if new text length is longer than original text by 1
-            if (firstEvent.beforeEventData.textBefore?.length == lastEvent.afterEventData.textAfter!!.length - 1) {
+            if (firstEvent.beforeEventData.textLength == lastEvent.afterEventData.textLength - 1) {
                 // now check that the inserted character is actually a NEWLINE
                 val data = firstEvent.beforeEventData
                 if (lastEvent.afterEventData.textAfter!![data.start] == Constants.NEWLINE) {
                     // okay sequence has been observed completely, let's make sure we are not within a Block
-                    if (!isEventFoundWithinABlock(data)) {
+                    val textBefore = getTextBefore(sequence) ?: return ObservedOperationResultType.SEQUENCE_FOUND_CLEAR_QUEUE
+                    if (!isEventFoundWithinABlock(textBefore, data)) {
                         return ObservedOperationResultType.SEQUENCE_FOUND
                     } else {
                         // we're within a Block, things are going to be handled by the BlockHandler so let's just request
@@ -81,13 +82,12 @@ class API26PrependNewLineOnStyledTextEvent : UserOperationEvent() {
     override fun buildReplacementEventWithSequenceData(sequence: EventSequence<TextWatcherEvent>): TextWatcherEvent {
         val builder = TextWatcherEventInsertText.Builder()
         // here make it all up as a unique event that does the insert as usual, as we'd get it on older APIs
-        val firstEvent = sequence.first()
         val lastEvent = sequence[sequence.size - 1]
 
-        val (oldText) = firstEvent.beforeEventData
+        val oldText = getTextBefore(sequence)!!
 
         val differenceIndex = StringUtils.indexOfDifference(oldText, lastEvent.afterEventData.textAfter)
-        oldText?.insert(differenceIndex, Constants.NEWLINE_STRING)
+        oldText.insert(differenceIndex, Constants.NEWLINE_STRING)
 
         builder.afterEventData = AfterTextChangedEventData(oldText)
         val replacementEvent = builder.build()
@@ -1,6 +1,5 @@
 package org.wordpress.aztec.watchers.event.sequence.known.space.steps
 
-import org.wordpress.aztec.watchers.EndOfBufferMarkerAdder
 import org.wordpress.aztec.watchers.event.text.AfterTextChangedEventData
 import org.wordpress.aztec.watchers.event.text.BeforeTextChangedEventData
 import org.wordpress.aztec.watchers.event.text.OnTextChangedEventData
@@ -13,19 +12,25 @@ both the beforeTextChanged and onTextChanged event data correspond to an inserti
 
 class TextWatcherEventInsertTextDelAfter(beforeEventData: BeforeTextChangedEventData, onEventData: OnTextChangedEventData, afterEventData: AfterTextChangedEventData) : TextWatcherEvent(beforeEventData, onEventData, afterEventData) {
 
-    private var beforeText: CharSequence? = null
+    private var beforeTextLength: Int = 0
+    private var beforeSafeTextLength: Int = 0
 
     private fun testBeforeTextChangedEventData(data: BeforeTextChangedEventData): Boolean {
-        beforeText = data.textBefore
-        return data.count == 0 && data.after > 0
+        beforeTextLength = data.textLength
+        beforeSafeTextLength = data.safeTextLength
+        return testFitsBefore(data)
     }
 
     private fun testOnTextChangedEventData(data: OnTextChangedEventData): Boolean {
-        return data.start >= 0 && data.count > 0 && data.textOn!!.length > 0
+        return data.start >= 0 && data.count > 0 && data.textLength > 0
     }
 
     private fun testAfterTextChangedEventData(data: AfterTextChangedEventData): Boolean {
-        return EndOfBufferMarkerAdder.safeLength(beforeText!!) == EndOfBufferMarkerAdder.safeLength(data.textAfter!!)
+        return beforeSafeTextLength == data.safeTextLength
+    }
+
+    override fun testFitsBefore(data: BeforeTextChangedEventData): Boolean {
+        return data.count == 0 && data.after > 0
     }
 
     override fun testFitsBeforeOnAndAfter(): Boolean {
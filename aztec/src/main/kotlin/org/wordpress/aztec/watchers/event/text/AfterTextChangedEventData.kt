@@ -1,6 +1,12 @@
 package org.wordpress.aztec.watchers.event.text
 
 import android.text.Editable
+import org.wordpress.aztec.watchers.EndOfBufferMarkerAdder
 
-data class AfterTextChangedEventData(val textAfter: Editable?)
-
+/**
+ * The editor passes its own text as [textAfter] rather than a copy, so it only holds the content of this event while
+ * the event is being observed. The lengths keep the state of the event for the later steps of a sequence.
+ */
+data class AfterTextChangedEventData(val textAfter: Editable?,
+                                     val textLength: Int = textAfter?.length ?: 0,
+                                     val safeTextLength: Int = textAfter?.let { EndOfBufferMarkerAdder.safeLength(it) } ?: 0)
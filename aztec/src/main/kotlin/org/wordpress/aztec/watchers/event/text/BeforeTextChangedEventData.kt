@@ -1,6 +1,9 @@
 package org.wordpress.aztec.watchers.event.text
 
-import android.text.SpannableStringBuilder
-
-data class BeforeTextChangedEventData(val textBefore: SpannableStringBuilder?, val start: Int = 0, val count: Int = 0, val after: Int = 0)
-
+/**
+ * Instead of a copy of the whole text, the editor records its lengths and the [replacedText], from which
+ * [org.wordpress.aztec.watchers.event.sequence.UserOperationEvent.getTextBefore] rebuilds the text before a sequence.
+ */
+data class BeforeTextChangedEventData(val replacedText: ReplacedText?, val start: Int = 0, val count: Int = 0, val after: Int = 0,
+                                      val textLength: Int = 0,
+                                      val safeTextLength: Int = 0)
@@ -2,5 +2,9 @@ package org.wordpress.aztec.watchers.event.text
 
 import android.text.SpannableStringBuilder
 
-data class OnTextChangedEventData(val textOn: SpannableStringBuilder?, val start: Int = 0, val before: Int = 0, val count: Int = 0)
-
+/**
+ * Instead of a copy of the whole text ([textOn]), the editor only records its length and the text just inserted.
+ */
+data class OnTextChangedEventData(val textOn: SpannableStringBuilder?, val start: Int = 0, val before: Int = 0, val count: Int = 0,
+                                  val textLength: Int = textOn?.length ?: 0,
+                                  val insertedText: String = textOn?.subSequence(start, start + count)?.toString() ?: "")
@@ -0,0 +1,31 @@
+package org.wordpress.aztec.watchers.event.text
+
+import android.text.Editable
+import android.text.NoCopySpan
+import android.text.Spanned
+
+/**
+ * The [count] characters from [start] a change replaces, and the spans touching them where they were before the
+ * change. Recorded instead of a copy of the whole text, like [org.wordpress.aztec.watchers.TextChangedEvent] records
+ * the character it removes: [restore] rebuilds the text before the change from the text after it.
+ */
+class ReplacedText(text: CharSequence, start: Int, count: Int) {
+    private val replaced = text.subSequence(start, start + count).toString()
+
+    // the watchers and the selection aren't part of the content, a copy of the text doesn't get them either
+    private val spans = (text as? Spanned)?.getSpans(start, start + count, Any::class.java)
+            ?.filter { it !is NoCopySpan }?.toTypedArray() ?: emptyArray()
+    private val spanStarts = IntArray(spans.size) { (text as Spanned).getSpanStart(spans[it]) }
+    private val spanEnds = IntArray(spans.size) { (text as Spanned).getSpanEnd(spans[it]) }
+    private val spanFlags = IntArray(spans.size) { (text as Spanned).getSpanFlags(spans[it]) }
+
+    /**
+     * Turns the [text] after the change, which inserted [after] characters at [start], back into the text before it.
+     */
+    fun restore(text: Editable, start: Int, after: Int) {
+        text.replace(start, start + after, replaced)
+        for (i in spans.indices) {
+            text.setSpan(spans[i], spanStarts[i], spanEnds[i], spanFlags[i])
+        }
+    }
+}
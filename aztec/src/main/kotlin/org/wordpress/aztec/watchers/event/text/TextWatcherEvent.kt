@@ -11,6 +11,11 @@ open class TextWatcherEvent (var beforeEventData: BeforeTextChangedEventData,
         return false
     }
 
+    open fun testFitsBefore(data: BeforeTextChangedEventData): Boolean {
+        // tells whether an event starting with this data could turn out to be this step, before the rest is known
+        return false
+    }
+
     open class Builder {
         lateinit var beforeEventData: BeforeTextChangedEventData
         lateinit var onEventData: OnTextChangedEventData
@@ -0,0 +1,40 @@
+package org.wordpress.aztec
+
+import java.lang.reflect.Method
+
+/**
+ * The bytes allocated by the current thread, read through the HotSpot `ThreadMXBean` when there is one. The
+ * management classes are not part of the Android API the tests are compiled against, so they are looked up.
+ *
+ * Shared by the tests of the library and the benchmarks, see the test source sets of both.
+ */
+object ThreadAllocations {
+    // past the reflection warm up, reading the counter always allocates the same
+    private const val WARM_UP_READS = 100
+
+    private val threadMXBean: Any?
+    private val getThreadAllocatedBytes: Method?
+
+    init {
+        var bean: Any? = null
+        var method: Method? = null
+        try {
+            bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null)
+            val found = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", Long::class.javaPrimitiveType)
+            repeat(WARM_UP_READS) { found.invoke(bean, Thread.currentThread().id) }
+            method = found
+        } catch (e: Exception) {
+            method = null
+        }
+        threadMXBean = bean
+        getThreadAllocatedBytes = method
+    }
+
+    val isSupported: Boolean
+        get() = getThreadAllocatedBytes != null
+
+    fun current(): Long {
+        return getThreadAllocatedBytes?.invoke(threadMXBean, Thread.currentThread().id) as Long? ?: 0L
+    }
+}
@@ -0,0 +1,82 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Testing the resolution of the formats applied to the selection.
+ */
+@RunWith(RobolectricTestRunner::class)
+class AppliedStylesTest {
+    lateinit var editText: AztecText
+
+    private val HTML_BLOCKS = "<h1>Heading</h1><h3>Other <b>heading</b></h3>" +
+            "<ul><li>one</li><li>two<ol><li>nested</li><li><i>deeper</i></li></ol></li></ul>" +
+            "<blockquote>quote with <a href=\"https://wordpress.com\">a link</a></blockquote>" +
+            "<pre>pre\nformatted</pre>" +
+            "<p style=\"text-align:center\">centered <u>text</u></p>" +
+            "<p style=\"text-align:right\">right <del>aligned</del></p>"
+
+    private val HTML_INLINE = "<b>bold <i>both</i></b> <strong>strong</strong> <em>em</em> <cite>cite</cite> " +
+            "<code>code</code> <a href=\"https://wordpress.com\">link <b>bold</b></a> plain" +
+            "<br><b>across</b><br><b>lines</b>"
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        activity.setContentView(editText)
+    }
+
+    // every range of the text is resolved like the formats are checked one by one
+    private fun assertResolvedLikeContains(html: String) {
+        editText.fromHtml(html)
+        val resolver = AppliedStylesResolver(editText)
+        val length = editText.length()
+
+        for (start in 0..length) {
+            for (end in start..length) {
+                editText.setSelection(start, end)
+                val expected = AztecTextFormat.values().filter { editText.contains(it, start, end) }
+                Assert.assertEquals("range $start-$end", expected, resolver.resolve(start, end).toList())
+            }
+        }
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun blockFormatsAreResolvedLikeContains() {
+        assertResolvedLikeContains(HTML_BLOCKS)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun inlineFormatsAreResolvedLikeContains() {
+        assertResolvedLikeContains(HTML_INLINE)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun appliedStylesFollowTheEdits() {
+        editText.fromHtml("<b>bold</b> plain")
+        editText.setSelection(2)
+        Assert.assertEquals(listOf(AztecTextFormat.FORMAT_BOLD), editText.getAppliedStyles(2, 2))
+
+        // the same selection gets the same answer
+        Assert.assertEquals(listOf(AztecTextFormat.FORMAT_BOLD), editText.getAppliedStyles(2, 2))
+
+        editText.setSelection(0, 4)
+        editText.toggleFormatting(AztecTextFormat.FORMAT_BOLD)
+        editText.setSelection(2)
+        Assert.assertEquals(emptyList<ITextFormat>(), editText.getAppliedStyles(2, 2))
+    }
+}
@@ -0,0 +1,133 @@
+package org.wordpress.aztec
+
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.xml.sax.helpers.AttributesImpl
+
+/**
+ * Testing the attributes are found by their name, whether or not they are indexed, and that the copies sharing them
+ * don't see each other's changes, even when they are made on another thread.
+ */
+@RunWith(RobolectricTestRunner::class)
+class AztecAttributesTest {
+    private fun attributesImpl(count: Int): AttributesImpl {
+        val attributes = AttributesImpl()
+        for (i in 0 until count) {
+            attributes.addAttribute("", "name$i", "name$i", "string", "value$i")
+        }
+        return attributes
+    }
+
+    @Test
+    fun attributesAreFoundByName() {
+        listOf(3, 20).forEach { count ->
+            val attributes = AztecAttributes(attributesImpl(count))
+
+            Assert.assertEquals(count, attributes.length)
+            for (i in 0 until count) {
+                Assert.assertEquals(i, attributes.getIndex("name$i"))
+                Assert.assertEquals("value$i", attributes.getValue("name$i"))
+            }
+            Assert.assertEquals(-1, attributes.getIndex("missing"))
+            Assert.assertNull(attributes.getValue("missing"))
+        }
+    }
+
+    @Test
+    fun attributesKeepTheirOrder() {
+        val attributes = AztecAttributes(attributesImpl(12))
+
+        attributes.removeAttribute("name0")
+        attributes.setValue("name5", "changed")
+        attributes.setValue("added", "value")
+
+        Assert.assertEquals(12, attributes.length)
+        Assert.assertEquals("name1", attributes.getQName(0))
+        Assert.assertEquals(4, attributes.getIndex("name5"))
+        Assert.assertEquals("changed", attributes.getValue(4))
+        Assert.assertEquals(11, attributes.getIndex("added"))
+        Assert.assertEquals("value", attributes.getValue("added"))
+    }
+
+    @Test
+    fun firstAttributeWithTheNameIsFound() {
+        val attributes = AztecAttributes(attributesImpl(12))
+
+        attributes.addAttribute("", "name3", "name3", "string", "second")
+
+        Assert.assertEquals(3, attributes.getIndex("name3"))
+        Assert.assertEquals("value3", attributes.getValue("name3"))
+
+        attributes.removeAttribute("name3")
+
+        Assert.assertEquals(11, attributes.getIndex("name3"))
+        Assert.assertEquals("second", attributes.getValue("name3"))
+    }
+
+    @Test
+    fun copiesDontShareChanges() {
+        val original = AztecAttributes(attributesImpl(12))
+        val copy = AztecAttributes(original)
+
+        copy.setValue("name1", "changed")
+        copy.removeAttribute("name2")
+        original.setValue("added", "value")
+
+        Assert.assertEquals("value1", original.getValue("name1"))
+        Assert.assertEquals("value2", original.getValue("name2"))
+        Assert.assertEquals(13, original.length)
+
+        Assert.assertEquals("changed", copy.getValue("name1"))
+        Assert.assertFalse(copy.hasAttribute("name2"))
+        Assert.assertFalse(copy.hasAttribute("added"))
+        Assert.assertEquals(11, copy.length)
+    }
+
+    @Test
+    fun invalidIndexIsRejected() {
+        val attributes = AztecAttributes(attributesImpl(2))
+
+        Assert.assertNull(attributes.getValue(2))
+        try {
+            attributes.removeAttribute(2)
+            Assert.fail("Removed an attribute that is not in the list")
+        } catch (e: ArrayIndexOutOfBoundsException) {
+            Assert.assertEquals(2, attributes.length)
+        }
+    }
+
+    @Test
+    fun copiesAreReadWhileTheOriginalChangesOnAnotherThread() {
+        val original = AztecAttributes(attributesImpl(20))
+        var error: Throwable? = null
+
+        // copying and looking up the attributes, like the serialization of a snapshot does
+        val reader = Thread {
+            try {
+                repeat(20000) {
+                    val copy = AztecAttributes(original)
+                    for (i in 0 until 20) {
+                        Assert.assertEquals(i, copy.getIndex("name$i"))
+                    }
+                }
+            } catch (e: Throwable) {
+                error = e
+            }
+        }
+        reader.start()
+
+        var changes = 0
+        while (reader.isAlive) {
+            original.setValue("name${changes % 20}", "changed")
+            original.setValue("added", "value")
+            original.removeAttribute("added")
+            changes++
+        }
+        reader.join()
+
+        Assert.assertNull(error)
+        Assert.assertEquals(20, original.length)
+    }
+}
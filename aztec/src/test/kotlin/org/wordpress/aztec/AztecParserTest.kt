@@ -15,8 +15,8 @@ import org.robolectric.RuntimeEnvironment
  * Tests for [AztecParser].
  */
 @RunWith(ParameterizedRobolectricTestRunner::class)
-class AztecParserTest(alignmentRendering: AlignmentRendering) {
-    private var mParser = AztecParser(alignmentRendering)
+class AztecParserTest(alignmentRendering: AlignmentRendering, isSpanIndexEnabled: Boolean) {
+    private var mParser = AztecParser(alignmentRendering).apply { this.isSpanIndexEnabled = isSpanIndexEnabled }
     private val HTML_BOLD = "<b>Bold</b><br><br>"
     private val HTML_LIST_ORDERED = "<ol><li>Ordered</li></ol>"
     private val HTML_LIST_ORDERED_WITH_EMPTY_ITEM = "<ol><li>Ordered 1</li><li></li><li>Ordered 2</li></ol>"
@@ -84,11 +84,13 @@ class AztecParserTest(alignmentRendering: AlignmentRendering) {
 
     companion object {
         @JvmStatic
-        @ParameterizedRobolectricTestRunner.Parameters(name = "Testing parser with AlignmentRendering.{0}")
-        fun data(): Collection<Array<AlignmentRendering>> {
+        @ParameterizedRobolectricTestRunner.Parameters(name = "Testing parser with AlignmentRendering.{0}, span index {1}")
+        fun data(): Collection<Array<Any>> {
             return listOf(
-                    arrayOf(AlignmentRendering.SPAN_LEVEL),
-                    arrayOf(AlignmentRendering.VIEW_LEVEL)
+                    arrayOf(AlignmentRendering.SPAN_LEVEL, false),
+                    arrayOf(AlignmentRendering.VIEW_LEVEL, false),
+                    arrayOf(AlignmentRendering.SPAN_LEVEL, true),
+                    arrayOf(AlignmentRendering.VIEW_LEVEL, true)
             )
         }
     }
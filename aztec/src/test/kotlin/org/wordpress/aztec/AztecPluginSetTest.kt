@@ -0,0 +1,71 @@
+package org.wordpress.aztec
+
+import android.text.style.CharacterStyle
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.plugins.AztecPluginSet
+import org.wordpress.aztec.plugins.CssUnderlinePlugin
+import org.wordpress.aztec.plugins.IAztecPlugin
+import org.wordpress.aztec.plugins.MarkPlugin
+import org.wordpress.aztec.plugins.visual2html.IInlineSpanHandler
+import org.wordpress.aztec.spans.AztecStyleBoldSpan
+import org.wordpress.aztec.spans.AztecStyleItalicSpan
+
+/**
+ * Testing the plugin dispatch tables used by the HTML conversions.
+ */
+@RunWith(RobolectricTestRunner::class)
+class AztecPluginSetTest {
+    private class BoldHandler : IInlineSpanHandler {
+        var canHandleCalls = 0
+
+        override fun canHandleSpan(span: CharacterStyle): Boolean {
+            canHandleCalls++
+            return span is AztecStyleBoldSpan
+        }
+
+        override fun handleSpanStart(html: StringBuilder, span: CharacterStyle) {
+            html.append("<strong>")
+        }
+
+        override fun handleSpanEnd(html: StringBuilder, span: CharacterStyle) {
+            html.append("</strong>")
+        }
+    }
+
+    @Test
+    fun pluginsArePartitionedByType() {
+        val underline = CssUnderlinePlugin()
+        val mark = MarkPlugin()
+        val pluginSet = AztecPluginSet(listOf(underline, mark))
+
+        Assert.assertEquals(listOf(underline, mark), pluginSet.spanPreprocessors)
+        Assert.assertEquals(listOf(underline), pluginSet.spanPostprocessors)
+        Assert.assertTrue(pluginSet.tagHandlers.isEmpty())
+        Assert.assertTrue(pluginSet.textHandlers.isEmpty())
+    }
+
+    @Test
+    fun inlineHandlersAreLookedUpOncePerSpanType() {
+        val handler = BoldHandler()
+        val pluginSet = AztecPluginSet(listOf(handler))
+
+        Assert.assertEquals(listOf(handler), pluginSet.getInlineSpanHandlers(AztecStyleBoldSpan()))
+        Assert.assertEquals(listOf(handler), pluginSet.getInlineSpanHandlers(AztecStyleBoldSpan()))
+        Assert.assertTrue(pluginSet.getInlineSpanHandlers(AztecStyleItalicSpan()).isEmpty())
+        Assert.assertEquals(2, handler.canHandleCalls)
+    }
+
+    @Test
+    fun pluginListChangesAreDetected() {
+        val plugins = ArrayList<IAztecPlugin>()
+        plugins.add(MarkPlugin())
+        val pluginSet = AztecPluginSet(plugins)
+        Assert.assertTrue(pluginSet.isBuiltFrom(plugins))
+
+        plugins.add(CssUnderlinePlugin())
+        Assert.assertFalse(pluginSet.isBuiltFrom(plugins))
+    }
+}
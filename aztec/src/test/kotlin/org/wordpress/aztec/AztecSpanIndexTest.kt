@@ -0,0 +1,184 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import android.text.Editable
+import android.text.SpannableStringBuilder
+import android.text.Spanned
+import android.text.TextWatcher
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.spans.AztecMediaSpan
+import org.wordpress.aztec.spans.AztecStyleBoldSpan
+import org.wordpress.aztec.spans.IAztecAttributedSpan
+import org.wordpress.aztec.spans.MarkForDeletion
+
+/**
+ * Testing the index of the editor spans by type.
+ */
+@RunWith(RobolectricTestRunner::class)
+class AztecSpanIndexTest {
+    lateinit var editText: AztecText
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        activity.setContentView(editText)
+    }
+
+    private fun <T> assertIndexed(type: Class<T>) {
+        val text = editText.editableText
+        Assert.assertEquals(text.getSpans(0, text.length, type).toList(), editText.spanIndex.getSpans(type))
+        Assert.assertEquals(text.getSpans(0, text.length, type).size, editText.spanIndex.count(type))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun indexFollowsTheSpanChanges() {
+        editText.fromHtml("<b>bold</b> <img src=\"a.png\"> <b>more</b><p>paragraph</p>")
+        assertIndexed(AztecStyleBoldSpan::class.java)
+        assertIndexed(AztecMediaSpan::class.java)
+        assertIndexed(IAztecAttributedSpan::class.java)
+
+        val text = editText.editableText
+        text.insert(0, "start ")
+        text.setSpan(AztecStyleBoldSpan(), 0, 5, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        assertIndexed(AztecStyleBoldSpan::class.java)
+
+        text.removeSpan(text.getSpans(0, text.length, AztecStyleBoldSpan::class.java).first())
+        assertIndexed(AztecStyleBoldSpan::class.java)
+
+        // deleting the text of a span removes it
+        val more = text.indexOf("more")
+        text.delete(more, more + 4)
+        assertIndexed(AztecStyleBoldSpan::class.java)
+        assertIndexed(IAztecAttributedSpan::class.java)
+
+        text.delete(0, text.length)
+        assertIndexed(AztecMediaSpan::class.java)
+        Assert.assertFalse(editText.spanIndex.hasSpans(AztecMediaSpan::class.java))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun pastedSpansAreIndexed() {
+        editText.fromHtml("<b>bold</b>")
+        assertIndexed(AztecStyleBoldSpan::class.java)
+
+        val pasted = SpannableStringBuilder("pasted")
+        pasted.setSpan(AztecStyleBoldSpan(), 0, pasted.length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        editText.editableText.append(pasted)
+
+        Assert.assertEquals(2, editText.spanIndex.count(AztecStyleBoldSpan::class.java))
+        assertIndexed(AztecStyleBoldSpan::class.java)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun pastedSpansAreIndexedForTheTextWatchers() {
+        editText.fromHtml("<b>bold</b>")
+        assertIndexed(AztecStyleBoldSpan::class.java)
+
+        var boldCount = -1
+        editText.addTextChangedListener(object : TextWatcher {
+            override fun beforeTextChanged(s: CharSequence, start: Int, count: Int, after: Int) {
+            }
+
+            override fun onTextChanged(s: CharSequence, start: Int, before: Int, count: Int) {
+            }
+
+            override fun afterTextChanged(s: Editable) {
+                boldCount = editText.spanIndex.count(AztecStyleBoldSpan::class.java)
+            }
+        })
+
+        val pasted = SpannableStringBuilder("pasted")
+        pasted.setSpan(AztecStyleBoldSpan(), 0, pasted.length, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        editText.editableText.append(pasted)
+
+        Assert.assertEquals(2, boldCount)
+        assertIndexed(AztecStyleBoldSpan::class.java)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun everyTextHasItsOwnIndex() {
+        editText.fromHtml("<b>bold</b>")
+        val index = editText.spanIndex
+        Assert.assertEquals(1, index.count(AztecStyleBoldSpan::class.java))
+
+        editText.setText("plain")
+        Assert.assertNotSame(index, editText.spanIndex)
+        assertIndexed(AztecStyleBoldSpan::class.java)
+
+        // copies of the text don't carry the index along
+        val copy = SpannableStringBuilder(editText.editableText)
+        Assert.assertTrue(copy.getSpans(0, copy.length, AztecSpanIndex::class.java).isEmpty())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun markedTextIsDeleted() {
+        editText.fromHtml("one two three")
+        editText.editableText.setSpan(MarkForDeletion(), 3, 7, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+
+        editText.editableText.append(" four")
+
+        Assert.assertEquals("one three four", editText.toPlainHtml())
+        assertIndexed(MarkForDeletion::class.java)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun spansAreFoundByAttribute() {
+        editText.fromHtml("<img src=\"a.png\" data-id=\"1\"><img src=\"b.png\" data-id=\"2\"><img src=\"c.png\">")
+        val index = editText.spanIndex
+
+        Assert.assertEquals("a.png", index.getAttributedSpans("data-id", "1").single().attributes.getValue("src"))
+        Assert.assertTrue(index.getAttributedSpans("data-id", "3").isEmpty())
+
+        // the attributes replaced through the editor
+        val attributes = AztecAttributes()
+        attributes.setValue("src", "d.png")
+        attributes.setValue("data-id", "3")
+        editText.updateElementAttributes("data-id", "1", attributes)
+        Assert.assertTrue(index.getAttributedSpans("data-id", "1").isEmpty())
+        Assert.assertEquals("d.png", index.getAttributedSpans("data-id", "3").single().attributes.getValue("src"))
+        Assert.assertEquals(listOf(attributes), editText.getAllElementAttributes("data-id", "3"))
+
+        // the attributes changed in place
+        val span = index.getAttributedSpans("data-id", "2").single()
+        span.attributes.setValue("data-id", "4")
+        Assert.assertTrue(index.getAttributedSpans("data-id", "2").isEmpty())
+        Assert.assertSame(span, index.getAttributedSpans("data-id", "4").single())
+
+        // the spans removed with their text
+        val position = editText.getElementPosition("data-id", "4")!!
+        editText.editableText.delete(position, position + 1)
+        Assert.assertTrue(index.getAttributedSpans("data-id", "4").isEmpty())
+        Assert.assertNull(editText.getElementPosition("data-id", "4"))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun spansChangedInPlaceToAnIndexedValueAreFound() {
+        editText.fromHtml("<img src=\"a.png\" data-id=\"1\"><img src=\"b.png\" data-id=\"2\">")
+        val index = editText.spanIndex
+        val first = index.getAttributedSpans("data-id", "1").single()
+        val second = index.getAttributedSpans("data-id", "2").single()
+
+        // the first span is still indexed with the value the second one takes
+        second.attributes.setValue("data-id", "1")
+
+        Assert.assertEquals(listOf(first, second), index.getAttributedSpans("data-id", "1"))
+        Assert.assertTrue(index.getAttributedSpans("data-id", "2").isEmpty())
+    }
+}
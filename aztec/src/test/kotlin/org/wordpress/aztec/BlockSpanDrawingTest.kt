@@ -0,0 +1,130 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.text.Layout
+import android.text.StaticLayout
+import android.text.TextPaint
+import org.junit.Assert
+import org.junit.Assume
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.GraphicsMode
+import org.wordpress.aztec.spans.AztecPreformatSpan
+import org.wordpress.aztec.spans.AztecQuoteSpan
+import org.wordpress.aztec.spans.AztecTaskListSpan
+
+/**
+ * Testing the block spans draw their lines without allocating once they have drawn them before. The graphics are
+ * native, so the canvas and paths don't allocate either.
+ */
+@RunWith(RobolectricTestRunner::class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+class BlockSpanDrawingTest {
+    lateinit var editText: AztecText
+    lateinit var layout: Layout
+    lateinit var canvas: Canvas
+    lateinit var paint: TextPaint
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        activity.setContentView(editText)
+
+        editText.fromHtml("<pre>one\ntwo\nthree</pre>" +
+                "<blockquote>quote<br>more<br>لا</blockquote>" +
+                "<ul type=\"task-list\"><li><input type=\"checkbox\" class=\"task-list-item-checkbox\" checked />one</li>" +
+                "<li><input type=\"checkbox\" class=\"task-list-item-checkbox\" />two</li></ul>")
+
+        paint = TextPaint()
+        layout = StaticLayout.Builder.obtain(editText.text, 0, editText.length(), paint, 1000).build()
+        canvas = Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888))
+    }
+
+    // takes the line numbers and offsets unboxed, unlike a function type
+    private fun interface LineDrawer {
+        fun draw(line: Int, start: Int, end: Int)
+    }
+
+    // the bytes allocated by drawing the lines of the span many times, less what reading the counter allocates
+    private fun allocatedBytes(span: Any, drawer: LineDrawer): Long {
+        val text = editText.text
+        val first = layout.getLineForOffset(text.getSpanStart(span))
+        val last = layout.getLineForOffset(text.getSpanEnd(span) - 1)
+        val drawLines = {
+            for (line in first..last) {
+                drawer.draw(line, layout.getLineStart(line), layout.getLineEnd(line))
+            }
+        }
+
+        repeat(WARM_UP_DRAWS) { drawLines() }
+
+        val overheadStart = ThreadAllocations.current()
+        val overhead = ThreadAllocations.current() - overheadStart
+
+        val start = ThreadAllocations.current()
+        repeat(MEASURED_DRAWS) { drawLines() }
+        return ThreadAllocations.current() - start - overhead
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun preformatLinesDrawWithoutAllocating() {
+        Assume.assumeTrue(ThreadAllocations.isSupported)
+        val text = editText.text
+        val span = text.getSpans(0, text.length, AztecPreformatSpan::class.java).single()
+
+        val bytes = allocatedBytes(span) { line, start, end ->
+            span.drawBackground(canvas, paint, 0, 100, layout.getLineTop(line), layout.getLineBaseline(line),
+                    layout.getLineBottom(line), text, start, end, line)
+        }
+
+        Assert.assertTrue("$bytes bytes allocated", bytes < MEASURED_DRAWS)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun quoteLinesDrawWithoutAllocating() {
+        Assume.assumeTrue(ThreadAllocations.isSupported)
+        val text = editText.text
+        val span = text.getSpans(0, text.length, AztecQuoteSpan::class.java).single()
+
+        val bytes = allocatedBytes(span) { line, start, end ->
+            span.drawLeadingMargin(canvas, paint, 0, 1, layout.getLineTop(line), layout.getLineBaseline(line),
+                    layout.getLineBottom(line), text, start, end, true, layout)
+            span.drawBackground(canvas, paint, 0, 100, layout.getLineTop(line), layout.getLineBaseline(line),
+                    layout.getLineBottom(line), text, start, end, line)
+        }
+
+        Assert.assertTrue("$bytes bytes allocated", bytes < MEASURED_DRAWS)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun taskListLinesDrawWithoutAllocating() {
+        Assume.assumeTrue(ThreadAllocations.isSupported)
+        val text = editText.text
+        val span = text.getSpans(0, text.length, AztecTaskListSpan::class.java).single()
+
+        val bytes = allocatedBytes(span) { line, start, end ->
+            span.drawLeadingMargin(canvas, paint, 0, 1, layout.getLineTop(line), layout.getLineBaseline(line),
+                    layout.getLineBottom(line), text, start, end, true, layout)
+        }
+
+        Assert.assertTrue("$bytes bytes allocated", bytes < MEASURED_DRAWS)
+    }
+
+    companion object {
+        private const val WARM_UP_DRAWS = 100
+        private const val MEASURED_DRAWS = 1000
+    }
+}
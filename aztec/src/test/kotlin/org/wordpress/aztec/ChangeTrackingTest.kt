@@ -0,0 +1,106 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import android.text.Editable
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.TestUtils.safeAppend
+import org.wordpress.aztec.watchers.EndOfBufferMarkerAdder
+
+/**
+ * Testing the detection of changes made to the initial content.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ChangeTrackingTest {
+    lateinit var editText: AztecText
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        editText.isChangeTrackingEnabled = true
+        activity.setContentView(editText)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun initialContentHasNoChanges() {
+        editText.fromHtml("<b>bold</b> text")
+
+        Assert.assertEquals(AztecText.EditorHasChanges.NO_CHANGES, editText.hasChanges())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun textChangesAreDetected() {
+        editText.fromHtml("<b>bold</b> text")
+        safeAppend(editText, " more")
+
+        Assert.assertEquals(AztecText.EditorHasChanges.CHANGES, editText.hasChanges())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun formattingChangesAreDetected() {
+        editText.fromHtml("plain text")
+        editText.setSelection(0, 5)
+        editText.toggleFormatting(AztecTextFormat.FORMAT_BOLD)
+
+        Assert.assertEquals(AztecText.EditorHasChanges.CHANGES, editText.hasChanges())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun editableFactoryIsKept() {
+        var editables = 0
+        editText.setEditableFactory(object : Editable.Factory() {
+            override fun newEditable(source: CharSequence): Editable {
+                editables++
+                return super.newEditable(source)
+            }
+        })
+
+        editText.fromHtml("plain text")
+        Assert.assertNotEquals(0, editables)
+        Assert.assertEquals(AztecText.EditorHasChanges.NO_CHANGES, editText.hasChanges())
+
+        // the span changes of the text made by the factory are tracked
+        editText.setSelection(0, 5)
+        editText.toggleFormatting(AztecTextFormat.FORMAT_BOLD)
+
+        Assert.assertEquals(AztecText.EditorHasChanges.CHANGES, editText.hasChanges())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun revertedChangesAreDetected() {
+        editText.fromHtml("text")
+        safeAppend(editText, "s")
+        Assert.assertEquals(AztecText.EditorHasChanges.CHANGES, editText.hasChanges())
+
+        val end = EndOfBufferMarkerAdder.safeLength(editText)
+        editText.text.delete(end - 1, end)
+
+        Assert.assertEquals(AztecText.EditorHasChanges.NO_CHANGES, editText.hasChanges())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sameResultsAsWithoutTracking() {
+        editText.fromHtml("<p>paragraph</p><ul><li>item</li></ul>")
+        safeAppend(editText, "\nnew")
+        val tracked = editText.hasChanges()
+
+        editText.isChangeTrackingEnabled = false
+
+        Assert.assertEquals(editText.hasChanges(), tracked)
+    }
+}
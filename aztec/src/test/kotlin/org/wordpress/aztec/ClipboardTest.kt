@@ -11,6 +11,8 @@ import org.junit.runner.RunWith
 import org.robolectric.Robolectric
 import org.robolectric.RobolectricTestRunner
 import org.wordpress.aztec.source.Format
+import org.wordpress.aztec.spans.AztecHeadingSpan
+import org.wordpress.aztec.spans.AztecImageSpan
 
 @RunWith(RobolectricTestRunner::class)
 class ClipboardTest {
@@ -352,4 +354,41 @@ class ClipboardTest {
 
         Assert.assertEquals("<h1>Heading</h1>", editText.toHtml())
     }
+
+    @Test
+    @Throws(Exception::class)
+    fun pasteInlineTextKeepsTheOtherSpans() {
+        editText.fromHtml("<h1>Title</h1><p>First</p>")
+        val heading = editText.text.getSpans(0, editText.length(), AztecHeadingSpan::class.java).single()
+
+        editText.setSelection(editText.text.indexOf("First") + 3)
+        val clipboard = editText.context.getSystemService(Context.CLIPBOARD_SERVICE) as android.content.ClipboardManager
+        clipboard.setPrimaryClip(ClipData.newHtmlText("aztec", "bold", "<b>bold</b>"))
+
+        TestUtils.pasteFromClipboard(editText)
+
+        Assert.assertEquals("<h1>Title</h1><p>Fir<b>bold</b>st</p>", editText.toHtml())
+        Assert.assertSame(heading, editText.text.getSpans(0, editText.length(), AztecHeadingSpan::class.java).single())
+        Assert.assertEquals(editText.text.indexOf("bold") + 4, editText.selectionEnd)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun pasteImageIntoListItem() {
+        editText.fromHtml("<ul><li>one</li><li>two</li></ul>")
+
+        editText.setSelection(editText.text.indexOf("one") + 3)
+        val clipboard = editText.context.getSystemService(Context.CLIPBOARD_SERVICE) as android.content.ClipboardManager
+        clipboard.setPrimaryClip(ClipData.newHtmlText("aztec", "image", IMG))
+
+        TestUtils.pasteFromClipboard(editText)
+
+        val parsed = AztecText(editText.context)
+        parsed.setCalypsoMode(false)
+        parsed.fromHtml("<ul><li>one$IMG</li><li>two</li></ul>")
+
+        Assert.assertEquals(parsed.toHtml(), editText.toHtml())
+        Assert.assertEquals(parsed.text.getSpans(0, parsed.length(), AztecImageSpan::class.java).single().nestingLevel,
+                editText.text.getSpans(0, editText.length(), AztecImageSpan::class.java).single().nestingLevel)
+    }
 }
@@ -109,4 +109,62 @@ class CssStyleAttributeTest {
 
         Assert.assertEquals(EMPTY_STYLE_HTML, parser.toHtml(text))
     }
+
+    @Test
+    fun testStyleAttributeRemovalKeepsOtherProperties() {
+        val input = "<b style=\"a:b; name:value; COLOR : rgba(0, 0, 0, 0)\">bold</b>"
+        val text = SpannableString(parser.fromHtml(input, RuntimeEnvironment.application.applicationContext))
+
+        val span = text.getSpans(0, text.length, AztecStyleBoldSpan::class.java).first()
+
+        Assert.assertEquals("rgba(0,0,0,0)", CssStyleFormatter.getStyleAttribute(span.attributes, "color"))
+
+        CssStyleFormatter.removeStyleAttribute(span.attributes, "name")
+
+        Assert.assertEquals("<b style=\"a:b; COLOR:rgba(0,0,0,0)\">bold</b>", parser.toHtml(text))
+        Assert.assertEquals("b", CssStyleFormatter.getStyleAttribute(span.attributes, "a"))
+    }
+
+    @Test
+    fun testStyleAttributeParsedAgainWhenChanged() {
+        val input = HTML
+        val text = SpannableString(parser.fromHtml(input, RuntimeEnvironment.application.applicationContext))
+
+        val span = text.getSpans(0, text.length, AztecStyleBoldSpan::class.java).first()
+
+        Assert.assertEquals("value", CssStyleFormatter.getStyleAttribute(span.attributes, "name"))
+
+        span.attributes.setValue(CssStyleFormatter.STYLE_ATTRIBUTE, "name:other;")
+
+        Assert.assertEquals("other", CssStyleFormatter.getStyleAttribute(span.attributes, "name"))
+
+        span.attributes.removeAttribute(CssStyleFormatter.STYLE_ATTRIBUTE)
+
+        Assert.assertFalse(CssStyleFormatter.containsStyleAttribute(span.attributes, "name"))
+        Assert.assertEquals("", CssStyleFormatter.getStyleAttribute(span.attributes, "name"))
+    }
+
+    @Test
+    fun testStyleAttributeRemovalKeepsTheSemicolonEndingTheStyle() {
+        val input = "<b style=\"text-align:center;color:red;\">bold</b>"
+        val text = SpannableString(parser.fromHtml(input, RuntimeEnvironment.application.applicationContext))
+
+        val span = text.getSpans(0, text.length, AztecStyleBoldSpan::class.java).first()
+
+        CssStyleFormatter.removeStyleAttribute(span.attributes, "text-align")
+
+        Assert.assertEquals("<b style=\"color:red;\">bold</b>", parser.toHtml(text))
+    }
+
+    @Test
+    fun testStyleAttributeRemovalOfTheLastPropertyDropsItsSemicolon() {
+        val input = "<b style=\"color:red; text-align:center;\">bold</b>"
+        val text = SpannableString(parser.fromHtml(input, RuntimeEnvironment.application.applicationContext))
+
+        val span = text.getSpans(0, text.length, AztecStyleBoldSpan::class.java).first()
+
+        CssStyleFormatter.removeStyleAttribute(span.attributes, "text-align")
+
+        Assert.assertEquals("<b style=\"color:red\">bold</b>", parser.toHtml(text))
+    }
 }
@@ -0,0 +1,113 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import android.os.Looper
+import android.view.ViewGroup
+import kotlinx.coroutines.Dispatchers
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+
+/**
+ * Testing the asynchronous loading of HTML.
+ */
+@RunWith(RobolectricTestRunner::class)
+class FromHtmlAsyncTest {
+    lateinit var editText: AztecText
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        editText.htmlParsingDispatcher = Dispatchers.Unconfined
+        activity.setContentView(editText)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun loadsSameContentAsFromHtml() {
+        val html = "<h1>Heading</h1><p>Some <b>bold</b> text</p><ul><li>item</li></ul>"
+        editText.fromHtml(html)
+        val expected = editText.toHtml()
+        editText.fromHtml("")
+
+        var isNotified = false
+        val loading = editText.fromHtmlAsync(html, true, object : AztecText.OnHtmlLoadedListener {
+            override fun onHtmlLoaded() {
+                isNotified = true
+            }
+        })
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertTrue(isNotified)
+        Assert.assertTrue(loading.isDone)
+        Assert.assertEquals(expected, editText.toHtml())
+        Assert.assertEquals(AztecText.EditorHasChanges.NO_CHANGES, editText.hasChanges())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun supersededLoadIsDropped() {
+        var isFirstNotified = false
+        editText.fromHtmlAsync("<b>first</b>", true, object : AztecText.OnHtmlLoadedListener {
+            override fun onHtmlLoaded() {
+                isFirstNotified = true
+            }
+        })
+        editText.fromHtmlAsync("<i>second</i>")
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertFalse(isFirstNotified)
+        Assert.assertEquals("<i>second</i>", editText.toHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun cancelledLoadIsDropped() {
+        editText.fromHtml("<b>current</b>")
+
+        val loading = editText.fromHtmlAsync("<i>cancelled</i>")
+        loading.cancel()
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertTrue(loading.isDone)
+        Assert.assertEquals("<b>current</b>", editText.toHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun fromHtmlDropsPendingLoad() {
+        editText.fromHtmlAsync("<i>pending</i>")
+        editText.fromHtml("<b>current</b>")
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertEquals("<b>current</b>", editText.toHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun detachingDropsPendingLoad() {
+        editText.fromHtml("<b>current</b>")
+
+        var isNotified = false
+        val loading = editText.fromHtmlAsync("<i>pending</i>", true, object : AztecText.OnHtmlLoadedListener {
+            override fun onHtmlLoaded() {
+                isNotified = true
+            }
+        })
+        (editText.parent as ViewGroup).removeView(editText)
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertFalse(isNotified)
+        Assert.assertTrue(loading.isDone)
+        Assert.assertEquals("<b>current</b>", editText.toHtml())
+    }
+}
@@ -0,0 +1,138 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.TestUtils.safeAppend
+import org.wordpress.aztec.source.SourceViewEditText
+import org.wordpress.aztec.spans.AztecQuoteSpan
+
+/**
+ * Testing undo and redo with delta based history.
+ */
+@RunWith(RobolectricTestRunner::class)
+class HistoryTest {
+    lateinit var editText: AztecText
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        editText.history.mode = History.Mode.DELTA
+        activity.setContentView(editText)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun undoRedoTyping() {
+        editText.fromHtml("<b>bold</b> text<ul><li>item</li></ul>")
+        val initialHtml = editText.toHtml()
+
+        editText.setSelection(2)
+        editText.text.insert(2, "ld and bo")
+        val editedHtml = editText.toHtml()
+        Assert.assertNotEquals(initialHtml, editedHtml)
+
+        editText.undo()
+        Assert.assertEquals(initialHtml, editText.toHtml())
+        Assert.assertTrue(editText.history.redoValid())
+
+        editText.redo()
+        Assert.assertEquals(editedHtml, editText.toHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun undoRedoFormatting() {
+        editText.fromHtml("some text")
+        val initialHtml = editText.toHtml()
+
+        editText.setSelection(0, 4)
+        editText.toggleFormatting(AztecTextFormat.FORMAT_BOLD)
+        val formattedHtml = editText.toHtml()
+        Assert.assertEquals("<b>some</b> text", formattedHtml)
+
+        editText.undo()
+        Assert.assertEquals(initialHtml, editText.toHtml())
+
+        editText.redo()
+        Assert.assertEquals(formattedHtml, editText.toHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun initialContentIsNotRecorded() {
+        editText.fromHtml("<p>paragraph</p>")
+        Assert.assertFalse(editText.history.undoValid())
+
+        safeAppend(editText, " more")
+        Assert.assertTrue(editText.history.undoValid())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sourceEditorStepsDontEnableVisualUndo() {
+        val sourceEditor = SourceViewEditText(editText.context)
+        editText.fromHtml("<p>paragraph</p>")
+
+        // a step the source editor recorded in the shared history
+        editText.history.historyList.add("<p>source</p>")
+        editText.history.historyCursor = editText.history.historyList.size
+
+        Assert.assertTrue(editText.history.undoValid(sourceEditor))
+        Assert.assertFalse(editText.history.undoValid(editText))
+        Assert.assertFalse(editText.history.redoValid(editText))
+
+        safeAppend(editText, " more")
+        Assert.assertTrue(editText.history.undoValid(editText))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun formattingRecordsTheParagraphsAroundTheSelection() {
+        editText.fromHtml("one<br>two<br>three")
+        val initialHtml = editText.toHtml()
+
+        val start = editText.text.indexOf("three")
+        editText.setSelection(start, start + 5)
+        editText.toggleFormatting(AztecTextFormat.FORMAT_ITALIC)
+        val formattedHtml = editText.toHtml()
+
+        editText.undo()
+        Assert.assertEquals(initialHtml, editText.toHtml())
+        // the paragraph before is recorded as well, but not the whole document
+        Assert.assertEquals(editText.text.indexOf("two"), editText.history.deltaList.single().start)
+
+        editText.redo()
+        Assert.assertEquals(formattedHtml, editText.toHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun spanChangedInPlaceIsRestored() {
+        editText.fromHtml("<blockquote>quote</blockquote>")
+        val span = editText.text.getSpans(0, editText.length(), AztecQuoteSpan::class.java).single()
+        val nestingLevel = span.nestingLevel
+
+        editText.setSelection(2)
+        editText.history.beforeTextChanged(editText)
+        span.nestingLevel = nestingLevel + 1
+        span.attributes.setValue("class", "changed")
+
+        editText.undo()
+        Assert.assertEquals(nestingLevel, span.nestingLevel)
+        Assert.assertFalse(span.attributes.hasAttribute("class"))
+
+        editText.redo()
+        Assert.assertEquals(nestingLevel + 1, span.nestingLevel)
+        Assert.assertEquals("changed", span.attributes.getValue("class"))
+    }
+}
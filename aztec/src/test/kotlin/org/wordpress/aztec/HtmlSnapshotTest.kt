@@ -0,0 +1,119 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.TestUtils.safeAppend
+import org.wordpress.aztec.spans.AztecQuoteSpan
+import kotlin.concurrent.thread
+
+/**
+ * Testing the serialization of content snapshots.
+ */
+@RunWith(RobolectricTestRunner::class)
+class HtmlSnapshotTest {
+    lateinit var editText: AztecText
+
+    private val HTML = "<h1>Heading</h1><p>Some <b>bold</b> text</p><blockquote>Quote</blockquote><ol><li>item</li></ol>"
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        activity.setContentView(editText)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun snapshotSerializesSameAsEditor() {
+        editText.fromHtml(HTML)
+
+        Assert.assertEquals(editText.toPlainHtml(), editText.snapshotHtml().toPlainHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun snapshotIsNotAffectedByLaterEdits() {
+        editText.fromHtml(HTML)
+        val expected = editText.toPlainHtml()
+
+        val snapshot = editText.snapshotHtml()
+        safeAppend(editText, "more")
+
+        Assert.assertNotEquals(expected, editText.toPlainHtml())
+        Assert.assertEquals(expected, snapshot.toPlainHtml())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun snapshotSerializesOnBackgroundThread() {
+        editText.fromHtml(HTML)
+        val expected = editText.toPlainHtml()
+
+        val snapshot = editText.snapshotHtml()
+        var html = ""
+        thread { html = snapshot.toPlainHtml() }.join()
+
+        Assert.assertEquals(expected, html)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun snapshotIsNotAffectedByLaterSpanChanges() {
+        editText.fromHtml("<p style=\"text-align:center;color:red;\">Some text</p><blockquote>Quote</blockquote>")
+        val expected = editText.toPlainHtml()
+
+        val snapshot = editText.snapshotHtml()
+        editText.setSelection(2)
+        editText.toggleFormatting(AztecTextFormat.FORMAT_ALIGN_RIGHT)
+        val quote = editText.text.getSpans(0, editText.length(), AztecQuoteSpan::class.java).single()
+        quote.attributes.setValue("class", "changed")
+        quote.nestingLevel++
+
+        var html = ""
+        thread { html = snapshot.toPlainHtml() }.join()
+
+        Assert.assertNotEquals(expected, editText.toPlainHtml())
+        Assert.assertEquals(expected, html)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun snapshotSerializesWhileEditorChangesAlignment() {
+        editText.fromHtml("<p style=\"text-align:center;color:red;\">Some text</p><p>More text</p>")
+        editText.setSelection(2)
+        val expected = editText.toPlainHtml()
+
+        val snapshots = List(100) { editText.snapshotHtml() }
+        val alignments = listOf(AztecTextFormat.FORMAT_ALIGN_RIGHT, AztecTextFormat.FORMAT_ALIGN_LEFT,
+                AztecTextFormat.FORMAT_ALIGN_CENTER)
+
+        // the snapshots are serialized while the editor writes the new alignments to its spans
+        val snapshotHtml = ArrayList<String>()
+        var error: Throwable? = null
+        val serializer = thread {
+            try {
+                snapshots.forEach { snapshotHtml.add(it.toPlainHtml()) }
+            } catch (e: Throwable) {
+                error = e
+            }
+        }
+        repeat(100) {
+            editText.toggleFormatting(alignments[it % alignments.size])
+            editText.toPlainHtml()
+        }
+        serializer.join()
+
+        Assert.assertNull(error)
+        Assert.assertEquals(snapshots.size, snapshotHtml.size)
+        snapshotHtml.forEach { Assert.assertEquals(expected, it) }
+    }
+}
@@ -0,0 +1,77 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.spans.AztecOrderedListSpan
+
+/**
+ * Testing the numbering of ordered list items.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ListNumberingTest {
+    lateinit var editText: AztecText
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        activity.setContentView(editText)
+    }
+
+    private fun outerList(): AztecOrderedListSpan {
+        return editText.text.getSpans(0, editText.length(), AztecOrderedListSpan::class.java)
+                .minByOrNull { it.nestingLevel }!!
+    }
+
+    // the number drawn on the line starting at the given text, the line end excludes the newline like when drawn
+    private fun numberOfLine(lineText: String): Int? {
+        val start = editText.text.indexOf(lineText)
+        return outerList().getIndexOfProcessedLine(editText.text, start + lineText.length)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun itemsAreNumberedInOrder() {
+        editText.fromHtml("<ol><li>one</li><li>two</li><li>three</li></ol>")
+
+        Assert.assertEquals(1, numberOfLine("one"))
+        Assert.assertEquals(2, numberOfLine("two"))
+        Assert.assertEquals(3, numberOfLine("three"))
+        Assert.assertEquals(3, outerList().getNumberOfItemsInProcessedLine(editText.text))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun nestedItemsAreNotCounted() {
+        editText.fromHtml("<ol><li>one<ol><li>nested</li></ol></li><li>two</li></ol>")
+
+        Assert.assertEquals(1, numberOfLine("one"))
+        Assert.assertNull(numberOfLine("nested"))
+        Assert.assertEquals(2, numberOfLine("two"))
+        Assert.assertEquals(2, outerList().getNumberOfItemsInProcessedLine(editText.text))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun numbersFollowAddedItems() {
+        editText.fromHtml("<ol><li>one</li><li>two</li></ol>")
+        Assert.assertEquals(2, numberOfLine("two"))
+
+        editText.setSelection(editText.text.indexOf("one") + 3)
+        editText.text.insert(editText.selectionEnd, "\nadded")
+
+        Assert.assertEquals(1, numberOfLine("one"))
+        Assert.assertEquals(2, numberOfLine("added"))
+        Assert.assertEquals(3, numberOfLine("two"))
+        Assert.assertEquals(3, outerList().getNumberOfItemsInProcessedLine(editText.text))
+    }
+}
@@ -0,0 +1,106 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import android.graphics.drawable.Drawable
+import android.graphics.drawable.ShapeDrawable
+import android.os.Looper
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.wordpress.aztec.spans.AztecImageSpan
+
+/**
+ * Testing the batching of the drawables delivered by the media loaders.
+ */
+@RunWith(RobolectricTestRunner::class)
+class MediaUpdateSchedulerTest {
+    lateinit var editText: AztecText
+    val callbacks = ArrayList<Html.ImageGetter.Callbacks>()
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        editText.imageGetter = object : Html.ImageGetter {
+            override fun loadImage(source: String, callbacks: Html.ImageGetter.Callbacks, maxWidth: Int) {
+                loadImage(source, callbacks, maxWidth, 0)
+            }
+
+            override fun loadImage(source: String, callbacks: Html.ImageGetter.Callbacks, maxWidth: Int, minWidth: Int) {
+                this@MediaUpdateSchedulerTest.callbacks.add(callbacks)
+            }
+        }
+        activity.setContentView(editText)
+    }
+
+    private fun drawable(width: Int, height: Int): Drawable {
+        return ShapeDrawable().apply {
+            intrinsicWidth = width
+            intrinsicHeight = height
+        }
+    }
+
+    private fun images(): List<AztecImageSpan> {
+        return editText.text.getSpans(0, editText.length(), AztecImageSpan::class.java).toList()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun drawablesAreSwappedOncePerFrame() {
+        editText.fromHtml("<img src=\"a.png\"><img src=\"b.png\">")
+        Assert.assertEquals(2, callbacks.size)
+
+        val first = drawable(40, 20)
+        val second = drawable(30, 30)
+        callbacks[0].onImageLoaded(first)
+        callbacks[1].onImageLoaded(second)
+
+        // nothing is swapped before the next frame
+        Assert.assertNotSame(first, images()[0].drawable)
+
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertEquals(setOf(first, second), images().map { it.drawable }.toSet())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sameSizeDrawableOnlyRedraws() {
+        editText.fromHtml("<img src=\"a.png\">")
+        callbacks[0].onImageLoading(drawable(40, 20))
+        shadowOf(Looper.getMainLooper()).idle()
+        val bounds = images()[0].drawable!!.bounds
+
+        val text = editText.editableText
+        val loaded = drawable(40, 20)
+        callbacks[0].onImageLoaded(loaded)
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertSame(loaded, images()[0].drawable)
+        Assert.assertEquals(bounds, loaded.bounds)
+        // the text was not set again for a relayout
+        Assert.assertSame(text, editText.editableText)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun resizedDrawableTriggersRelayout() {
+        editText.fromHtml("<img src=\"a.png\">")
+        callbacks[0].onImageLoading(drawable(40, 20))
+        shadowOf(Looper.getMainLooper()).idle()
+
+        val text = editText.editableText
+        callbacks[0].onImageLoaded(drawable(80, 20))
+        shadowOf(Looper.getMainLooper()).idle()
+
+        Assert.assertNotSame(text, editText.editableText)
+    }
+}
@@ -0,0 +1,129 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import android.widget.ToggleButton
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.source.SourceViewEditText
+import org.wordpress.aztec.spans.AztecHeadingSpan
+import org.wordpress.aztec.toolbar.AztecToolbar
+
+/**
+ * Testing the switches between the visual and the source editor, which only parse the blocks edited in the source.
+ */
+@RunWith(RobolectricTestRunner::class)
+class SourceEditorSwitchTest {
+    lateinit var activity: Activity
+    lateinit var editText: AztecText
+    lateinit var sourceText: SourceViewEditText
+    lateinit var htmlButton: ToggleButton
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        editText.setCalypsoMode(false)
+        sourceText = SourceViewEditText(activity)
+        sourceText.setCalypsoMode(false)
+
+        activity.setContentView(editText)
+        val toolbar = AztecToolbar(activity)
+        toolbar.setEditor(editText, sourceText)
+        htmlButton = toolbar.findViewById(R.id.format_bar_button_html)
+    }
+
+    private fun switchToSource(html: String) {
+        editText.fromHtml(html)
+        sourceText.displayStyledAndFormattedHtml(editText.toHtml())
+        htmlButton.performClick()
+    }
+
+    private fun editSource(oldText: String, newText: String) {
+        val source = sourceText.text!!
+        val index = source.indexOf(oldText)
+        source.replace(index, index + oldText.length, newText)
+        sourceText.setSelection(source.length)
+    }
+
+    private fun assertSameAsParsed() {
+        val parsed = AztecText(activity)
+        parsed.setCalypsoMode(false)
+        parsed.fromHtml(sourceText.getPureHtml())
+
+        Assert.assertEquals(parsed.toHtml(), editText.toHtml())
+        Assert.assertEquals(parsed.text.toString(), editText.text.toString())
+    }
+
+    private fun heading(): AztecHeadingSpan {
+        return editText.text.getSpans(0, editText.length(), AztecHeadingSpan::class.java).single()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun editedBlockIsParsedAgain() {
+        switchToSource("<h1>Title</h1><p>First</p><ul><li>one</li><li>two</li></ul><p>Last</p>")
+        val title = heading()
+
+        editSource("two", "three")
+        htmlButton.performClick()
+
+        assertSameAsParsed()
+        Assert.assertSame(title, heading())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun blockAddedAtTheEnd() {
+        switchToSource("<h1>Title</h1><p>First</p><p>Last</p>")
+        val title = heading()
+
+        editSource("<p>Last</p>", "<p>Last</p><blockquote>Quote</blockquote>")
+        htmlButton.performClick()
+
+        assertSameAsParsed()
+        Assert.assertSame(title, heading())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun blockRemovedFromTheEnd() {
+        switchToSource("<h1>Title</h1><p>First</p><p>Last</p>")
+        val title = heading()
+
+        editSource("<p>Last</p>", "")
+        htmlButton.performClick()
+
+        assertSameAsParsed()
+        Assert.assertSame(title, heading())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sourceWithTextAtTheTopLevel() {
+        switchToSource("<h1>Title</h1><p>First</p>")
+
+        editSource("<p>First</p>", "<p>First</p>Text")
+        htmlButton.performClick()
+
+        assertSameAsParsed()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun visualEditIsShownInSource() {
+        switchToSource("<h1>Title</h1><p>First</p><p>Last</p>")
+        htmlButton.performClick()
+
+        editText.text.insert(editText.text.indexOf("First") + "First".length, " edited")
+        htmlButton.performClick()
+
+        Assert.assertTrue(TestUtils.equalsIgnoreWhitespace(editText.toHtml(), sourceText.getPureHtml()))
+    }
+}
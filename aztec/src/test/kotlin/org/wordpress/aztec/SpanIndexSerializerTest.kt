@@ -0,0 +1,78 @@
+package org.wordpress.aztec
+
+import android.app.Activity
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Testing that the span indexed serializer produces the same HTML as the default one.
+ */
+@RunWith(RobolectricTestRunner::class)
+class SpanIndexSerializerTest {
+    lateinit var editText: AztecText
+
+    private val HTML_MIXED =
+            "<h1>Heading</h1>" +
+            "<p>Paragraph with <b>bold <i>and italic</i></b> and a <a href=\"https://wordpress.org\">link</a></p>" +
+            "<blockquote>Quote<br>second line<ul><li>item <u>one</u></li><li></li><li>item three</li></ul></blockquote>" +
+            "<ol><li>first<ol><li>nested</li></ol></li><li>second</li></ol>" +
+            "<div class=\"first\"><div class=\"second\">Div<br><span><b>b</b></span><br>Hidden</div><div></div></div>" +
+            "<pre>pre\nformatted</pre>" +
+            "<!--more-->" +
+            "<iframe class=\"classic\">Menu</iframe>" +
+            "<hr /><s>end</s>"
+
+    private val HTML_CALYPSO = "Line one\n\nLine <b>two</b>\n<blockquote>Quote</blockquote>\n\n<ul><li>item</li></ul>"
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+        editText = AztecText(activity)
+        activity.setContentView(editText)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sameOutputAsDefaultSerializer() {
+        editText.setCalypsoMode(false)
+        assertSameOutput(HTML_MIXED)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sameOutputAsDefaultSerializerInCalypsoMode() {
+        editText.setCalypsoMode(true)
+        assertSameOutput(HTML_CALYPSO)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sameOutputWithCursor() {
+        editText.setCalypsoMode(false)
+        editText.fromHtml(HTML_MIXED)
+        editText.setSelection(editText.length() / 2)
+
+        editText.isSpanIndexSerializerEnabled = false
+        val expected = editText.toHtml(true)
+
+        editText.isSpanIndexSerializerEnabled = true
+        Assert.assertEquals(expected, editText.toHtml(true))
+    }
+
+    private fun assertSameOutput(html: String) {
+        editText.fromHtml(html)
+
+        editText.isSpanIndexSerializerEnabled = false
+        val expected = editText.toHtml()
+
+        editText.isSpanIndexSerializerEnabled = true
+        Assert.assertEquals(expected, editText.toHtml())
+    }
+}
@@ -0,0 +1,95 @@
+package org.wordpress.aztec.source
+
+import org.jsoup.Jsoup
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.CalypsoFormattingTest
+import org.wordpress.aztec.HtmlFormattingTest
+import java.util.Random
+import java.util.regex.Pattern
+
+/**
+ * Testing that the source formatting scanners produce the output of the regular expressions they replace.
+ */
+@RunWith(RobolectricTestRunner::class)
+class HtmlSourceScannerTest {
+    private val block = "div|br|blockquote|ul|ol|li|p|pre|h1|h2|h3|h4|h5|h6|iframe|hr"
+
+    private val tokens = arrayOf("<p>", "</p>", "<b>", "</b>", "<i>", "<u>", "</u>", "<span>", "</span>", "<br>", "<br/>",
+            "<br >", "<hr>", "<li>", "</li>", "<ul>", "</ol>", "<h1>", "<pre>", "<iframe>", "</blockquote>", "<link>",
+            "<div class=\"x\">", "</div>", "<p class=\"c\">", "<a href=\"u\">", "</a>", "<img src=\"a\">", "<>", "</>",
+            "< p>", "<\n>", "<\u2028>", "<", ">", "/", "text", "x", "\n", "\n", "\r", " ", "\t", "\u000B", "\u000C")
+
+    private fun replaceAll(content: String, pattern: String, replacement: String): String {
+        return Pattern.compile(pattern).matcher(content).replaceAll(replacement)
+    }
+
+    private fun formatNewlinesWithRegex(html: String): String {
+        val newlineToTheLeft = replaceAll(html, "(?<!</?($block)>)\n<((?!/?($block)).*?)>", "<$2>")
+        val newlineToTheRight = replaceAll(newlineToTheLeft, "<(/?(?!$block).)>\n(?!</?($block)>)", "<$1>")
+        val fixBrNewlines = replaceAll(newlineToTheRight, "([\t ]*)(<br>)(?!\n)", "$1$2\n$1")
+        return replaceAll(fixBrNewlines, ">([\t ]*)(<br>)", ">\n$1$2")
+    }
+
+    private fun removeBlockWhitespaceWithRegex(html: String): String {
+        return replaceAll(html, "\\s*<(/?($block)(.*?))>\\s*", "<$1>")
+    }
+
+    private fun assertSameAsRegex(html: String) {
+        Assert.assertEquals(html, formatNewlinesWithRegex(html), HtmlSourceScanner.formatNewlines(html))
+        Assert.assertEquals(html, removeBlockWhitespaceWithRegex(html), HtmlSourceScanner.removeBlockWhitespace(html))
+    }
+
+    // the HTML samples of the formatting tests
+    private fun corpus(): List<String> {
+        return listOf(HtmlFormattingTest(), CalypsoFormattingTest()).flatMap { test ->
+            test.javaClass.declaredFields
+                    .filter { it.type == String::class.java }
+                    .map {
+                        it.isAccessible = true
+                        it.get(test) as String
+                    }
+        }
+    }
+
+    @Test
+    fun formattingTestSamplesAreFormattedLikeWithRegex() {
+        val corpus = corpus()
+        Assert.assertTrue(corpus.isNotEmpty())
+
+        corpus.forEach {
+            assertSameAsRegex(it)
+
+            // the scanners get the pretty printed HTML when switching to the source editor
+            val prettyPrinted = Jsoup.parseBodyFragment(it).body().html()
+            assertSameAsRegex(prettyPrinted)
+            assertSameAsRegex(Format.addSourceEditorFormatting(it))
+        }
+    }
+
+    @Test
+    fun randomHtmlIsFormattedLikeWithRegex() {
+        val random = Random(42)
+        repeat(20000) {
+            val html = StringBuilder()
+            repeat(random.nextInt(16)) {
+                html.append(tokens[random.nextInt(tokens.size)])
+            }
+            assertSameAsRegex(html.toString())
+        }
+    }
+
+    @Test
+    fun breaksAreMovedToTheirOwnLines() {
+        Assert.assertEquals("<div>\n  <b>a</b>\n\t<br>\n\tb\n</div>",
+                HtmlSourceScanner.formatNewlines("<div>\n  <b>a</b>\t<br>b\n</div>"))
+    }
+
+    @Test
+    fun whitespaceAroundBlockTagsIsRemoved() {
+        Assert.assertEquals("<p>a <b>b</b></p><div>c</div>",
+                HtmlSourceScanner.removeBlockWhitespace("<p>\n  a <b>b</b>\n</p>\n<div>\tc </div>\n"))
+    }
+}
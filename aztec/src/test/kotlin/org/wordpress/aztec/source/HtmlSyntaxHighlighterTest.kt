@@ -0,0 +1,141 @@
+package org.wordpress.aztec.source
+
+import android.text.SpannableStringBuilder
+import android.text.Spanned
+import android.text.style.ForegroundColorSpan
+import android.text.style.RelativeSizeSpan
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Testing the incremental highlighting of the HTML source.
+ */
+@RunWith(RobolectricTestRunner::class)
+class HtmlSyntaxHighlighterTest {
+    private val TAG_COLOR = 1
+    private val ATTRIBUTE_COLOR = 2
+
+    // the colored ranges as "color:text", in order
+    private fun colored(content: Spanned): List<String> {
+        return content.getSpans(0, content.length, ForegroundColorSpan::class.java)
+                .sortedBy { content.getSpanStart(it) }
+                .map { "${it.foregroundColor}:${content.subSequence(content.getSpanStart(it), content.getSpanEnd(it))}" }
+    }
+
+    private fun editing(content: SpannableStringBuilder, highlighter: HtmlSyntaxHighlighter,
+                        start: Int, end: Int, replacement: String) {
+        highlighter.beforeTextChanged(content, start, end - start)
+        content.replace(start, end, replacement)
+        highlighter.onTextChanged(content, start, replacement.length)
+        highlighter.afterTextChanged(content)
+    }
+
+    @Test
+    fun tokensAreHighlighted() {
+        val content = SpannableStringBuilder("<a href=\"url\">link</a> &amp; <!-- note -->")
+        HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR).highlight(content)
+
+        Assert.assertEquals(listOf("1:<a href=", "2:\"url\"", "1:>", "1:</a>", "1:&amp;", "2:<!-- note -->"),
+                colored(content))
+        Assert.assertEquals(1, content.getSpans(0, content.length, RelativeSizeSpan::class.java).size)
+    }
+
+    @Test
+    fun textOutsideTagsIsNotHighlighted() {
+        val content = SpannableStringBuilder("1 < 2 && 3 > 2 & <B>")
+        HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR).highlight(content)
+
+        Assert.assertTrue(colored(content).isEmpty())
+    }
+
+    @Test
+    fun multilineTokensAreHighlightedPerLine() {
+        val content = SpannableStringBuilder("<!-- one\ntwo -->\n<p\nclass=\"x\">")
+        HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR).highlight(content)
+
+        Assert.assertEquals(listOf("2:<!-- one", "2:two -->", "1:<p", "1:class=", "2:\"x\"", "1:>"), colored(content))
+    }
+
+    @Test
+    fun editedLineIsHighlightedAgain() {
+        val content = SpannableStringBuilder("<p>one</p>\n<p>two</p>")
+        val highlighter = HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR)
+        highlighter.highlight(content)
+
+        editing(content, highlighter, 3, 6, "<b>bold</b>")
+
+        Assert.assertEquals(listOf("1:<p>", "1:<b>", "1:</b>", "1:</p>", "1:<p>", "1:</p>"), colored(content))
+    }
+
+    @Test
+    fun stateChangesArePropagatedToFollowingLines() {
+        val content = SpannableStringBuilder("text\n<p>one</p>\n<p>two</p>")
+        val highlighter = HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR)
+        highlighter.highlight(content)
+
+        // opening a comment turns the following lines into its content
+        editing(content, highlighter, 0, 0, "<!--")
+        Assert.assertEquals(listOf("2:<!--text", "2:<p>one</p>", "2:<p>two</p>"), colored(content))
+
+        // and closing it restores them
+        editing(content, highlighter, 8, 8, "-->")
+        Assert.assertEquals(listOf("2:<!--text-->", "1:<p>", "1:</p>", "1:<p>", "1:</p>"), colored(content))
+    }
+
+    @Test
+    fun pastedLinesAreHighlighted() {
+        val content = SpannableStringBuilder("<p>one</p>\n<p>two</p>")
+        val highlighter = HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR)
+        highlighter.highlight(content)
+
+        editing(content, highlighter, 10, 10, "\n<i>a</i>\n<u>b</u>")
+
+        Assert.assertEquals(listOf("1:<p>", "1:</p>", "1:<i>", "1:</i>", "1:<u>", "1:</u>", "1:<p>", "1:</p>"),
+                colored(content))
+    }
+
+    @Test
+    fun onlyRequestedLinesAreStyled() {
+        val content = SpannableStringBuilder("<p>one</p>\n<p>two</p>\n<p>three</p>")
+        val highlighter = HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR)
+        highlighter.highlight(content, 0, 0)
+        Assert.assertEquals(2, colored(content).size)
+
+        highlighter.ensureStyled(content, content.length - 1, content.length)
+        Assert.assertEquals(listOf("1:<p>", "1:</p>", "1:<p>", "1:</p>"), colored(content))
+    }
+
+    @Test
+    fun linesMovedByEditsAreStyledWhereTheyAre() {
+        val content = SpannableStringBuilder("<p>one</p>\n<p>two</p>\n<p>three</p>")
+        val highlighter = HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR)
+        highlighter.highlight(content, 0, 0)
+
+        // joining the first two lines and splitting the first one moves the start of the last one
+        editing(content, highlighter, 10, 11, "")
+        editing(content, highlighter, 3, 3, "\n\n")
+        highlighter.ensureStyled(content, content.length - 1, content.length)
+
+        Assert.assertEquals(listOf("1:<p>", "1:</p>", "1:<p>", "1:</p>", "1:<p>", "1:</p>"), colored(content))
+    }
+
+    @Test
+    fun textChangedWithoutReportingIsHighlightedAgain() {
+        val content = SpannableStringBuilder("<p>one</p>\n<p>two</p>")
+        val highlighter = HtmlSyntaxHighlighter(TAG_COLOR, ATTRIBUTE_COLOR)
+        highlighter.highlight(content)
+
+        // the edit of a disabled listener is discarded, the text set along with it is expected to be highlighted
+        highlighter.beforeTextChanged(content, 0, 0)
+        content.insert(0, "<!--\n")
+        highlighter.onTextChanged(content, 0, 5)
+        highlighter.discardEdit()
+        highlighter.afterTextChanged(content)
+        Assert.assertEquals(4, colored(content).size)
+
+        highlighter.ensureStyled(content, 0, content.length)
+        Assert.assertEquals(listOf("2:<!--", "2:<p>one</p>", "2:<p>two</p>"), colored(content))
+    }
+}
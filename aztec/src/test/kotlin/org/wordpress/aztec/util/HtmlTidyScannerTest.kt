@@ -0,0 +1,73 @@
+package org.wordpress.aztec.util
+
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.Constants
+
+/**
+ * Tests for the cleanup of the parsed HTML done by [HtmlTidyScanner] and [CleaningUtils].
+ */
+@RunWith(RobolectricTestRunner::class)
+class HtmlTidyScannerTest {
+
+    private fun tidyWithRegex(html: String): String {
+        return html
+                .replace(Constants.ZWJ_STRING, "")
+                .replace(Constants.MAGIC_STRING, "")
+                .replace("(</? ?br>)*((aztec_cursor)?)</blockquote>".toRegex(), "$2</blockquote>")
+                .replace("(</? ?br>)*((aztec_cursor)?)</li>".toRegex(), "$2</li>")
+                .replace("(</? ?br>)*((aztec_cursor)?)</p>".toRegex(), "$2</p>")
+                .replace("(</? ?br>)*((aztec_cursor)?)</pre>".toRegex(), "$2</pre>")
+    }
+
+    /**
+     * Test the line breaks before the end of the blocks are removed, keeping the cursor.
+     */
+    @Test
+    fun removeBreaksBeforeEndOfBlocks() {
+        Assert.assertEquals("<p>a</p><ul><li>baztec_cursor</li></ul>",
+                HtmlTidyScanner.tidy("<p>a<br></br></p><ul><li>b< br></ br>aztec_cursor</li></ul>"))
+        Assert.assertEquals("<blockquote>a<br>b</blockquote><pre>c</pre>",
+                HtmlTidyScanner.tidy("<blockquote>a<br>b<br></blockquote><pre>c<br></pre>"))
+    }
+
+    /**
+     * Test the zero width joiners and the magic characters don't keep the line breaks from being removed.
+     */
+    @Test
+    fun removeCharactersInBetweenTags() {
+        val html = "<p>a<br>" + Constants.ZWJ_STRING + "</" + Constants.MAGIC_STRING + "p>"
+        Assert.assertEquals("<p>a</p>", HtmlTidyScanner.tidy(html))
+    }
+
+    /**
+     * Test the scanner gives the same output as the regular expressions it replaces.
+     */
+    @Test
+    fun sameAsRegularExpressions() {
+        val tokens = arrayOf("<br>", "</br>", "< br>", "</ br>", "<br/>", "aztec_cursor", "</p>", "</li>", "</pre>",
+                "</blockquote>", "</div>", "<p>", "a", " ", "<", ">", "/", Constants.ZWJ_STRING, Constants.MAGIC_STRING)
+        val random = java.util.Random(20)
+        repeat(2000) {
+            val html = StringBuilder()
+            repeat(random.nextInt(12)) {
+                html.append(tokens[random.nextInt(tokens.size)])
+            }
+            Assert.assertEquals(html.toString(), tidyWithRegex(html.toString()), HtmlTidyScanner.tidy(html.toString()))
+        }
+    }
+
+    /**
+     * Test the HTML without nested bold tags is returned as it is, and the nested ones are still cleaned.
+     */
+    @Test
+    fun cleanNestedBoldTagsOnlyWhenNeeded() {
+        val html = "<p><b>a</b> <b class=\"x\">b</b><br/><!-- <b> --></p>"
+        Assert.assertSame(html, CleaningUtils.cleanNestedBoldTags(html))
+
+        Assert.assertEquals("<b>ab</b>", CleaningUtils.cleanNestedBoldTags("<b>a<b>b</b></b>"))
+        Assert.assertEquals("<b>a</b>", CleaningUtils.cleanNestedBoldTags("<b>a<b></b></b>"))
+    }
+}
@@ -0,0 +1,59 @@
+package org.wordpress.aztec.util
+
+import android.os.Bundle
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+@RunWith(RobolectricTestRunner::class)
+class InstanceStateUtilsTest {
+    private val strings = listOf(
+            "<p>Some text</p><p>More text</p>",
+            "<p>Some longer text</p><p>More text</p>",
+            null,
+            "",
+            "<p>Some text 😀</p><p>More text</p>",
+            "<p>Some text 😁</p><p>More text</p>",
+            "<p>Other</p>")
+
+    @Test
+    fun stringsRoundTrip() {
+        Assert.assertEquals(strings, roundTrip(strings, false))
+    }
+
+    @Test
+    fun deflatedStringsRoundTrip() {
+        Assert.assertEquals(strings, roundTrip(strings, true))
+    }
+
+    @Test
+    fun similarStringsAreStoredOnce() {
+        val content = "<p>paragraph</p>".repeat(1000)
+        val versions = (0 until 20).map { content + it }
+
+        val output = ByteArrayOutputStream()
+        InstanceStateUtils.writeStrings(output, versions, false)
+
+        Assert.assertTrue(output.size() < content.length + 20 * 16)
+        Assert.assertEquals(versions, InstanceStateUtils.readStrings(ByteArrayInputStream(output.toByteArray())))
+    }
+
+    @Test
+    fun tempStringsAreReadBackAndPurged() {
+        val bundle = Bundle()
+        InstanceStateUtils.writeTempStrings(ApplicationProvider.getApplicationContext(), null, "KEY", strings, bundle)
+
+        Assert.assertEquals(strings, InstanceStateUtils.readAndPurgeTempStrings("KEY", bundle))
+        Assert.assertNull(InstanceStateUtils.readAndPurgeTempStrings("KEY", bundle))
+    }
+
+    private fun roundTrip(strings: List<String?>, deflate: Boolean): List<String?> {
+        val output = ByteArrayOutputStream()
+        InstanceStateUtils.writeStrings(output, strings, deflate)
+        return InstanceStateUtils.readStrings(ByteArrayInputStream(output.toByteArray()))
+    }
+}
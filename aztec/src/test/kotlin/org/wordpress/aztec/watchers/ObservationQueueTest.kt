@@ -0,0 +1,97 @@
+package org.wordpress.aztec.watchers
+
+import android.graphics.Typeface
+import android.text.SpannableStringBuilder
+import android.text.Spanned
+import android.text.style.StyleSpan
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.watchers.event.IEventInjector
+import org.wordpress.aztec.watchers.event.sequence.ObservationQueue
+import org.wordpress.aztec.watchers.event.sequence.known.space.steps.TextWatcherEventInsertText
+import org.wordpress.aztec.watchers.event.text.AfterTextChangedEventData
+import org.wordpress.aztec.watchers.event.text.BeforeTextChangedEventData
+import org.wordpress.aztec.watchers.event.text.OnTextChangedEventData
+import org.wordpress.aztec.watchers.event.text.ReplacedText
+import org.wordpress.aztec.watchers.event.text.TextWatcherEvent
+
+/**
+ * Testing the observation of the text change sequences produced by the platform.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ObservationQueueTest : IEventInjector {
+    lateinit var queue: ObservationQueue
+    var executedEvents = ArrayList<TextWatcherEvent>()
+
+    /**
+     * Initialize variables.
+     */
+    @Before
+    fun init() {
+        queue = ObservationQueue(this)
+        executedEvents.clear()
+    }
+
+    override fun executeEvent(data: TextWatcherEvent) {
+        executedEvents.add(data)
+    }
+
+    @Test
+    fun inWordSpaceInsertionIsObservedWithoutFullCopies() {
+        // "ab" -> "b" -> "" -> "a " -> "a b", as some keyboards insert a space within a word
+        val text = SpannableStringBuilder("ab")
+        val bold = StyleSpan(Typeface.BOLD)
+        text.setSpan(bold, 0, 2, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+
+        queue.add(edit(text, 0, 1, ""))
+        queue.add(edit(text, 0, 1, ""))
+        queue.add(edit(text, 0, 0, "a "))
+        Assert.assertTrue(executedEvents.isEmpty())
+
+        queue.add(edit(text, 2, 0, "b"))
+
+        Assert.assertEquals(1, executedEvents.size)
+        val replacement = executedEvents.first() as TextWatcherEventInsertText
+        val textAfter = replacement.afterEventData.textAfter!!
+        Assert.assertEquals("a b", textAfter.toString())
+        Assert.assertEquals(1, replacement.insertionStart)
+        Assert.assertEquals(1, replacement.insertionLength)
+        Assert.assertTrue(queue.isEmpty())
+
+        // the text before the sequence is rebuilt with the span its deletions removed
+        Assert.assertEquals(0, textAfter.getSpanStart(bold))
+        Assert.assertEquals(3, textAfter.getSpanEnd(bold))
+    }
+
+    @Test
+    fun sequenceIsNotReplacedWhenTheTextChangedOutsideOfItsEvents() {
+        val text = SpannableStringBuilder("ab")
+
+        // changes the queue doesn't observe, like the ones made by the other text watchers, so the text before the
+        // sequence can't be rebuilt from the text after it
+        queue.add(edit(text, 0, 1, ""))
+        text.append("c")
+        queue.add(edit(text, 0, 1, ""))
+        queue.add(edit(text, 0, 0, "a "))
+        text.delete(2, 3)
+        queue.add(edit(text, 2, 0, "b"))
+
+        Assert.assertTrue(executedEvents.isEmpty())
+        Assert.assertTrue(queue.isEmpty())
+        Assert.assertEquals("a b", text.toString())
+    }
+
+    // makes the change on the text and records it like the editor does
+    private fun edit(text: SpannableStringBuilder, start: Int, count: Int, inserted: String): TextWatcherEvent {
+        val builder = TextWatcherEvent.Builder()
+        builder.beforeEventData = BeforeTextChangedEventData(ReplacedText(text, start, count), start, count,
+                inserted.length, text.length, EndOfBufferMarkerAdder.safeLength(text))
+        text.replace(start, start + count, inserted)
+        builder.onEventData = OnTextChangedEventData(null, start, count, inserted.length, text.length, inserted)
+        builder.afterEventData = AfterTextChangedEventData(text)
+        return builder.build()
+    }
+}
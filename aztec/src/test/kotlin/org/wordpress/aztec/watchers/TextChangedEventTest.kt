@@ -0,0 +1,102 @@
+package org.wordpress.aztec.watchers
+
+import android.app.Activity
+import android.text.Editable
+import android.text.SpannableStringBuilder
+import android.text.TextWatcher
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.AztecText
+import org.wordpress.aztec.Constants
+
+/**
+ * Testing the recording of text changes shared by the watchers.
+ */
+@RunWith(RobolectricTestRunner::class)
+class TextChangedEventTest {
+    @Test
+    fun removedEndOfBufferMarkerIsRecorded() {
+        val event = TextChangedEvent()
+        val textBefore = "ab" + Constants.END_OF_BUFFER_MARKER
+
+        event.onBeforeTextChanged(textBefore, 2, 1, 0)
+        event.onTextChanged("ab", 2, 1, 0)
+
+        Assert.assertFalse(event.isAddingCharacters)
+        Assert.assertTrue(event.isEndOfBufferMarker())
+    }
+
+    @Test
+    fun sharedEventIsResetForEveryChange() {
+        val event = TextChangedEvent()
+        event.onBeforeTextChanged("ab" + Constants.END_OF_BUFFER_MARKER, 2, 1, 0)
+        event.onTextChanged("ab", 2, 1, 0)
+
+        event.onBeforeTextChanged("ab", 1, 1, 0)
+        event.onTextChanged("a", 1, 1, 0)
+        Assert.assertFalse(event.isEndOfBufferMarker())
+
+        event.onBeforeTextChanged("a", 1, 0, 1)
+        event.onTextChanged("a\n", 1, 0, 1)
+        Assert.assertTrue(event.isNewLine())
+        Assert.assertEquals(1, event.inputStart)
+        Assert.assertEquals(2, event.inputEnd)
+    }
+
+    @Test
+    fun newLineIsNotReadPastTheEndOfTheText() {
+        val event = TextChangedEvent()
+        val text = SpannableStringBuilder("ab")
+
+        event.onBeforeTextChanged(text, 2, 0, 1)
+        text.append("\n")
+        event.onTextChanged(text, 2, 0, 1)
+        Assert.assertTrue(event.isNewLine())
+
+        // shortened by a change that wasn't recorded
+        text.delete(1, 3)
+        Assert.assertFalse(event.isNewLine())
+    }
+
+    @Test
+    fun changeMadeWhileListenersAreDisabledIsNotRecorded() {
+        listOf(false, true).forEach { isInCalypsoMode ->
+            val activity = Robolectric.buildActivity(Activity::class.java).create().visible().get()
+            val editText = AztecText(activity)
+            editText.setCalypsoMode(isInCalypsoMode)
+            activity.setContentView(editText)
+            editText.fromHtml("abc")
+
+            var inputStart = -1
+            var inputEnd = -1
+            editText.addTextChangedListener(object : TextWatcher {
+                override fun beforeTextChanged(text: CharSequence, start: Int, count: Int, after: Int) {
+                }
+
+                override fun onTextChanged(text: CharSequence, start: Int, before: Int, count: Int) {
+                    if (editText.isTextChangedListenerDisabled()) return
+
+                    // a watcher changing the text again while it handles a change
+                    editText.disableTextChangedListener()
+                    editText.editableText.delete(0, 1)
+                    editText.enableTextChangedListener()
+
+                    inputStart = editText.textChangedEvent.inputStart
+                    inputEnd = editText.textChangedEvent.inputEnd
+                }
+
+                override fun afterTextChanged(text: Editable) {
+                }
+            })
+
+            editText.editableText.insert(3, "d")
+
+            Assert.assertEquals(3, inputStart)
+            Assert.assertEquals(4, inputEnd)
+            Assert.assertTrue(editText.textChangedEvent.isAddingCharacters)
+        }
+    }
+}
@@ -18,8 +18,6 @@ import kotlinx.coroutines.Job
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
-import kotlinx.coroutines.sync.Mutex
-import kotlinx.coroutines.sync.withLock
 import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.AztecContentChangeWatcher
 import org.wordpress.aztec.AztecText
@@ -40,6 +38,10 @@ import kotlin.math.min
  * as a place we can draw over with custom views. The custom views are placed in the `FrameLayout` which contains the
  * Aztec text item and are shifted up and down if anything above them changes (for example if the user adds a new line
  * before the placeholder).
+ *
+ * The spans are kept in a map by their UUID. After an edit only the views whose line moved are shifted, and the views
+ * are only created for the placeholders in the visible part of the container (with a margin of a screen above and
+ * below it), the views scrolled away from it are removed.
  */
 class PlaceholderManager(
         private val aztecText: AztecText,
@@ -56,25 +58,33 @@ class PlaceholderManager(
         CoroutineScope,
         IHtmlPreprocessor {
     private val adapters = mutableMapOf<String, PlaceholderAdapter>()
-    private val positionToIdMutex = Mutex()
-    private val positionToId = mutableSetOf<Placeholder>()
+    private val placeholderSpans = LinkedHashMap<String, AztecPlaceholderSpan>()
+    private val placeholderSizes = mutableMapOf<String, PlaceholderSize>()
+    private val boundViews = mutableMapOf<String, BoundView>()
+    private var reloadJob: Job? = null
+    private var isReloadRequested = false
     private val job = Job()
     override val coroutineContext: CoroutineContext
         get() = Dispatchers.Main + job
 
+    private val scrollChangedListener = ViewTreeObserver.OnScrollChangedListener {
+        if (placeholderSpans.isNotEmpty()) {
+            requestReload()
+        }
+    }
+
     init {
         aztecText.setOnVisibilityChangeListener(this)
         aztecText.mediaCallback = this
         aztecText.contentChangeWatcher.registerObserver(this)
+        container.viewTreeObserver.addOnScrollChangedListener(scrollChangedListener)
     }
 
     fun onDestroy() {
-        positionToId.forEach {
-            container.findViewWithTag<View>(it.uuid)?.let { placeholder ->
-                container.removeView(placeholder)
-            }
-        }
-        positionToId.clear()
+        clearAllViews()
+        placeholderSpans.clear()
+        placeholderSizes.clear()
+        container.viewTreeObserver.removeOnScrollChangedListener(scrollChangedListener)
         aztecText.contentChangeWatcher.unregisterObserver(this)
         adapters.values.forEach { it.onDestroy() }
         adapters.clear()
@@ -99,9 +109,12 @@ class PlaceholderManager(
                 ?: throw IllegalArgumentException("Adapter for inserted type not found. Register it with `registerAdapter` method")
         val attrs = getAttributesForMedia(type, attributes)
         val drawable = buildPlaceholderDrawable(adapter, attrs)
-        aztecText.insertMediaSpan(AztecPlaceholderSpan(aztecText.context, drawable, 0, attrs,
-                this, aztecText, WeakReference(adapter), TAG = htmlTag))
-        insertContentOverSpanWithId(attrs.getValue(UUID_ATTRIBUTE))
+        val span = AztecPlaceholderSpan(aztecText.context, drawable, 0, attrs,
+                this, aztecText, WeakReference(adapter), TAG = htmlTag)
+        val uuid = attrs.getValue(UUID_ATTRIBUTE)
+        placeholderSpans[uuid] = span
+        aztecText.insertMediaSpan(span)
+        insertContentOverSpanWithId(uuid)
     }
 
     /**
@@ -168,6 +181,7 @@ class PlaceholderManager(
         val drawable = buildPlaceholderDrawable(adapter, attrs)
         val span = AztecPlaceholderSpan(aztecText.context, drawable, 0, attrs,
                 this, aztecText, WeakReference(adapter), TAG = htmlTag)
+        placeholderSpans[uuid] = span
         aztecText.replaceMediaSpan(span) { attributes ->
             attributes.getValue(UUID_ATTRIBUTE) == uuid
         }
@@ -185,9 +199,7 @@ class PlaceholderManager(
      * @param updateItem Function that updates the selected item
      */
     suspend fun removeOrUpdate(uuid: String, shouldUpdateItem: (Attributes) -> Boolean, updateItem: (currentAttributes: Map<String, String>) -> Map<String, String>): Boolean {
-        val currentItem = aztecText.editableText.getSpans(0, aztecText.length(), AztecPlaceholderSpan::class.java).find {
-            it.attributes.getValue(UUID_ATTRIBUTE) == uuid
-        } ?: return false
+        val currentItem = findSpan(uuid) ?: return false
         if (shouldUpdateItem(currentItem.attributes)) {
             val type = currentItem.attributes.getValue(TYPE_ATTRIBUTE)
             val selectionStart = aztecText.selectionStart
@@ -267,15 +279,11 @@ class PlaceholderManager(
      * Call this method to reload all the placeholders
      */
     suspend fun reloadAllPlaceholders() {
-        val tempPositionToId = positionToId.toList()
-        tempPositionToId.forEach { placeholder ->
-            val isValid = positionToIdMutex.withLock {
-                positionToId.contains(placeholder)
-            }
-            if (isValid) {
-                insertContentOverSpanWithId(placeholder.uuid)
-            }
+        if (placeholderSpans.values.any { aztecText.editableText.getSpanStart(it) == -1 }) {
+            syncPlaceholderSpans()
         }
+        (boundViews.keys - placeholderSpans.keys).forEach { removeView(it) }
+        layoutPlaceholders(placeholderSpans.keys.toList())
     }
 
     /**
@@ -286,26 +294,42 @@ class PlaceholderManager(
     }
 
     private suspend fun insertContentOverSpanWithId(uuid: String) {
-        var aztecAttributes: AztecAttributes? = null
-        val predicate = object : AztecText.AttributePredicate {
-            override fun matches(attrs: Attributes): Boolean {
-                val match = attrs.getValue(UUID_ATTRIBUTE) == uuid
-                if (match) {
-                    aztecAttributes = attrs as AztecAttributes
-                }
-                return match
+        layoutPlaceholders(listOf(uuid))
+    }
+
+    // reloads the placeholders once for all the changes made until the reload runs
+    private fun requestReload() {
+        isReloadRequested = true
+        if (reloadJob?.isActive == true) {
+            return
+        }
+        reloadJob = launch {
+            while (isReloadRequested) {
+                isReloadRequested = false
+                reloadAllPlaceholders()
             }
         }
-        val targetPosition = aztecText.getElementPosition(predicate) ?: return
-        insertInPosition(aztecAttributes ?: return, targetPosition)
     }
 
-    private suspend fun insertInPosition(attrs: AztecAttributes, targetPosition: Int) {
-        if (!validateAttributes(attrs)) {
-            return
+    private fun findSpan(uuid: String): AztecPlaceholderSpan? {
+        val span = placeholderSpans[uuid]
+        if (span != null && aztecText.editableText.getSpanStart(span) != -1) {
+            return span
         }
-        val uuid = attrs.getValue(UUID_ATTRIBUTE)
-        val type = attrs.getValue(TYPE_ATTRIBUTE)
+        syncPlaceholderSpans()
+        return placeholderSpans[uuid]
+    }
+
+    private fun syncPlaceholderSpans() {
+        placeholderSpans.clear()
+        val text = aztecText.editableText
+        text.getSpans(0, text.length, AztecPlaceholderSpan::class.java).forEach {
+            it.attributes.getValue(UUID_ATTRIBUTE)?.let { uuid -> placeholderSpans[uuid] = it }
+        }
+        placeholderSizes.keys.retainAll(placeholderSpans.keys)
+    }
+
+    private suspend fun layoutPlaceholders(uuids: Collection<String>) {
         // At this point we can get to a race condition where the aztec text layout is not yet initialized.
         // We want to wait a bit and make sure it's properly loaded.
         var counter = 0
@@ -313,46 +337,66 @@ class PlaceholderManager(
             delay(50)
             counter += 1
         }
+        if (aztecText.layout == null) {
+            return
+        }
+        val visibleArea = getVisibleArea()
+        uuids.forEach { uuid ->
+            layoutPlaceholder(uuid, visibleArea)
+        }
+    }
+
+    private suspend fun layoutPlaceholder(uuid: String, visibleArea: Rect?) {
+        val span = findSpan(uuid)
+        if (span == null) {
+            removeView(uuid)
+            return
+        }
+        val attrs = span.attributes
+        if (!validateAttributes(attrs)) {
+            return
+        }
+        val adapter = adapters.getValue(attrs.getValue(TYPE_ATTRIBUTE))
         val textViewLayout: Layout = aztecText.layout ?: return
+        val targetPosition = aztecText.editableText.getSpanStart(span)
         val parentTextViewRect = Rect()
         val targetLineOffset = textViewLayout.getLineForOffset(targetPosition)
         textViewLayout.getLineBounds(targetLineOffset, parentTextViewRect)
 
-        val parentTextViewLocation = intArrayOf(0, 0)
-        aztecText.getLocationOnScreen(parentTextViewLocation)
         val parentTextViewTopAndBottomOffset = aztecText.scrollY + aztecText.compoundPaddingTop
 
-        val adapter = adapters[type]!!
         val windowWidth = parentTextViewRect.right - parentTextViewRect.left - EDITOR_INNER_PADDING
-        val height = adapter.calculateHeight(attrs, windowWidth)
+        val size = measure(uuid, span, adapter, windowWidth)
         parentTextViewRect.top += parentTextViewTopAndBottomOffset
-        parentTextViewRect.bottom = parentTextViewRect.top + height
+        parentTextViewRect.bottom = parentTextViewRect.top + size.height
 
-        var box = container.findViewWithTag<View>(uuid)?.apply {
-            id = uuid.hashCode()
+        if (visibleArea != null && (visibleArea.isEmpty || parentTextViewRect.bottom < visibleArea.top ||
+                        parentTextViewRect.top > visibleArea.bottom)) {
+            recycleView(uuid)
+            return
         }
-        val newWidth = adapter.calculateWidth(attrs, windowWidth) - EDITOR_INNER_PADDING
-        val newHeight = height - EDITOR_INNER_PADDING
+
+        val newWidth = size.width - EDITOR_INNER_PADDING
+        val newHeight = size.height - EDITOR_INNER_PADDING
         val padding = 10
         val newLeftPadding = parentTextViewRect.left + padding + aztecText.paddingStart
         val newTopPadding = parentTextViewRect.top + padding
-        box?.let { existingView ->
-            val currentParams = existingView.layoutParams as FrameLayout.LayoutParams
-            val widthSame = currentParams.width == newWidth
-            val heightSame = currentParams.height == newHeight
-            val topMarginSame = currentParams.topMargin == newTopPadding
-            val leftMarginSame = currentParams.leftMargin == newLeftPadding
-            if (widthSame && heightSame && topMarginSame && leftMarginSame) {
-                return
-            }
-            container.removeView(box)
-            positionToIdMutex.withLock {
-                positionToId.removeAll {
-                    it.uuid == uuid
+        boundViews[uuid]?.let { boundView ->
+            val currentParams = boundView.view.layoutParams as FrameLayout.LayoutParams
+            if (currentParams.width == newWidth && currentParams.height == newHeight) {
+                // only the line of the placeholder moved, the view can stay
+                if (currentParams.topMargin != newTopPadding || currentParams.leftMargin != newLeftPadding) {
+                    currentParams.leftMargin = newLeftPadding
+                    currentParams.topMargin = newTopPadding
+                    boundView.view.layoutParams = currentParams
                 }
+                return
             }
+            removeView(uuid)
         }
-        box = adapter.createView(container.context, uuid, attrs)
+        val box = adapter.createView(container.context, uuid, attrs)
+        // the view could have been bound by another reload while this one was being created
+        removeView(uuid)
 
         box.id = uuid.hashCode()
         box.setBackgroundColor(Color.TRANSPARENT)
@@ -366,15 +410,64 @@ class PlaceholderManager(
             topMargin = newTopPadding
         }
 
-        positionToIdMutex.withLock {
-            positionToId.add(Placeholder(targetPosition, uuid))
-        }
+        boundViews[uuid] = BoundView(box, adapter)
         if (box.parent == null) {
             container.addView(box)
         }
         adapter.onViewCreated(box, uuid)
     }
 
+    // the adapters are only asked for the size again when the placeholder or the editor width changes
+    private suspend fun measure(
+            uuid: String,
+            span: AztecPlaceholderSpan,
+            adapter: PlaceholderAdapter,
+            windowWidth: Int
+    ): PlaceholderSize {
+        placeholderSizes[uuid]?.let {
+            if (it.span === span && it.windowWidth == windowWidth) {
+                return it
+            }
+        }
+        val size = PlaceholderSize(span, windowWidth,
+                adapter.calculateWidth(span.attributes, windowWidth),
+                adapter.calculateHeight(span.attributes, windowWidth))
+        placeholderSizes[uuid] = size
+        return size
+    }
+
+    /**
+     * The part of the container in which the views are created, the visible part extended by its height above and
+     * below it. Null when the container is not laid out yet and the visible part is not known.
+     */
+    private fun getVisibleArea(): Rect? {
+        if (!container.isAttachedToWindow || !container.isLaidOut) {
+            return null
+        }
+        val visibleArea = Rect()
+        if (!container.getLocalVisibleRect(visibleArea)) {
+            return Rect()
+        }
+        val margin = visibleArea.height()
+        visibleArea.top -= margin
+        visibleArea.bottom += margin
+        return visibleArea
+    }
+
+    private fun recycleView(uuid: String) {
+        boundViews[uuid]?.let { boundView ->
+            removeView(uuid)
+            boundView.adapter.onViewRecycled(boundView.view, uuid)
+        }
+    }
+
+    private fun removeView(uuid: String) {
+        boundViews.remove(uuid)?.view?.let {
+            it.visibility = View.GONE
+            container.removeView(it)
+        }
+    }
+
     private fun validateAttributes(attributes: AztecAttributes): Boolean {
         return attributes.hasAttribute(UUID_ATTRIBUTE) &&
                 attributes.hasAttribute(TYPE_ATTRIBUTE) &&
@@ -395,9 +488,7 @@ class PlaceholderManager(
      * Called when the aztec text content changes.
      */
     override fun onContentChanged() {
-        launch {
-            reloadAllPlaceholders()
-        }
+        requestReload()
     }
 
     /**
@@ -408,15 +499,9 @@ class PlaceholderManager(
             val uuid = attrs.getValue(UUID_ATTRIBUTE)
             val adapter = adapters[attrs.getValue(TYPE_ATTRIBUTE)]
             adapter?.onPlaceholderDeleted(uuid)
-            launch {
-                positionToIdMutex.withLock {
-                    positionToId.removeAll { it.uuid == uuid }
-                }
-            }
-            container.findViewWithTag<View>(uuid)?.let {
-                it.visibility = View.GONE
-                container.removeView(it)
-            }
+            placeholderSpans.remove(uuid)
+            placeholderSizes.remove(uuid)
+            removeView(uuid)
         }
     }
 
@@ -427,9 +512,7 @@ class PlaceholderManager(
     override fun beforeMediaDeleted(attrs: AztecAttributes) {
         if (validateAttributes(attrs)) {
             val uuid = attrs.getValue(UUID_ATTRIBUTE)
-            container.findViewWithTag<View>(uuid)?.let {
-                it.visibility = View.GONE
-            }
+            boundViews[uuid]?.view?.visibility = View.GONE
         }
     }
 
@@ -450,10 +533,7 @@ class PlaceholderManager(
         if (opening) {
             val type = attributes.getValue(TYPE_ATTRIBUTE)
             attributes.getValue(UUID_ATTRIBUTE)?.also { uuid ->
-                container.findViewWithTag<View>(uuid)?.let {
-                    it.visibility = View.GONE
-                    container.removeView(it)
-                }
+                removeView(uuid)
             }
             val adapter = adapters[type] ?: return false
             val aztecAttributes = AztecAttributes(attributes)
@@ -469,6 +549,7 @@ class PlaceholderManager(
                     TAG = htmlTag
             )
             val clickableSpan = AztecMediaClickableSpan(span)
+            placeholderSpans[aztecAttributes.getValue(UUID_ATTRIBUTE)] = span
             val position = output.length
             output.setSpan(span, position, position, Spanned.SPAN_MARK_MARK)
             output.setSpan(clickableSpan, position, position, Spanned.SPAN_MARK_MARK)
@@ -507,38 +588,25 @@ class PlaceholderManager(
                 return
             }
             job = launch {
-                clearAllViews()
+                syncPlaceholderSpans()
                 spans.forEach {
                     val type = it.attributes.getValue(TYPE_ATTRIBUTE)
                     val adapter = adapters[type] ?: return@forEach
                     it.drawable = buildPlaceholderDrawable(adapter, it.attributes)
-                    aztecText.refreshText(false)
-                    insertInPosition(it.attributes, aztecText.editableText.getSpanStart(it))
                 }
+                // the text is laid out again once for all the resized placeholders
+                aztecText.refreshText(false)
+                reloadAllPlaceholders()
             }
         }
     }
 
-    private suspend fun clearAllViews() {
-        positionToIdMutex.withLock {
-            for (placeholder in positionToId) {
-                container.findViewWithTag<View>(placeholder.uuid)?.let {
-                    it.visibility = View.GONE
-                    container.removeView(it)
-                }
-            }
-            positionToId.clear()
-        }
+    private fun clearAllViews() {
+        boundViews.keys.toList().forEach { removeView(it) }
     }
 
     override fun onVisibility(visibility: Int) {
-        launch {
-            positionToIdMutex.withLock {
-                for (placeholder in positionToId) {
-                    container.findViewWithTag<View>(placeholder.uuid)?.visibility = visibility
-                }
-            }
-        }
+        boundViews.values.forEach { it.view.visibility = visibility }
     }
 
     /**
@@ -569,6 +637,14 @@ class PlaceholderManager(
          */
         fun onPlaceholderDeleted(placeholderUuid: String) {}
 
+        /**
+         * Called when the view of a placeholder is removed because it was scrolled away from the visible part of the
+         * editor. A new view is created with `createView` when the placeholder gets close to it again.
+         * @param view the removed view
+         * @param placeholderUuid placeholder UUID
+         */
+        fun onViewRecycled(view: View, placeholderUuid: String) {}
+
         /**
          * This method is called when the placeholders are destroyed
          */
@@ -655,6 +731,10 @@ class PlaceholderManager(
 
     data class Placeholder(val elementPosition: Int, val uuid: String)
 
+    private class PlaceholderSize(val span: AztecPlaceholderSpan, val windowWidth: Int, val width: Int, val height: Int)
+
+    private class BoundView(val view: View, val adapter: PlaceholderAdapter)
+
     companion object {
         private const val TAG = "PlaceholderManager"
         private const val DEFAULT_HTML_TAG = "placeholder"
@@ -664,9 +744,7 @@ class PlaceholderManager(
     }
 
     override fun beforeHtmlProcessed(source: String): String {
-        runBlocking {
-            clearAllViews()
-        }
+        clearAllViews()
         return source
     }
 }
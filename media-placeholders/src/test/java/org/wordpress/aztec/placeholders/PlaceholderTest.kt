@@ -1,7 +1,9 @@
 package org.wordpress.aztec.placeholders
 
 import android.app.Activity
+import android.content.Context
 import android.view.MenuItem
+import android.view.View
 import android.view.ViewGroup.LayoutParams.MATCH_PARENT
 import android.widget.FrameLayout
 import android.widget.PopupMenu
@@ -12,6 +14,7 @@ import org.junit.Test
 import org.junit.runner.RunWith
 import org.robolectric.Robolectric
 import org.robolectric.RobolectricTestRunner
+import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.AztecText
 import org.wordpress.aztec.source.SourceViewEditText
 import org.wordpress.aztec.toolbar.AztecToolbar
@@ -263,4 +266,49 @@ class PlaceholderTest {
             Assert.assertEquals("<p>Line</p>", editText.toHtml())
         }
     }
+
+    @Test
+    @Throws(Exception::class)
+    fun placeholderViewFollowsItsLine() {
+        runBlocking {
+            placeholderManager.registerAdapter(FixedSizeAdapter())
+            editText.fromHtml("<p>Line 1</p>")
+            container.measure(View.MeasureSpec.makeMeasureSpec(1000, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(2000, View.MeasureSpec.EXACTLY))
+            container.layout(0, 0, 1000, 2000)
+
+            editText.setSelection(0)
+            placeholderManager.insertItem(FixedSizeAdapter.TYPE)
+            val view = container.findViewWithTag<View>(uuid1)
+            Assert.assertNotNull(view)
+            val topMargin = (view.layoutParams as FrameLayout.LayoutParams).topMargin
+
+            // the same view is moved down with its line
+            editText.editableText.insert(0, "Line 0\n")
+            placeholderManager.reloadAllPlaceholders()
+            Assert.assertSame(view, container.findViewWithTag<View>(uuid1))
+            Assert.assertTrue((view.layoutParams as FrameLayout.LayoutParams).topMargin > topMargin)
+
+            // the view is removed with its placeholder
+            placeholderManager.removeItem(uuid1)
+            placeholderManager.reloadAllPlaceholders()
+            Assert.assertNull(container.findViewWithTag<View>(uuid1))
+        }
+    }
+
+    private class FixedSizeAdapter : PlaceholderManager.PlaceholderAdapter {
+        override val type = TYPE
+
+        override suspend fun createView(context: Context, placeholderUuid: String, attrs: AztecAttributes): View {
+            return View(context)
+        }
+
+        override suspend fun getHeight(attrs: AztecAttributes): PlaceholderManager.PlaceholderAdapter.Proportion {
+            return PlaceholderManager.PlaceholderAdapter.Proportion.Fixed(100)
+        }
+
+        companion object {
+            const val TYPE = "fixed_size"
+        }
+    }
 }
@@ -3,12 +3,13 @@ package org.wordpress.aztec.plugins.wpcomments.spans
 import org.wordpress.aztec.AztecAttributes
 import org.wordpress.aztec.ITextFormat
 import org.wordpress.aztec.spans.IAztecBlockSpan
+import org.wordpress.aztec.spans.IAztecCopyableSpan
 
 class GutenbergCommentSpan(
         override val startTag: String,
         override var nestingLevel: Int,
         override var attributes: AztecAttributes = AztecAttributes()
-) : IAztecBlockSpan {
+) : IAztecBlockSpan, IAztecCopyableSpan {
     override val TAG: String = "wp:"
     override var startBeforeCollapse: Int = -1
     override var endBeforeBleed: Int = -1
@@ -21,4 +22,6 @@ class GutenbergCommentSpan(
         }
 
     override val textFormat: ITextFormat? = null
+
+    override fun copySpan(): Any = clone()
 }
@@ -11,6 +11,7 @@ import org.wordpress.aztec.Constants
 import org.wordpress.aztec.ITextFormat
 import org.wordpress.aztec.spans.IAztecAlignmentSpan
 import org.wordpress.aztec.spans.IAztecBlockSpan
+import org.wordpress.aztec.spans.IAztecCopyableSpan
 import org.wordpress.aztec.util.SpanWrapper
 
 fun createCaptionShortcodeSpan(
@@ -46,7 +47,7 @@ open class CaptionShortcodeSpan(
         override val TAG: String,
         override var nestingLevel: Int,
         private val aztecText: AztecText?
-) : StyleSpan(Typeface.ITALIC), IAztecBlockSpan {
+) : StyleSpan(Typeface.ITALIC), IAztecBlockSpan, IAztecCopyableSpan {
 
     override var endBeforeBleed: Int = -1
     override var startBeforeCollapse: Int = -1
@@ -118,4 +119,6 @@ open class CaptionShortcodeSpan(
     }
 
     override val textFormat: ITextFormat? = null
+
+    override fun copySpan(): Any = clone()
 }